@@ -0,0 +1,78 @@
+import stm.bench.ExportWorkload;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ExportWorkloadImpl implements ExportWorkload {
+    private Path directory;
+    private List<Task> tasks;
+    private String csvFile;
+    private String htmlFile;
+    private String jsonLinesFile;
+    private String columnarFile;
+
+    @Override
+    public void setUp(int size, long seed) throws Exception {
+        directory = Files.createTempDirectory("stm-export");
+        tasks = new TaskGenerator(seed).generate(size);
+        csvFile = directory.resolve("tasks.csv").toString();
+        htmlFile = directory.resolve("tasks.html").toString();
+        jsonLinesFile = directory.resolve("tasks.jsonl").toString();
+        columnarFile = directory.resolve("tasks" + ColumnarTaskFile.EXTENSION).toString();
+        // Import benchmarks read these; the export benchmarks overwrite them with identical content
+        TaskExporter.exportToJSONLines(tasks, jsonLinesFile);
+        TaskExporter.exportToColumnar(tasks, columnarFile);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        PersistenceWorkloadImpl.deleteRecursively(directory);
+    }
+
+    @Override
+    public Object exportToCSV() throws Exception {
+        TaskExporter.exportToCSV(tasks, csvFile);
+        return csvFile;
+    }
+
+    @Override
+    public Object exportToHTML() throws Exception {
+        TaskExporter.exportToHTML(tasks, htmlFile);
+        return htmlFile;
+    }
+
+    @Override
+    public Object exportToCSVParallel() throws Exception {
+        TaskExporter.exportToCSVParallel(tasks, csvFile);
+        return csvFile;
+    }
+
+    @Override
+    public Object exportToHTMLParallel() throws Exception {
+        TaskExporter.exportToHTMLParallel(tasks, htmlFile);
+        return htmlFile;
+    }
+
+    @Override
+    public Object exportToJSONLines() throws Exception {
+        TaskExporter.exportToJSONLines(tasks, jsonLinesFile);
+        return jsonLinesFile;
+    }
+
+    @Override
+    public Object exportToColumnar() throws Exception {
+        TaskExporter.exportToColumnar(tasks, columnarFile);
+        return columnarFile;
+    }
+
+    @Override
+    public Object importJSONLines() throws Exception {
+        return TaskImporter.importJSONLines(jsonLinesFile, new TaskManager());
+    }
+
+    @Override
+    public Object importColumnar() throws Exception {
+        return TaskImporter.importColumnar(columnarFile, new TaskManager());
+    }
+}
@@ -0,0 +1,67 @@
+import stm.bench.PersistenceWorkload;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class PersistenceWorkloadImpl implements PersistenceWorkload {
+    private Path directory;
+    private List<Task> tasks;
+    private TaskPersistence saving;
+    private TaskPersistence loading;
+    private ShardedTaskStore shardedSaving;
+    private ShardedTaskStore shardedLoading;
+
+    @Override
+    public void setUp(int size, long seed, String format) throws Exception {
+        String extension = "binary".equals(format) ? BinaryTaskFormat.EXTENSION : ".json";
+        directory = Files.createTempDirectory("stm-persistence");
+        tasks = new TaskGenerator(seed).generate(size);
+        saving = new TaskPersistence(directory.resolve("save" + extension).toString());
+        loading = new TaskPersistence(directory.resolve("load" + extension).toString());
+        loading.saveTasks(tasks);
+        shardedSaving = new ShardedTaskStore(directory.resolve("save-shards").toString(), extension, ShardedTaskStore.BY_CATEGORY);
+        shardedSaving.addAll(tasks);
+        shardedLoading = new ShardedTaskStore(directory.resolve("load-shards").toString(), extension, ShardedTaskStore.BY_CATEGORY);
+        shardedLoading.addAll(tasks);
+        shardedLoading.save();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        deleteRecursively(directory);
+    }
+
+    @Override
+    public Object saveTasks() throws Exception {
+        saving.saveTasks(tasks);
+        return saving;
+    }
+
+    @Override
+    public Object loadTasks() throws Exception {
+        return loading.loadTasks();
+    }
+
+    @Override
+    public Object saveSharded() throws Exception {
+        shardedSaving.save();
+        return shardedSaving;
+    }
+
+    @Override
+    public Object loadSharded() throws Exception {
+        shardedLoading.load();
+        return shardedLoading;
+    }
+
+    static void deleteRecursively(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import stm.bench.QueryWorkload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+public class QueryWorkloadImpl implements QueryWorkload {
+    private static final TaskQuery SELECTIVE =
+            TaskQuery.parse("priority >= HIGH and category = tech and deadline < +2d and !completed limit 100");
+    private static final TaskQuery DEADLINE_PAGE =
+            TaskQuery.parse("deadline >= today and deadline < +1w order by deadline limit 50 offset 50");
+    private static final TaskQuery CATEGORY = TaskQuery.parse("category = work");
+
+    private TaskManager taskManager;
+    private Predicate<Task> selective;
+
+    @Override
+    public void setUp(int size, long seed) {
+        taskManager = new TaskManager();
+        taskManager.addAll(new TaskGenerator(seed).generate(size));
+        selective = SELECTIVE.asPredicate();
+    }
+
+    @Override
+    public Object selectiveQuery() {
+        return taskManager.query(SELECTIVE);
+    }
+
+    @Override
+    public Object selectiveQueryFullScan() {
+        List<Task> page = new ArrayList<>();
+        for (Task task : taskManager.getAllTasks()) {
+            if (selective.test(task)) {
+                page.add(task);
+                if (page.size() == SELECTIVE.getLimit()) break;
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Object deadlinePage() {
+        return taskManager.query(DEADLINE_PAGE);
+    }
+
+    @Override
+    public Object countCategory() {
+        return taskManager.count(CATEGORY);
+    }
+}
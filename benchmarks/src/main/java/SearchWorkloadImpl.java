@@ -0,0 +1,43 @@
+import stm.bench.SearchWorkload;
+
+import java.util.List;
+
+public class SearchWorkloadImpl implements SearchWorkload {
+    private static final String TYPED = "review report";
+
+    private TaskManager taskManager;
+    private TaskSearchIndex searchIndex;
+    private List<Task> stored;
+    private int keystroke;
+    private int cursor;
+
+    @Override
+    public void setUp(int size, long seed) {
+        stored = new TaskGenerator(seed).generate(size);
+        taskManager = new TaskManager();
+        taskManager.addAll(stored);
+        searchIndex = new TaskSearchIndex(taskManager);
+    }
+
+    @Override
+    public void tearDown() {
+        searchIndex.close();
+    }
+
+    @Override
+    public Object typeQuery() {
+        keystroke = keystroke % TYPED.length() + 1;
+        return searchIndex.search(TYPED.substring(0, keystroke), 500);
+    }
+
+    @Override
+    public Object searchTwoTerms() {
+        return searchIndex.search("client draft", 500);
+    }
+
+    @Override
+    public Object updateTask() {
+        cursor = (cursor + 1) % stored.size();
+        return taskManager.updateTask(stored.get(cursor).getId(), task -> task.withTitle(task.getTitle() + "!"));
+    }
+}
@@ -0,0 +1,71 @@
+import stm.bench.StatisticsWorkload;
+
+public class StatisticsWorkloadImpl implements StatisticsWorkload {
+    private TaskManager taskManager;
+    private LiveTaskStatistics liveStatistics;
+    private TaskStatistics statistics;
+
+    @Override
+    public void setUp(int size, long seed) {
+        taskManager = new TaskManager();
+        taskManager.addAll(new TaskGenerator(seed).generate(size));
+        liveStatistics = new LiveTaskStatistics(taskManager);
+        statistics = new TaskStatistics(liveStatistics);
+    }
+
+    @Override
+    public void tearDown() {
+        liveStatistics.shutdown();
+    }
+
+    @Override
+    public Object getTotalTasks() {
+        return statistics.getTotalTasks();
+    }
+
+    @Override
+    public Object getCompletedTasks() {
+        return statistics.getCompletedTasks();
+    }
+
+    @Override
+    public Object getPendingTasks() {
+        return statistics.getPendingTasks();
+    }
+
+    @Override
+    public Object getOverdueTasks() {
+        return statistics.getOverdueTasks();
+    }
+
+    @Override
+    public Object getCompletionRate() {
+        return statistics.getCompletionRate();
+    }
+
+    @Override
+    public Object getTasksByPriorityCount() {
+        return statistics.getTasksByPriorityCount();
+    }
+
+    @Override
+    public Object getTasksByCategoryCount() {
+        return statistics.getTasksByCategoryCount();
+    }
+
+    @Override
+    public Object getTasksDueInNextHours() {
+        return statistics.getTasksDueInNextHours(24);
+    }
+
+    @Override
+    public Object getAverageTaskCompletionTime() {
+        return statistics.getAverageTaskCompletionTime();
+    }
+
+    @Override
+    public Object rebuild() {
+        liveStatistics.rebuild();
+        return liveStatistics;
+    }
+}
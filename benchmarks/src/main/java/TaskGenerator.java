@@ -0,0 +1,132 @@
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Synthetic tasks for benchmarks, seeded so every run sees the same store.
+ *
+ * Distributions follow a typical personal backlog: most tasks are medium or
+ * low priority, categories are Zipf-skewed towards a few busy ones, deadlines
+ * cluster in the coming week with a tail of overdue and undated tasks, and
+ * roughly a third of the tasks are completed, mostly those already due.
+ */
+public class TaskGenerator {
+    private static final String[] CATEGORIES = {
+            "work", "personal", "tech", "home", "errands", "finance", "health", "family",
+            "study", "travel", "shopping", "garden", "car", "admin", "reading", "fitness",
+            "music", "volunteering", "side-project", "taxes", "friends", "pets", "kitchen",
+            "repairs", "planning"
+    };
+    private static final String[] VERBS = {
+            "Review", "Write", "Fix", "Call", "Plan", "Update", "Book", "Prepare", "Send",
+            "Check", "Clean", "Order", "Refactor", "Schedule", "Pay", "Read"
+    };
+    private static final String[] NOUNS = {
+            "report", "invoice", "meeting notes", "release", "dentist", "budget", "slides",
+            "backup", "newsletter", "flights", "groceries", "pull request", "contract",
+            "roadmap", "insurance", "presentation"
+    };
+    private static final String[] WORDS = {
+            "the", "and", "before", "after", "with", "team", "draft", "final", "client",
+            "follow", "up", "on", "next", "week", "details", "make", "sure", "to", "ask",
+            "about", "numbers", "from", "last", "quarter", "check", "latest", "version"
+    };
+
+    // Cumulative Zipf(s = 1) weights over CATEGORIES
+    private static final double[] CATEGORY_CDF = zipf(CATEGORIES.length);
+
+    private final SplittableRandom random;
+    private final LocalDateTime now;
+    private long sequence;
+
+    public TaskGenerator(long seed) {
+        this(seed, LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    public TaskGenerator(long seed, LocalDateTime now) {
+        this.random = new SplittableRandom(seed);
+        this.now = now;
+    }
+
+    public List<Task> generate(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(next());
+        }
+        return tasks;
+    }
+
+    public Task next() {
+        long n = sequence++;
+        LocalDateTime deadline = deadline();
+        LocalDateTime createdAt = (deadline != null && deadline.isBefore(now) ? deadline : now)
+                .minusMinutes(random.nextLong(30L * 24 * 60));
+        // Tasks already past their deadline are usually done; future ones rarely are
+        boolean completed = deadline != null && deadline.isBefore(now)
+                ? random.nextDouble() < 0.75
+                : random.nextDouble() < 0.15;
+        String title = VERBS[random.nextInt(VERBS.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " #" + n;
+        return new Task(new UUID(random.nextLong(), random.nextLong()).toString(),
+                title, description(), priority(), deadline, createdAt, completed, category());
+    }
+
+    private Task.Priority priority() {
+        double p = random.nextDouble();
+        if (p < 0.30) return Task.Priority.LOW;
+        if (p < 0.70) return Task.Priority.MEDIUM;
+        if (p < 0.90) return Task.Priority.HIGH;
+        return Task.Priority.URGENT;
+    }
+
+    private String category() {
+        double p = random.nextDouble();
+        for (int i = 0; i < CATEGORY_CDF.length; i++) {
+            if (p < CATEGORY_CDF[i]) {
+                return CATEGORIES[i];
+            }
+        }
+        return CATEGORIES[CATEGORIES.length - 1];
+    }
+
+    // 15% undated, 20% up to two weeks overdue, the rest exponentially spread with a one-week mean
+    private LocalDateTime deadline() {
+        double p = random.nextDouble();
+        if (p < 0.15) {
+            return null;
+        }
+        long minutes;
+        if (p < 0.35) {
+            minutes = -random.nextLong(1, 14L * 24 * 60);
+        } else {
+            minutes = (long) (-Math.log(1 - random.nextDouble()) * 7 * 24 * 60);
+        }
+        // Deadlines land on quarter hours, as people enter them
+        return now.plusMinutes(minutes - Math.floorMod(minutes, 15));
+    }
+
+    private String description() {
+        int words = random.nextInt(30);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static double[] zipf(int n) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1.0 / (i + 1);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hammers one TaskManager from many threads and checks that no update is lost
+ * and listeners see every change once, in order. Writers increment per-task
+ * counters through the atomic {@code updateTask(id, mutator)}, churners add and
+ * remove short-lived tasks, and readers query the indexes throughout.
+ *
+ * <pre>java -cp benchmarks/target/benchmarks.jar TaskManagerStress [threads] [updatesPerWriter]</pre>
+ *
+ * Exits with status 1 and lists the violations if any check fails.
+ */
+public class TaskManagerStress {
+    private static final int HOT_TASKS = 64;
+    private static final String HOT = "hot";
+    private static final String CHURN = "churn";
+
+    private final TaskManager taskManager = new TaskManager();
+    private final List<String> hotIds = new ArrayList<>();
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+    // Listener-side view, written only by the dispatching thread
+    private final Map<String, Long> lastSeen = new HashMap<>();
+    private final Map<String, Long> updateEvents = new HashMap<>();
+    private final Set<String> liveChurn = new HashSet<>();
+    private long churnAdds;
+    private long churnRemoves;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        System.exit(new TaskManagerStress().run(threads, updates) ? 0 : 1);
+    }
+
+    boolean run(int threads, int updatesPerWriter) throws Exception {
+        List<Task> seed = new TaskGenerator(42).generate(10_000);
+        for (int i = 0; i < HOT_TASKS; i++) {
+            Task task = new Task("hot " + i, "0", Task.Priority.MEDIUM, null, HOT);
+            hotIds.add(task.getId());
+            seed.add(task);
+        }
+        taskManager.addAll(seed);
+        taskManager.addListener(new Recorder());
+
+        int writers = Math.max(1, threads / 2);
+        int churners = Math.max(1, threads / 4);
+        int readers = Math.max(1, threads - writers - churners);
+        ExecutorService pool = Executors.newFixedThreadPool(writers + churners + readers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        long[][] increments = new long[writers][HOT_TASKS];
+
+        List<Future<?>> writerFutures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            long[] counts = increments[w];
+            long writerSeed = w;
+            writerFutures.add(pool.submit(() -> {
+                start.await();
+                SplittableRandom random = new SplittableRandom(writerSeed);
+                Task.Priority[] priorities = Task.Priority.values();
+                for (int i = 0; i < updatesPerWriter; i++) {
+                    int hot = random.nextInt(HOT_TASKS);
+                    Task.Priority priority = priorities[random.nextInt(priorities.length)];
+                    Task updated = taskManager.updateTask(hotIds.get(hot), task -> task
+                            .withDescription(String.valueOf(Long.parseLong(task.getDescription()) + 1))
+                            .withPriority(priority));
+                    if (updated == null) {
+                        violations.add("hot task " + hot + " disappeared");
+                    }
+                    counts[hot]++;
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> others = new ArrayList<>();
+        for (int c = 0; c < churners; c++) {
+            others.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    Task task = new Task("churn", "", Task.Priority.LOW, null, CHURN);
+                    taskManager.addTask(task);
+                    if (!taskManager.removeTask(task.getId())) {
+                        violations.add("churn task " + task.getId() + " was not found for removal");
+                    }
+                }
+                return null;
+            }));
+        }
+        TaskQuery hotQuery = TaskQuery.parse("category = " + HOT);
+        for (int r = 0; r < readers; r++) {
+            others.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    int count = taskManager.count(hotQuery);
+                    if (count != HOT_TASKS) {
+                        violations.add("query saw " + count + " hot tasks");
+                    }
+                    // One query sees one consistent state: every hot task exactly once
+                    Set<String> seen = new HashSet<>();
+                    for (Task task : taskManager.query(hotQuery)) {
+                        seen.add(task.getId());
+                    }
+                    if (seen.size() != HOT_TASKS) {
+                        violations.add("query returned " + seen.size() + " distinct hot tasks");
+                    }
+                    reads.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : writerFutures) {
+            future.get();
+        }
+        writing.set(false);
+        for (Future<?> future : others) {
+            future.get();
+        }
+        pool.shutdown();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+
+        verify(increments);
+        System.out.printf(Locale.ROOT, "%d writers, %d churners, %d readers: %d updates, %d churn pairs, %d reads in %d ms%n",
+                writers, churners, readers, (long) writers * updatesPerWriter, churnAdds, reads.get(), elapsedMillis);
+        if (violations.isEmpty()) {
+            System.out.println("OK: no lost updates, every event delivered once and in order");
+            return true;
+        }
+        System.out.println(violations.size() + " violations, first ones:");
+        violations.stream().limit(20).forEach(violation -> System.out.println("  " + violation));
+        return false;
+    }
+
+    private void verify(long[][] increments) {
+        for (int hot = 0; hot < HOT_TASKS; hot++) {
+            long expected = 0;
+            for (long[] counts : increments) {
+                expected += counts[hot];
+            }
+            String id = hotIds.get(hot);
+            long stored = Long.parseLong(taskManager.getTask(id).getDescription());
+            if (stored != expected) {
+                violations.add("hot task " + hot + " counter is " + stored + ", expected " + expected);
+            }
+            long events = updateEvents.getOrDefault(id, 0L);
+            if (events != expected) {
+                violations.add("hot task " + hot + " had " + events + " update events, expected " + expected);
+            }
+        }
+        if (!liveChurn.isEmpty() || churnAdds != churnRemoves) {
+            violations.add(churnAdds + " churn additions but " + churnRemoves + " removals");
+        }
+        if (!taskManager.getTasksByCategory(CHURN).isEmpty()) {
+            violations.add("churn tasks left in the store");
+        }
+        int indexed = 0;
+        for (Task.Priority priority : Task.Priority.values()) {
+            for (Task task : taskManager.getTasksByPriority(priority)) {
+                if (task.getPriority() != priority) {
+                    violations.add("task " + task.getId() + " indexed under " + priority + " but is " + task.getPriority());
+                }
+                indexed++;
+            }
+        }
+        if (indexed != taskManager.getAllTasks().size()) {
+            violations.add(indexed + " tasks in priority buckets, " + taskManager.getAllTasks().size() + " stored");
+        }
+    }
+
+    // Events arrive one at a time, so plain collections are enough; the checks rely on delivery order
+    private final class Recorder implements TaskManager.TaskManagerListener {
+        @Override
+        public void onTaskAdded(Task task) {
+            if (CHURN.equals(task.getCategory())) {
+                churnAdds++;
+                if (!liveChurn.add(task.getId())) {
+                    violations.add("churn task " + task.getId() + " added twice");
+                }
+            }
+        }
+
+        @Override
+        public void onTaskRemoved(Task task) {
+            if (CHURN.equals(task.getCategory())) {
+                churnRemoves++;
+                if (!liveChurn.remove(task.getId())) {
+                    violations.add("churn task " + task.getId() + " removed before it was added");
+                }
+            }
+        }
+
+        @Override
+        public void onTaskUpdated(Task task) {
+            String id = task.getId();
+            updateEvents.merge(id, 1L, Long::sum);
+            // The task may already carry later updates, but never earlier ones
+            long value = Long.parseLong(task.getDescription());
+            Long previous = lastSeen.put(id, value);
+            if (previous != null && value < previous) {
+                violations.add("update of " + id + " to " + value + " delivered after " + previous);
+            }
+        }
+    }
+}
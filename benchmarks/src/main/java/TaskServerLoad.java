@@ -0,0 +1,113 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for TaskServer: starts one in-process on a free port, then keeps
+ * the given number of requests in flight from virtual threads and reports
+ * throughput and latency percentiles. The mix is mostly single-task reads,
+ * with paged queries, counts, updates and creations.
+ *
+ * <pre>java -cp benchmarks/target/benchmarks.jar TaskServerLoad [tasks] [concurrency] [requests]</pre>
+ */
+public class TaskServerLoad {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        TaskManager taskManager = new TaskManager();
+        List<Task> tasks = new TaskGenerator(42).generate(size);
+        taskManager.addAll(tasks);
+        List<String> ids = new ArrayList<>(tasks.size());
+        tasks.forEach(task -> ids.add(task.getId()));
+
+        try (TaskServer server = new TaskServer(taskManager, null, 0);
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+
+            // Warm up the JIT before measuring
+            run(client, base, ids, Math.min(concurrency, 100), Math.min(requests, 5_000), clients);
+            long[] latencies = new long[requests];
+            long began = System.nanoTime();
+            int failures = run(client, base, ids, concurrency, requests, clients, latencies);
+            long elapsed = System.nanoTime() - began;
+
+            Arrays.sort(latencies);
+            System.out.printf(Locale.ROOT, "%d requests, %d in flight, %d tasks: %.0f req/s, %d failed%n",
+                    requests, concurrency, size, requests / (elapsed / 1e9), failures);
+            System.out.printf(Locale.ROOT, "latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.90),
+                    percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static int run(HttpClient client, String base, List<String> ids, int concurrency, int requests,
+                           ExecutorService clients) throws InterruptedException {
+        return run(client, base, ids, concurrency, requests, clients, new long[requests]);
+    }
+
+    private static int run(HttpClient client, String base, List<String> ids, int concurrency, int requests,
+                           ExecutorService clients, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            clients.submit(() -> {
+                SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+                try {
+                    int request;
+                    while ((request = next.getAndIncrement()) < requests) {
+                        HttpRequest httpRequest = request(base, ids.get(random.nextInt(ids.size())), random.nextInt(100));
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[request] = System.nanoTime() - start;
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return failures.get();
+    }
+
+    private static HttpRequest request(String base, String id, int roll) {
+        if (roll < 70) {
+            return HttpRequest.newBuilder(URI.create(base + "/tasks/" + id)).build();
+        }
+        if (roll < 85) {
+            return HttpRequest.newBuilder(URI.create(base + "/tasks?q=priority%20%3E%3D%20HIGH%20and%20pending&limit=20")).build();
+        }
+        if (roll < 90) {
+            return HttpRequest.newBuilder(URI.create(base + "/tasks/count?q=overdue")).build();
+        }
+        if (roll < 97) {
+            return HttpRequest.newBuilder(URI.create(base + "/tasks/" + id))
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"completed\": true}")).build();
+        }
+        return HttpRequest.newBuilder(URI.create(base + "/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\": \"load\", \"priority\": \"LOW\"}")).build();
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e6;
+    }
+}
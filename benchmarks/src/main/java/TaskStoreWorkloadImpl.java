@@ -0,0 +1,102 @@
+import stm.bench.TaskStoreWorkload;
+
+import java.util.List;
+
+public class TaskStoreWorkloadImpl implements TaskStoreWorkload {
+    private TaskManager taskManager;
+    private List<Task> stored;
+    private List<Task> spare;
+    private String busiestCategory;
+    private int cursor;
+
+    @Override
+    public void setUp(int size, long seed) {
+        TaskGenerator generator = new TaskGenerator(seed);
+        stored = generator.generate(size);
+        spare = generator.generate(Math.min(size, 10_000));
+        taskManager = new TaskManager();
+        taskManager.addAll(stored);
+        busiestCategory = stored.isEmpty() ? "work" : stored.get(0).getCategory();
+    }
+
+    @Override
+    public void tearDown() {
+        taskManager.clearAllTasks();
+    }
+
+    @Override
+    public Object addAndRemove() {
+        Task task = spare.get(next(spare.size()));
+        taskManager.addTask(task);
+        return taskManager.removeTask(task);
+    }
+
+    @Override
+    public Object updateTask() {
+        Task task = taskManager.getTask(stored.get(next(stored.size())).getId());
+        Task.Priority[] priorities = Task.Priority.values();
+        Task edited = task.withPriority(priorities[(task.getPriority().ordinal() + 1) % priorities.length]);
+        if (edited.getDeadline() != null) {
+            edited = edited.withDeadline(edited.getDeadline().plusMinutes(15));
+        }
+        return taskManager.updateTask(edited);
+    }
+
+    @Override
+    public Object removeAndReAdd() {
+        Task task = stored.get(next(stored.size()));
+        taskManager.removeTask(task.getId());
+        taskManager.addTask(task);
+        return task;
+    }
+
+    @Override
+    public Object getAllTasks() {
+        return taskManager.getAllTasks();
+    }
+
+    @Override
+    public Object snapshot() {
+        return taskManager.snapshot();
+    }
+
+    @Override
+    public Object getTasksByPriority() {
+        return taskManager.getTasksByPriority(Task.Priority.HIGH);
+    }
+
+    @Override
+    public Object getTodaysTasks() {
+        return taskManager.getTodaysTasks();
+    }
+
+    @Override
+    public Object getOverdueTasks() {
+        return taskManager.getOverdueTasks();
+    }
+
+    @Override
+    public Object getCompletedTasks() {
+        return taskManager.getCompletedTasks();
+    }
+
+    @Override
+    public Object getPendingTasks() {
+        return taskManager.getPendingTasks();
+    }
+
+    @Override
+    public Object getTasksByCategory() {
+        return taskManager.getTasksByCategory(busiestCategory);
+    }
+
+    @Override
+    public Object getAllCategories() {
+        return taskManager.getAllCategories();
+    }
+
+    private int next(int bound) {
+        cursor = (cursor + 1) % bound;
+        return cursor;
+    }
+}
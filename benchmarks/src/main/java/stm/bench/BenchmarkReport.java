@@ -0,0 +1,73 @@
+package stm.bench;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Runs the suite and records it for comparison across releases:
+ * the full JMH result goes to {@code jmh-<version>.json} and one line per
+ * benchmark and parameter set is appended to {@code history.csv}, both in
+ * the results directory.
+ *
+ * <pre>
+ * java -Dstm.version=1.1 [-Dstm.sizes=1000,10000] [-Dstm.results=dir] \
+ *      -cp benchmarks/target/benchmarks.jar stm.bench.BenchmarkReport [benchmark regex]
+ * </pre>
+ */
+public class BenchmarkReport {
+
+    public static void main(String[] args) throws Exception {
+        String version = System.getProperty("stm.version", "dev");
+        Path results = Paths.get(System.getProperty("stm.results", "benchmarks/results"));
+        Files.createDirectories(results);
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkReport.class.getPackageName() + ".*Benchmark")
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.resolve("jmh-" + version + ".json").toString());
+        String sizes = System.getProperty("stm.sizes");
+        if (sizes != null) {
+            options.param("size", sizes.split(","));
+        }
+
+        Collection<RunResult> runs = new Runner(options.build()).run();
+        appendHistory(results.resolve("history.csv"), version, runs);
+    }
+
+    private static void appendHistory(Path history, String version, Collection<RunResult> runs) throws IOException {
+        boolean header = !Files.exists(history);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(history, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (header) {
+                out.println("version,date,benchmark,params,score,error,unit");
+            }
+            String date = LocalDate.now().toString();
+            for (RunResult run : runs) {
+                StringBuilder params = new StringBuilder();
+                for (String key : run.getParams().getParamsKeys()) {
+                    if (params.length() > 0) params.append(';');
+                    params.append(key).append('=').append(run.getParams().getParam(key));
+                }
+                String benchmark = run.getParams().getBenchmark();
+                out.printf(Locale.ROOT, "%s,%s,%s,%s,%.3f,%.3f,%s%n", version, date,
+                        benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1),
+                        params, run.getPrimaryResult().getScore(), run.getPrimaryResult().getScoreError(),
+                        run.getPrimaryResult().getScoreUnit());
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package stm.bench;
+
+/** {@code TaskExporter} output to a scratch directory, and {@code TaskImporter} reading it back. */
+public interface ExportWorkload {
+    void setUp(int size, long seed) throws Exception;
+
+    void tearDown() throws Exception;
+
+    Object exportToCSV() throws Exception;
+
+    Object exportToHTML() throws Exception;
+
+    Object exportToCSVParallel() throws Exception;
+
+    Object exportToJSONLines() throws Exception;
+
+    Object exportToColumnar() throws Exception;
+
+    Object importJSONLines() throws Exception;
+
+    Object importColumnar() throws Exception;
+
+    Object exportToHTMLParallel() throws Exception;
+}
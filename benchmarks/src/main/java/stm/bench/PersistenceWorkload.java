@@ -0,0 +1,18 @@
+package stm.bench;
+
+/** {@code TaskPersistence} snapshot save and load in a scratch directory. */
+public interface PersistenceWorkload {
+    /** @param format {@code json} or {@code binary} */
+    void setUp(int size, long seed, String format) throws Exception;
+
+    void tearDown() throws Exception;
+
+    Object saveTasks() throws Exception;
+
+    Object loadTasks() throws Exception;
+
+    /** The same tasks split into one file per category, written in parallel. */
+    Object saveSharded() throws Exception;
+
+    Object loadSharded() throws Exception;
+}
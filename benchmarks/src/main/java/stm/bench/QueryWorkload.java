@@ -0,0 +1,18 @@
+package stm.bench;
+
+/** {@code TaskQuery} runs through the planner, against filtering every task with the same query. */
+public interface QueryWorkload {
+    void setUp(int size, long seed);
+
+    /** Several indexed conditions plus a residual filter, first page in priority order. */
+    Object selectiveQuery();
+
+    /** The same query tested against every task, without the planner. */
+    Object selectiveQueryFullScan();
+
+    /** A deadline range sorted by deadline, served in index order with early stop. */
+    Object deadlinePage();
+
+    /** Matches for a category, counted without paging. */
+    Object countCategory();
+}
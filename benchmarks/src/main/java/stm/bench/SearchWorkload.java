@@ -0,0 +1,16 @@
+package stm.bench;
+
+/** {@code TaskSearchIndex} queries as typed into the search box, and index maintenance. */
+public interface SearchWorkload {
+    void setUp(int size, long seed);
+
+    void tearDown();
+
+    /** One keystroke of a query being typed, cycling through its prefixes. */
+    Object typeQuery();
+
+    Object searchTwoTerms();
+
+    /** Reindexes one task after an edit. */
+    Object updateTask();
+}
@@ -0,0 +1,28 @@
+package stm.bench;
+
+/** {@code TaskStatistics} reads, plus the full recount the live counters replace. */
+public interface StatisticsWorkload {
+    void setUp(int size, long seed);
+
+    void tearDown();
+
+    Object getTotalTasks();
+
+    Object getCompletedTasks();
+
+    Object getPendingTasks();
+
+    Object getOverdueTasks();
+
+    Object getCompletionRate();
+
+    Object getTasksByPriorityCount();
+
+    Object getTasksByCategoryCount();
+
+    Object getTasksDueInNextHours();
+
+    Object getAverageTaskCompletionTime();
+
+    Object rebuild();
+}
@@ -0,0 +1,71 @@
+package stm.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Export of the whole store in every format, and re-import of the analytics formats. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskExporterBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private ExportWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create(ExportWorkload.class);
+        workload.setUp(size, Workloads.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object exportToCSV() throws Exception {
+        return workload.exportToCSV();
+    }
+
+    @Benchmark
+    public Object exportToHTML() throws Exception {
+        return workload.exportToHTML();
+    }
+
+    @Benchmark
+    public Object exportToCSVParallel() throws Exception {
+        return workload.exportToCSVParallel();
+    }
+
+    @Benchmark
+    public Object exportToHTMLParallel() throws Exception {
+        return workload.exportToHTMLParallel();
+    }
+
+    @Benchmark
+    public Object exportToJSONLines() throws Exception {
+        return workload.exportToJSONLines();
+    }
+
+    @Benchmark
+    public Object exportToColumnar() throws Exception {
+        return workload.exportToColumnar();
+    }
+
+    @Benchmark
+    public Object importJSONLines() throws Exception {
+        return workload.importJSONLines();
+    }
+
+    @Benchmark
+    public Object importColumnar() throws Exception {
+        return workload.importColumnar();
+    }
+}
@@ -0,0 +1,91 @@
+package stm.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Single-task mutations and every filter query of {@code TaskManager}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskManagerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private TaskStoreWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create(TaskStoreWorkload.class);
+        workload.setUp(size, Workloads.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object addAndRemove() {
+        return workload.addAndRemove();
+    }
+
+    @Benchmark
+    public Object updateTask() {
+        return workload.updateTask();
+    }
+
+    @Benchmark
+    public Object removeAndReAdd() {
+        return workload.removeAndReAdd();
+    }
+
+    @Benchmark
+    public Object getAllTasks() {
+        return workload.getAllTasks();
+    }
+
+    @Benchmark
+    public Object snapshot() {
+        return workload.snapshot();
+    }
+
+    @Benchmark
+    public Object getTasksByPriority() {
+        return workload.getTasksByPriority();
+    }
+
+    @Benchmark
+    public Object getTodaysTasks() {
+        return workload.getTodaysTasks();
+    }
+
+    @Benchmark
+    public Object getOverdueTasks() {
+        return workload.getOverdueTasks();
+    }
+
+    @Benchmark
+    public Object getCompletedTasks() {
+        return workload.getCompletedTasks();
+    }
+
+    @Benchmark
+    public Object getPendingTasks() {
+        return workload.getPendingTasks();
+    }
+
+    @Benchmark
+    public Object getTasksByCategory() {
+        return workload.getTasksByCategory();
+    }
+
+    @Benchmark
+    public Object getAllCategories() {
+        return workload.getAllCategories();
+    }
+}
@@ -0,0 +1,54 @@
+package stm.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Full snapshot save and load, in both on-disk formats, as one file and as category shards. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskPersistenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private PersistenceWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create(PersistenceWorkload.class);
+        workload.setUp(size, Workloads.SEED, format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object saveTasks() throws Exception {
+        return workload.saveTasks();
+    }
+
+    @Benchmark
+    public Object loadTasks() throws Exception {
+        return workload.loadTasks();
+    }
+
+    @Benchmark
+    public Object saveSharded() throws Exception {
+        return workload.saveSharded();
+    }
+
+    @Benchmark
+    public Object loadSharded() throws Exception {
+        return workload.loadSharded();
+    }
+}
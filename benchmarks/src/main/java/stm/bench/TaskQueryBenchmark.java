@@ -0,0 +1,46 @@
+package stm.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Planned queries over the TaskManager indexes, and a full scan for comparison. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskQueryBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private QueryWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create(QueryWorkload.class);
+        workload.setUp(size, Workloads.SEED);
+    }
+
+    @Benchmark
+    public Object selectiveQuery() {
+        return workload.selectiveQuery();
+    }
+
+    @Benchmark
+    public Object selectiveQueryFullScan() {
+        return workload.selectiveQueryFullScan();
+    }
+
+    @Benchmark
+    public Object deadlinePage() {
+        return workload.deadlinePage();
+    }
+
+    @Benchmark
+    public Object countCategory() {
+        return workload.countCategory();
+    }
+}
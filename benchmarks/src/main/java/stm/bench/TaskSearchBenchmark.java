@@ -0,0 +1,46 @@
+package stm.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Search-as-you-type latency and incremental index upkeep. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskSearchBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private SearchWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create(SearchWorkload.class);
+        workload.setUp(size, Workloads.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object typeQuery() {
+        return workload.typeQuery();
+    }
+
+    @Benchmark
+    public Object searchTwoTerms() {
+        return workload.searchTwoTerms();
+    }
+
+    @Benchmark
+    public Object updateTask() {
+        return workload.updateTask();
+    }
+}
@@ -0,0 +1,81 @@
+package stm.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** {@code TaskStatistics} getters against a populated store. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskStatisticsBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private StatisticsWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create(StatisticsWorkload.class);
+        workload.setUp(size, Workloads.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object getTotalTasks() {
+        return workload.getTotalTasks();
+    }
+
+    @Benchmark
+    public Object getCompletedTasks() {
+        return workload.getCompletedTasks();
+    }
+
+    @Benchmark
+    public Object getPendingTasks() {
+        return workload.getPendingTasks();
+    }
+
+    @Benchmark
+    public Object getOverdueTasks() {
+        return workload.getOverdueTasks();
+    }
+
+    @Benchmark
+    public Object getCompletionRate() {
+        return workload.getCompletionRate();
+    }
+
+    @Benchmark
+    public Object getTasksByPriorityCount() {
+        return workload.getTasksByPriorityCount();
+    }
+
+    @Benchmark
+    public Object getTasksByCategoryCount() {
+        return workload.getTasksByCategoryCount();
+    }
+
+    @Benchmark
+    public Object getTasksDueInNextHours() {
+        return workload.getTasksDueInNextHours();
+    }
+
+    @Benchmark
+    public Object getAverageTaskCompletionTime() {
+        return workload.getAverageTaskCompletionTime();
+    }
+
+    @Benchmark
+    public Object rebuild() {
+        return workload.rebuild();
+    }
+}
@@ -0,0 +1,36 @@
+package stm.bench;
+
+/** {@code TaskManager} mutations and filter queries over a generated store. */
+public interface TaskStoreWorkload {
+    void setUp(int size, long seed);
+
+    void tearDown();
+
+    /** Adds a task that is not in the store and removes it again, keeping the size steady. */
+    Object addAndRemove();
+
+    /** Changes the priority and deadline of a stored task, so it moves in every index. */
+    Object updateTask();
+
+    /** Removes a stored task by id and adds it back. */
+    Object removeAndReAdd();
+
+    Object getAllTasks();
+
+    /** The shared snapshot, unchanged between calls. */
+    Object snapshot();
+
+    Object getTasksByPriority();
+
+    Object getTodaysTasks();
+
+    Object getOverdueTasks();
+
+    Object getCompletedTasks();
+
+    Object getPendingTasks();
+
+    Object getTasksByCategory();
+
+    Object getAllCategories();
+}
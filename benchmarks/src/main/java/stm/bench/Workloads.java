@@ -0,0 +1,24 @@
+package stm.bench;
+
+/**
+ * The application classes live in the unnamed package, which JMH-generated
+ * code (and any named package) cannot import. Each workload interface here is
+ * implemented by a same-named {@code ...Impl} class in the unnamed package of
+ * this module and instantiated reflectively once per trial, so the measured
+ * calls are ordinary interface calls.
+ */
+final class Workloads {
+    static final long SEED = 42L;
+
+    private Workloads() {
+    }
+
+    static <T> T create(Class<T> type) {
+        String implementation = type.getSimpleName() + "Impl";
+        try {
+            return type.cast(Class.forName(implementation).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load workload " + implementation, e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import javax.swing.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs persistence and query work on {@link SwingWorker} threads so the Event
+ * Dispatch Thread never blocks on file I/O or store scans. Progress messages
+ * and results are always handed back on the EDT.
+ */
+public class BackgroundTaskRunner {
+
+    public interface Job<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    public interface Progress {
+        /** Reports progress from the worker thread; shown on the EDT, latest message wins. */
+        void update(String message);
+    }
+
+    private final Consumer<String> statusDisplay;
+    // Latest worker per coalescing key; results from superseded workers are dropped
+    private final Map<String, SwingWorker<?, ?>> latest = new HashMap<>();
+
+    public BackgroundTaskRunner(Consumer<String> statusDisplay) {
+        this.statusDisplay = statusDisplay;
+    }
+
+    public <T> void submit(Job<T> job, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        start(null, job, onSuccess, onFailure);
+    }
+
+    /**
+     * Runs a job whose result replaces any earlier job submitted under the same key.
+     * A rapid series of requests applies only the last one's result. Must be called on the EDT.
+     */
+    public <T> void submitLatest(String key, Job<T> job, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        SwingWorker<?, ?> previous = latest.get(key);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        latest.put(key, start(key, job, onSuccess, onFailure));
+    }
+
+    private <T> SwingWorker<T, String> start(String key, Job<T> job, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        SwingWorker<T, String> worker = new SwingWorker<T, String>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return job.run(this::publish);
+            }
+
+            @Override
+            protected void process(List<String> messages) {
+                if (!isCancelled()) {
+                    statusDisplay.accept(messages.get(messages.size() - 1));
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (key != null) {
+                    if (latest.get(key) != this) {
+                        return;
+                    }
+                    latest.remove(key);
+                }
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    onSuccess.accept(get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    onFailure.accept(cause instanceof Exception ? (Exception) cause : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        worker.execute();
+        return worker;
+    }
+}
@@ -0,0 +1,393 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Compact binary snapshot of a task store, used by {@link TaskPersistence}
+ * for files ending in {@value #EXTENSION}.
+ *
+ * Layout (big-endian): magic, version, the category dictionary, the task
+ * count, every description back to back, then one record per task. Strings
+ * are length-prefixed UTF-8 (-1 for null), categories are dictionary indexes,
+ * priority is a byte and timestamps are UTC epoch seconds plus nanos, so
+ * loading never parses text dates.
+ *
+ * A record holds only the length of its description; the running total of
+ * the lengths gives its offset. Loading can leave longer descriptions in the
+ * file as {@link LazyText}, so they cost heap only while cached.
+ * A recurring task's record goes on with its {@link RecurrenceRule} as text,
+ * and a task with dependencies ends with the count and ids of its
+ * prerequisites. Version 1 files, with descriptions inline in the records,
+ * and version 2 and 3 files, from before recurrence and dependencies, still load.
+ */
+public class BinaryTaskFormat {
+    public static final String EXTENSION = ".stmb";
+
+    private static final int MAGIC = 0x53544D42; // "STMB"
+    private static final short VERSION = 4;
+    // Versions 2 and 3 only lack fields added later, which none of their records flag
+    private static final short DESCRIPTION_SECTION_VERSION = 2;
+    private static final short INLINE_DESCRIPTIONS_VERSION = 1;
+    // Shorter descriptions are decoded at load; a lazy handle would take about as much room
+    private static final int LAZY_MIN_BYTES = 64;
+
+    private static final int COMPLETED = 1;
+    private static final int HAS_DEADLINE = 1 << 1;
+    private static final int HAS_CREATED_AT = 1 << 2;
+    private static final int HAS_RECURRENCE = 1 << 3;
+    private static final int HAS_DEPENDENCIES = 1 << 4;
+
+    private BinaryTaskFormat() {
+    }
+
+    public static boolean handles(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    public static void write(List<Task> tasks, OutputStream stream) throws IOException {
+        write(tasks, stream, null);
+    }
+
+    /**
+     * Writes a snapshot, noting in the relocation where each lazily loaded
+     * description lands, so it can be pointed at the new file once that file
+     * is in place. The relocation may be null.
+     */
+    static void write(List<Task> tasks, OutputStream stream, Relocation relocation) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        long descriptionBytes = 0;
+        for (Task task : tasks) {
+            if (task.getCategory() != null) {
+                dictionary.putIfAbsent(task.getCategory(), dictionary.size());
+            }
+            descriptionBytes += Math.max(0, descriptionLength(task));
+        }
+        if (descriptionBytes > Integer.MAX_VALUE) {
+            throw new IOException("Descriptions too large for one binary task snapshot");
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(dictionary.size());
+        for (String category : dictionary.keySet()) {
+            writeString(out, category);
+        }
+        out.writeInt(tasks.size());
+
+        out.writeInt((int) descriptionBytes);
+        int sectionStart = out.size();
+        for (Task task : tasks) {
+            LazyText lazy = task.lazyDescription();
+            if (lazy != null) {
+                if (relocation != null) {
+                    relocation.add(lazy, out.size() - sectionStart);
+                }
+                out.write(lazy.bytes());
+            } else if (task.getDescription() != null) {
+                out.write(task.getDescription().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (relocation != null) {
+            relocation.sectionStart = sectionStart;
+        }
+
+        for (Task task : tasks) {
+            int flags = (task.isCompleted() ? COMPLETED : 0)
+                    | (task.getDeadline() != null ? HAS_DEADLINE : 0)
+                    | (task.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+                    | (task.isRecurring() ? HAS_RECURRENCE : 0)
+                    | (task.getDependencies().isEmpty() ? 0 : HAS_DEPENDENCIES);
+            out.writeByte(flags);
+            out.writeByte(task.getPriority().ordinal());
+            out.writeInt(task.getCategory() != null ? dictionary.get(task.getCategory()) : -1);
+            writeString(out, task.getId());
+            writeString(out, task.getTitle());
+            out.writeInt(descriptionLength(task));
+            if (task.getDeadline() != null) {
+                writeTimestamp(out, task.getDeadline());
+            }
+            if (task.getCreatedAt() != null) {
+                writeTimestamp(out, task.getCreatedAt());
+            }
+            if (task.isRecurring()) {
+                writeString(out, task.getRecurrence().toString());
+            }
+            if (!task.getDependencies().isEmpty()) {
+                out.writeInt(task.getDependencies().size());
+                for (String dependency : task.getDependencies()) {
+                    writeString(out, dependency);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /** Lazily loaded descriptions written to a new snapshot, and where they went. */
+    static final class Relocation {
+        private final List<LazyText> texts = new ArrayList<>();
+        private int[] offsets = new int[16];
+        private int sectionStart;
+
+        private void add(LazyText text, int offset) {
+            if (texts.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[texts.size()] = offset;
+            texts.add(text);
+        }
+
+        /**
+         * Points the descriptions at the written file, so the file they came from
+         * can be closed and replaced. Returns the source they now read from, or
+         * null if there were none.
+         */
+        LazyText.Source apply(Path file) throws IOException {
+            if (texts.isEmpty()) {
+                return null;
+            }
+            LazyText.Source source = new LazyText.Source(file);
+            for (int i = 0; i < texts.size(); i++) {
+                texts.get(i).moveTo(source, (long) sectionStart + offsets[i]);
+            }
+            return source;
+        }
+    }
+
+    /** Reads a snapshot with every description on the heap. */
+    public static List<Task> read(Path file) throws IOException {
+        return read(file, null);
+    }
+
+    /**
+     * Reads a snapshot through buffered positional reads, leaving descriptions
+     * of {@value #LAZY_MIN_BYTES} bytes or more in the file as {@link LazyText}
+     * read through the given source, which must be open on the same file.
+     * Nothing else holds the file once this returns. The source may be null
+     * to read every description.
+     */
+    static List<Task> read(Path file, LazyText.Source lazySource) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelInput in = new ChannelInput(channel, 0);
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a binary task snapshot: " + file);
+            }
+            short version = in.getShort();
+            if (version < INLINE_DESCRIPTIONS_VERSION || version > VERSION) {
+                throw new IOException("Unsupported binary task snapshot version " + version + ": " + file);
+            }
+
+            String[] dictionary = new String[in.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(in);
+            }
+
+            Task.Priority[] priorities = Task.Priority.values();
+            int count = in.getInt();
+            // Descriptions come before the records, in record order, so a second reader walks them alongside
+            ChannelInput descriptions = null;
+            long sectionStart = 0;
+            int sectionLength = 0;
+            if (version >= DESCRIPTION_SECTION_VERSION) {
+                sectionLength = in.getInt();
+                sectionStart = in.position();
+                descriptions = new ChannelInput(channel, sectionStart);
+                in.skip(sectionLength);
+            }
+            long descriptionOffset = 0;
+            List<Task> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int flags = in.get();
+                Task.Priority priority = priorities[in.get()];
+                int categoryIndex = in.getInt();
+                String id = readString(in);
+                String title = readString(in);
+                String description = null;
+                LazyText lazyDescription = null;
+                if (descriptions == null) {
+                    description = readString(in);
+                } else {
+                    int length = in.getInt();
+                    if (length >= LAZY_MIN_BYTES && lazySource != null) {
+                        lazyDescription = new LazyText(lazySource, sectionStart + descriptionOffset, length);
+                        descriptions.skip(length);
+                    } else if (length >= 0) {
+                        byte[] bytes = new byte[length];
+                        descriptions.get(bytes);
+                        description = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                    descriptionOffset += Math.max(0, length);
+                }
+                LocalDateTime deadline = (flags & HAS_DEADLINE) != 0 ? readTimestamp(in) : null;
+                LocalDateTime createdAt = (flags & HAS_CREATED_AT) != 0 ? readTimestamp(in) : null;
+                RecurrenceRule recurrence = (flags & HAS_RECURRENCE) != 0 ? RecurrenceRule.parse(readString(in)) : null;
+                List<String> dependencies = null;
+                if ((flags & HAS_DEPENDENCIES) != 0) {
+                    String[] ids = new String[in.getInt()];
+                    for (int d = 0; d < ids.length; d++) {
+                        ids[d] = readString(in);
+                    }
+                    dependencies = Arrays.asList(ids);
+                }
+                String category = categoryIndex >= 0 ? dictionary[categoryIndex] : null;
+                boolean completed = (flags & COMPLETED) != 0;
+                Task task = lazyDescription != null
+                        ? new Task(id, title, lazyDescription, priority, deadline, createdAt, completed, category)
+                        : new Task(id, title, description, priority, deadline, createdAt, completed, category);
+                if (recurrence != null) {
+                    task = task.withRecurrence(recurrence);
+                }
+                tasks.add(dependencies != null ? task.withDependencies(dependencies) : task);
+            }
+            if (descriptions != null && descriptionOffset != sectionLength) {
+                throw new IOException("Description lengths do not add up in binary task snapshot: " + file);
+            }
+            return tasks;
+        } catch (EOFException | RuntimeException e) {
+            // Running off the end or a bad index means the file is truncated or corrupt
+            throw new IOException("Corrupt binary task snapshot: " + file, e);
+        }
+    }
+
+    // Sequential reads at its own position in a shared channel, buffered, so two can walk one file at once
+    private static final class ChannelInput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).flip();
+        // File position just past the buffered bytes
+        private long position;
+
+        ChannelInput(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position - buffer.remaining();
+        }
+
+        byte get() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        short getShort() throws IOException {
+            require(2);
+            return buffer.getShort();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        void get(byte[] bytes) throws IOException {
+            int buffered = Math.min(buffer.remaining(), bytes.length);
+            buffer.get(bytes, 0, buffered);
+            ByteBuffer rest = ByteBuffer.wrap(bytes, buffered, bytes.length - buffered);
+            while (rest.hasRemaining()) {
+                int read = channel.read(rest, position);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                position += read;
+            }
+        }
+
+        // Skipping past the buffer reads nothing, so long descriptions left in the file cost no I/O
+        void skip(long count) {
+            if (count <= buffer.remaining()) {
+                buffer.position(buffer.position() + (int) count);
+            } else {
+                position += count - buffer.remaining();
+                buffer.clear().flip();
+            }
+        }
+
+        private void require(int count) throws IOException {
+            if (buffer.remaining() >= count) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < count) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                position += read;
+            }
+            buffer.flip();
+        }
+    }
+
+    // UTF-8 length of the description, without encoding it; -1 for none
+    private static int descriptionLength(Task task) {
+        LazyText lazy = task.lazyDescription();
+        if (lazy != null) {
+            return lazy.length();
+        }
+        String text = task.getDescription();
+        if (text == null) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // The encoder replaces an unpaired surrogate with '?'
+                length++;
+            }
+        }
+        return length;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ChannelInput in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static LocalDateTime readTimestamp(ChannelInput in) throws IOException {
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
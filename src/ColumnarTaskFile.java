@@ -0,0 +1,551 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Column-oriented task dump for analytics, written by
+ * {@link TaskExporter#exportToColumnar} and read back by {@link TaskImporter}.
+ *
+ * After the header a directory gives each column's offset and length, and
+ * every column is a separate block with its own encoding:
+ * <ul>
+ *   <li>id, title, description, recurrence: length-prefixed UTF-8 strings, -1 for null</li>
+ *   <li>dependencies: per task the number of prerequisite ids, then the ids as strings</li>
+ *   <li>category: dictionary of distinct values, then bit-packed codes with 0 for null</li>
+ *   <li>priority: bit-packed ordinals; completed: one bit per task</li>
+ *   <li>deadline, createdAt: presence bitmap, then per present value the zigzag
+ *       varint delta of its UTC epoch second from the previous one and its nanos as a varint</li>
+ * </ul>
+ * A {@link Scan} decodes only the columns it asks for, so pages of the others
+ * are never touched in the memory-mapped file. Files written before the
+ * recurrence and dependencies columns existed read as having none.
+ */
+public class ColumnarTaskFile implements Closeable {
+    public static final String EXTENSION = ".stmc";
+
+    private static final int MAGIC = 0x53544D43; // "STMC"
+    private static final short VERSION = 1;
+
+    public enum Column { ID, TITLE, DESCRIPTION, CATEGORY, PRIORITY, COMPLETED, DEADLINE, CREATED_AT, RECURRENCE, DEPENDENCIES }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int rowCount;
+    private final Map<Column, ByteBuffer> columns = new EnumMap<>(Column.class);
+
+    private ColumnarTaskFile(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Columnar task file too large to map: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a columnar task file: " + file);
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported columnar task file version " + version + ": " + file);
+            }
+            rowCount = buffer.getInt();
+            int columnCount = buffer.getInt();
+            for (int i = 0; i < columnCount; i++) {
+                String name = readString(buffer);
+                int offset = (int) buffer.getLong();
+                int length = (int) buffer.getLong();
+                // Columns added by later writers are skipped
+                for (Column column : Column.values()) {
+                    if (column.name().equals(name)) {
+                        columns.put(column, buffer.slice(offset, length));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            // Buffer underflow or a bad offset means the file is truncated or corrupt
+            channel.close();
+            throw new IOException("Corrupt columnar task file: " + file, e);
+        }
+    }
+
+    public static ColumnarTaskFile open(Path file) throws IOException {
+        return new ColumnarTaskFile(file);
+    }
+
+    public static boolean handles(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Set<Column> getColumns() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /** Starts a scan that decodes only the given columns, all of them if none are given. */
+    public Scan scan(Column... projection) throws IOException {
+        return new Scan(projection.length == 0 ? EnumSet.allOf(Column.class) : EnumSet.copyOf(Arrays.asList(projection)));
+    }
+
+    /** Reads back whole tasks one at a time. */
+    public Iterator<Task> tasks() throws IOException {
+        Scan scan = scan();
+        return new Iterator<Task>() {
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) {
+                    hasNext = scan.next();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                hasNext = null;
+                return scan.toTask();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Forward-only cursor over the rows; getters of columns outside the projection throw. */
+    public final class Scan {
+        private final Set<Column> projection;
+        private final StringDecoder ids, titles, descriptions, recurrences;
+        private final String[] dictionary;
+        private final PackedDecoder categories, priorities, completions;
+        private final TimestampDecoder deadlines, createdAts;
+        private final StringListDecoder dependencyLists;
+        private final Task.Priority[] priorityValues = Task.Priority.values();
+        private int row = -1;
+
+        private String id, title, description, category, recurrence;
+        private Task.Priority priority;
+        private boolean completed;
+        private LocalDateTime deadline, createdAt;
+        private List<String> dependencies = Collections.emptyList();
+
+        private Scan(Set<Column> projection) throws IOException {
+            this.projection = projection;
+            try {
+                ids = projection.contains(Column.ID) ? new StringDecoder(column(Column.ID)) : null;
+                titles = projection.contains(Column.TITLE) ? new StringDecoder(column(Column.TITLE)) : null;
+                descriptions = projection.contains(Column.DESCRIPTION) ? new StringDecoder(column(Column.DESCRIPTION)) : null;
+                if (projection.contains(Column.CATEGORY)) {
+                    ByteBuffer block = column(Column.CATEGORY);
+                    dictionary = new String[block.getInt() + 1];
+                    for (int i = 1; i < dictionary.length; i++) {
+                        dictionary[i] = readString(block);
+                    }
+                    categories = new PackedDecoder(block);
+                } else {
+                    dictionary = null;
+                    categories = null;
+                }
+                priorities = projection.contains(Column.PRIORITY) ? new PackedDecoder(column(Column.PRIORITY)) : null;
+                completions = projection.contains(Column.COMPLETED) ? new PackedDecoder(column(Column.COMPLETED)) : null;
+                deadlines = projection.contains(Column.DEADLINE) ? new TimestampDecoder(column(Column.DEADLINE), rowCount) : null;
+                createdAts = projection.contains(Column.CREATED_AT) ? new TimestampDecoder(column(Column.CREATED_AT), rowCount) : null;
+                recurrences = projection.contains(Column.RECURRENCE) && columns.containsKey(Column.RECURRENCE)
+                        ? new StringDecoder(column(Column.RECURRENCE)) : null;
+                dependencyLists = projection.contains(Column.DEPENDENCIES) && columns.containsKey(Column.DEPENDENCIES)
+                        ? new StringListDecoder(column(Column.DEPENDENCIES)) : null;
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt columnar task file: " + file, e);
+            }
+        }
+
+        public boolean next() {
+            if (row + 1 >= rowCount) {
+                return false;
+            }
+            row++;
+            if (ids != null) id = ids.next();
+            if (titles != null) title = titles.next();
+            if (descriptions != null) description = descriptions.next();
+            if (categories != null) category = dictionary[categories.next()];
+            if (priorities != null) priority = priorityValues[priorities.next()];
+            if (completions != null) completed = completions.next() != 0;
+            if (deadlines != null) deadline = deadlines.next();
+            if (createdAts != null) createdAt = createdAts.next();
+            if (recurrences != null) recurrence = recurrences.next();
+            if (dependencyLists != null) dependencies = dependencyLists.next();
+            return true;
+        }
+
+        public String getId() { return projected(Column.ID, id); }
+        public String getTitle() { return projected(Column.TITLE, title); }
+        public String getDescription() { return projected(Column.DESCRIPTION, description); }
+        public String getCategory() { return projected(Column.CATEGORY, category); }
+        public Task.Priority getPriority() { return projected(Column.PRIORITY, priority); }
+        public boolean isCompleted() { return projected(Column.COMPLETED, completed); }
+        public LocalDateTime getDeadline() { return projected(Column.DEADLINE, deadline); }
+        public LocalDateTime getCreatedAt() { return projected(Column.CREATED_AT, createdAt); }
+        /** The task's {@link RecurrenceRule} in text form, or null for a one-off task. */
+        public String getRecurrence() { return projected(Column.RECURRENCE, recurrence); }
+        public List<String> getDependencies() { return projected(Column.DEPENDENCIES, dependencies); }
+
+        /** The current row as a task; unprojected columns are left at their defaults. */
+        public Task toTask() {
+            Task task = new Task(id, title, description, priority != null ? priority : Task.Priority.MEDIUM,
+                    deadline, createdAt, completed, category);
+            if (recurrence != null) {
+                task = task.withRecurrence(RecurrenceRule.parse(recurrence));
+            }
+            return dependencies.isEmpty() ? task : task.withDependencies(dependencies);
+        }
+
+        private <T> T projected(Column column, T value) {
+            if (!projection.contains(column)) {
+                throw new IllegalStateException(column + " is not part of this scan");
+            }
+            if (row < 0) {
+                throw new IllegalStateException("next() has not been called");
+            }
+            return value;
+        }
+    }
+
+    private ByteBuffer column(Column column) throws IOException {
+        ByteBuffer block = columns.get(column);
+        if (block == null) {
+            throw new IOException("Columnar task file has no " + column + " column: " + file);
+        }
+        return block.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /** Writes every task column by column; the encoded columns are buffered in memory until the end. */
+    public static void write(Iterator<? extends Task> tasks, Path file) throws IOException {
+        StringEncoder ids = new StringEncoder();
+        StringEncoder titles = new StringEncoder();
+        StringEncoder descriptions = new StringEncoder();
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        PackedEncoder categories = new PackedEncoder();
+        PackedEncoder priorities = new PackedEncoder();
+        PackedEncoder completions = new PackedEncoder();
+        TimestampEncoder deadlines = new TimestampEncoder();
+        TimestampEncoder createdAts = new TimestampEncoder();
+        StringEncoder recurrences = new StringEncoder();
+        StringListEncoder dependencyLists = new StringListEncoder();
+
+        int rows = 0;
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            ids.add(task.getId());
+            titles.add(task.getTitle());
+            descriptions.add(task.getDescription());
+            categories.add(task.getCategory() == null ? 0
+                    : dictionary.computeIfAbsent(task.getCategory(), key -> dictionary.size() + 1));
+            priorities.add(task.getPriority().ordinal());
+            completions.add(task.isCompleted() ? 1 : 0);
+            deadlines.add(task.getDeadline());
+            createdAts.add(task.getCreatedAt());
+            recurrences.add(task.isRecurring() ? task.getRecurrence().toString() : null);
+            dependencyLists.add(task.getDependencies());
+            rows++;
+        }
+
+        ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+        DataOutputStream dictionaryOut = new DataOutputStream(dictionaryBytes);
+        dictionaryOut.writeInt(dictionary.size());
+        for (String category : dictionary.keySet()) {
+            writeString(dictionaryOut, category);
+        }
+
+        Map<Column, ByteBuffer[]> blocks = new EnumMap<>(Column.class);
+        blocks.put(Column.ID, ids.finish());
+        blocks.put(Column.TITLE, titles.finish());
+        blocks.put(Column.DESCRIPTION, descriptions.finish());
+        blocks.put(Column.CATEGORY, concat(ByteBuffer.wrap(dictionaryBytes.toByteArray()),
+                categories.finish(bitsFor(dictionary.size()))));
+        blocks.put(Column.PRIORITY, priorities.finish(bitsFor(Task.Priority.values().length - 1)));
+        blocks.put(Column.COMPLETED, completions.finish(1));
+        blocks.put(Column.DEADLINE, deadlines.finish());
+        blocks.put(Column.CREATED_AT, createdAts.finish());
+        blocks.put(Column.RECURRENCE, recurrences.finish());
+        blocks.put(Column.DEPENDENCIES, dependencyLists.finish());
+
+        // Header and directory first, so their size fixes where the first column starts
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeInt(rows);
+        header.writeInt(blocks.size());
+        long offset = 4 + 2 + 4 + 4;
+        for (Column column : blocks.keySet()) {
+            offset += 4 + column.name().getBytes(StandardCharsets.UTF_8).length + 8 + 8;
+        }
+        List<ByteBuffer> output = new ArrayList<>();
+        output.add(null);
+        for (Map.Entry<Column, ByteBuffer[]> block : blocks.entrySet()) {
+            long length = 0;
+            for (ByteBuffer part : block.getValue()) {
+                length += part.remaining();
+                output.add(part);
+            }
+            writeString(header, block.getKey().name());
+            header.writeLong(offset);
+            header.writeLong(length);
+            offset += length;
+        }
+        output.set(0, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = output.toArray(new ByteBuffer[0]);
+            int first = 0;
+            while (first < buffers.length) {
+                out.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer[] concat(ByteBuffer head, ByteBuffer[] tail) {
+        ByteBuffer[] all = new ByteBuffer[tail.length + 1];
+        all[0] = head;
+        System.arraycopy(tail, 0, all, 1, tail.length);
+        return all;
+    }
+
+    // Bits needed to hold every value from 0 to max
+    private static int bitsFor(int max) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+    }
+
+    private static final class StringEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        void add(String value) throws IOException {
+            writeString(out, value);
+        }
+
+        ByteBuffer[] finish() {
+            return new ByteBuffer[] {ByteBuffer.wrap(bytes.toByteArray())};
+        }
+    }
+
+    private static final class StringDecoder {
+        private final ByteBuffer block;
+
+        StringDecoder(ByteBuffer block) {
+            this.block = block;
+        }
+
+        String next() {
+            return readString(block);
+        }
+    }
+
+    private static final class StringListEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        void add(List<String> values) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+
+        ByteBuffer[] finish() {
+            return new ByteBuffer[] {ByteBuffer.wrap(bytes.toByteArray())};
+        }
+    }
+
+    private static final class StringListDecoder {
+        private final ByteBuffer block;
+
+        StringListDecoder(ByteBuffer block) {
+            this.block = block;
+        }
+
+        List<String> next() {
+            int size = block.getInt();
+            if (size == 0) {
+                return Collections.emptyList();
+            }
+            String[] values = new String[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = readString(block);
+            }
+            return Arrays.asList(values);
+        }
+    }
+
+    // Values are collected as ints and packed once the column's width is known
+    private static final class PackedEncoder {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        ByteBuffer[] finish(int width) {
+            ByteBuffer words = ByteBuffer.allocate(4 + 8 * (int) (((long) size * width + 63) / 64));
+            words.putInt(width);
+            long word = 0;
+            int used = 0;
+            for (int i = 0; i < size; i++) {
+                long value = values[i] & 0xFFFFFFFFL;
+                word |= value << used;
+                used += width;
+                if (used >= 64) {
+                    words.putLong(word);
+                    used -= 64;
+                    word = used == 0 ? 0 : value >>> (width - used);
+                }
+            }
+            if (used > 0) {
+                words.putLong(word);
+            }
+            words.flip();
+            return new ByteBuffer[] {words};
+        }
+    }
+
+    private static final class PackedDecoder {
+        private final ByteBuffer block;
+        private final int width;
+        private final long mask;
+        private long word;
+        private int available;
+
+        PackedDecoder(ByteBuffer block) {
+            this.block = block;
+            this.width = block.getInt();
+            this.mask = width == 64 ? -1L : (1L << width) - 1;
+        }
+
+        int next() {
+            long value;
+            if (available >= width) {
+                value = word & mask;
+                word >>>= width;
+                available -= width;
+            } else {
+                // The value straddles two words: low bits from this one, the rest from the next
+                long low = word;
+                int lowBits = available;
+                word = block.getLong();
+                value = (low | (word << lowBits)) & mask;
+                word = width - lowBits == 64 ? 0 : word >>> (width - lowBits);
+                available = 64 - (width - lowBits);
+            }
+            return (int) value;
+        }
+    }
+
+    private static final class TimestampEncoder {
+        private final PackedEncoder present = new PackedEncoder();
+        private final ByteArrayOutputStream deltas = new ByteArrayOutputStream();
+        private long previous;
+
+        void add(LocalDateTime value) {
+            present.add(value != null ? 1 : 0);
+            if (value != null) {
+                long seconds = value.toEpochSecond(ZoneOffset.UTC);
+                long delta = seconds - previous;
+                writeVarLong(deltas, (delta << 1) ^ (delta >> 63));
+                writeVarLong(deltas, value.getNano());
+                previous = seconds;
+            }
+        }
+
+        ByteBuffer[] finish() {
+            return concat(present.finish(1)[0], new ByteBuffer[] {ByteBuffer.wrap(deltas.toByteArray())});
+        }
+    }
+
+    private static final class TimestampDecoder {
+        private final PackedDecoder present;
+        private final ByteBuffer deltas;
+        private long previous;
+
+        TimestampDecoder(ByteBuffer block, int rows) {
+            int width = block.getInt(block.position());
+            int bitmapLength = 4 + 8 * (int) (((long) rows * width + 63) / 64);
+            this.present = new PackedDecoder(block.slice(block.position(), bitmapLength));
+            this.deltas = block.slice(block.position() + bitmapLength, block.remaining() - bitmapLength);
+        }
+
+        LocalDateTime next() {
+            if (present.next() == 0) {
+                return null;
+            }
+            long zigzag = readVarLong(deltas);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            return LocalDateTime.ofEpochSecond(previous, (int) readVarLong(deltas), ZoneOffset.UTC);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,218 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports tasks whose classification changes with nothing happening to the
+ * store: a deadline passing makes a task overdue, and midnight changes which
+ * tasks are due today. Deadlines are kept in a time-ordered map fed by
+ * {@link TaskManager} events, so a boundary touches only the tasks it
+ * affects, and a timer sleeps until the next boundary instead of polling.
+ *
+ * Time comes from a {@link TaskClock}. With a manual clock, call
+ * {@link #check} after moving it; the timer only follows the system clock.
+ */
+public class DayBoundaryService implements TaskManager.TaskManagerListener {
+    // Checks at least this often anyway, in case the system clock is set or the machine slept
+    private static final long MAX_SLEEP_MILLIS = 60_000;
+    private static final Logger LOGGER = Logger.getLogger(DayBoundaryService.class.getName());
+
+    public interface Listener {
+        /** Tasks that became or stopped being overdue or due today since the last check. */
+        void onTasksReclassified(List<Task> tasks);
+
+        /** The date changed, so relative dates such as "tomorrow" now mean another day. */
+        default void onDayChanged(LocalDate today) {
+        }
+    }
+
+    private final TaskManager taskManager;
+    private final TaskClock clock;
+    private final ScheduledExecutorService timer;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Every task with a deadline, by deadline then id
+    private final NavigableMap<LocalDateTime, Map<String, Task>> byDeadline = new TreeMap<>();
+    private final Map<String, Task> tracked = new HashMap<>();
+    private LocalDateTime checkedAt;
+    private ScheduledFuture<?> wakeup;
+    private LocalDateTime wakeupAt;
+
+    public DayBoundaryService(TaskManager taskManager) {
+        this(taskManager, TaskClock.get());
+    }
+
+    public DayBoundaryService(TaskManager taskManager, TaskClock clock) {
+        this.taskManager = taskManager;
+        this.clock = clock;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-day-boundary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        taskManager.addListener(this);
+        rebuild();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Re-reads the manager's contents, e.g. after a change that sent no events. */
+    public synchronized void rebuild() {
+        byDeadline.clear();
+        tracked.clear();
+        for (Task task : taskManager.snapshot()) {
+            put(task);
+        }
+        checkedAt = clock.now();
+        arm();
+    }
+
+    /**
+     * Finds the tasks whose overdue or due-today status changed since the last
+     * check and tells the listeners. Runs on the timer at each boundary; call it
+     * directly after moving a manual clock. Listeners are called with the
+     * service locked, so they must not wait on the store; hand the work to
+     * another thread instead. Returns the reclassified tasks.
+     */
+    public synchronized List<Task> check() {
+        LocalDateTime now = clock.now();
+        LocalDateTime from = now.isBefore(checkedAt) ? now : checkedAt;
+        LocalDateTime to = now.isBefore(checkedAt) ? checkedAt : now;
+        Map<String, Task> reclassified = new LinkedHashMap<>();
+        // A task is overdue once its deadline is before now, so deadlines in [from, to) flipped
+        collect(from, to, reclassified);
+        LocalDate previousDay = checkedAt.toLocalDate();
+        LocalDate today = now.toLocalDate();
+        boolean dayChanged = !today.equals(previousDay);
+        if (dayChanged) {
+            // Days in between were not today before and are not now
+            collect(previousDay.atStartOfDay(), previousDay.plusDays(1).atStartOfDay(), reclassified);
+            collect(today.atStartOfDay(), today.plusDays(1).atStartOfDay(), reclassified);
+        }
+        checkedAt = now;
+        arm();
+
+        List<Task> tasks = List.copyOf(reclassified.values());
+        for (Listener listener : listeners) {
+            if (!tasks.isEmpty()) {
+                listener.onTasksReclassified(tasks);
+            }
+            if (dayChanged) {
+                listener.onDayChanged(today);
+            }
+        }
+        return tasks;
+    }
+
+    public void shutdown() {
+        taskManager.removeListener(this);
+        timer.shutdownNow();
+    }
+
+    @Override
+    public synchronized void onTaskAdded(Task task) {
+        put(task);
+        armIfSooner(task);
+    }
+
+    @Override
+    public synchronized void onTaskRemoved(Task task) {
+        remove(task.getId());
+    }
+
+    @Override
+    public synchronized void onTaskUpdated(Task task) {
+        remove(task.getId());
+        put(task);
+        armIfSooner(task);
+    }
+
+    @Override
+    public synchronized void onTasksAdded(List<Task> tasks) {
+        for (Task task : tasks) {
+            remove(task.getId());
+            put(task);
+        }
+        arm();
+    }
+
+    @Override
+    public synchronized void onTasksRemoved(List<Task> tasks) {
+        for (Task task : tasks) {
+            remove(task.getId());
+        }
+    }
+
+    private void collect(LocalDateTime from, LocalDateTime to, Map<String, Task> into) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        for (Map<String, Task> tasks : byDeadline.subMap(from, true, to, false).values()) {
+            into.putAll(tasks);
+        }
+    }
+
+    private void put(Task task) {
+        if (task.getDeadline() == null) {
+            return;
+        }
+        tracked.put(task.getId(), task);
+        byDeadline.computeIfAbsent(task.getDeadline(), deadline -> new HashMap<>()).put(task.getId(), task);
+    }
+
+    private void remove(String id) {
+        Task previous = tracked.remove(id);
+        if (previous == null) {
+            return;
+        }
+        Map<String, Task> tasks = byDeadline.get(previous.getDeadline());
+        tasks.remove(id);
+        if (tasks.isEmpty()) {
+            byDeadline.remove(previous.getDeadline());
+        }
+    }
+
+    private void armIfSooner(Task task) {
+        LocalDateTime deadline = task.getDeadline();
+        if (deadline != null && deadline.isAfter(checkedAt) && (wakeupAt == null || deadline.isBefore(wakeupAt))) {
+            arm();
+        }
+    }
+
+    // Sleeps until just after the next deadline or midnight, whichever comes first
+    private void arm() {
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        LocalDateTime next = checkedAt.toLocalDate().plusDays(1).atStartOfDay();
+        LocalDateTime deadline = byDeadline.higherKey(checkedAt);
+        if (deadline != null && deadline.isBefore(next)) {
+            next = deadline;
+        }
+        wakeupAt = next;
+        long delay = Math.min(MAX_SLEEP_MILLIS, Math.max(0, Duration.between(clock.now(), next).toMillis() + 1));
+        try {
+            wakeup = timer.schedule(this::wake, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    private void wake() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Day boundary check failed", e);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+import java.util.*;
+
+/**
+ * Schedules tasks around their dependencies ({@link Task#getDependencies}),
+ * kept up to date from {@link TaskManager} events. A task is ready once every
+ * prerequisite that exists is completed; {@link #getReadyTasks} lists the
+ * ready ones by effective priority, which is the task's own priority raised
+ * to that of any pending task waiting on it, so a small task blocking an
+ * urgent one comes up first.
+ *
+ * The tasks are kept in a topological order, prerequisites first, maintained
+ * incrementally with the Pearce-Kelly algorithm: a new dependency reorders
+ * only the tasks between its two ends, and one that would close a cycle is
+ * left out and reported by {@link #getCyclicDependencies}. Completing a task
+ * touches only its own dependents and prerequisites, never the whole graph.
+ * A prerequisite that is not in the store does not block anything.
+ */
+public class DependencyScheduler implements TaskManager.TaskManagerListener {
+    private static final class Node {
+        final String id;
+        // Null while the id is only named as a prerequisite
+        Task task;
+        // Position in the topological order; unique, with gaps
+        int order;
+        final Set<Node> prerequisites = new HashSet<>();
+        final Set<Node> dependents = new HashSet<>();
+        // Prerequisites that exist and are not completed
+        int blockers;
+        Task.Priority effective = Task.Priority.LOW;
+        boolean ready;
+        // Scratch mark for the searches in addEdge
+        boolean visited;
+
+        Node(String id, int order) {
+            this.id = id;
+            this.order = order;
+        }
+
+        boolean pending() {
+            return task != null && !task.isCompleted();
+        }
+    }
+
+    private static final Comparator<Node> READY_ORDER = Comparator
+            .comparing((Node node) -> node.effective).reversed()
+            .thenComparing(node -> node.task.getDeadline(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(node -> node.task.getCreatedAt(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(node -> node.id);
+
+    private final TaskManager taskManager;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final NavigableMap<Integer, Node> byOrder = new TreeMap<>();
+    private final NavigableSet<Node> ready = new TreeSet<>(READY_ORDER);
+    // Dependencies left out of the order because they would close a cycle, by dependent
+    private final Map<Node, Set<String>> cyclic = new HashMap<>();
+    private int nextOrder;
+    // Modification count of the snapshot last rebuilt from, and of the newest event applied
+    private long coveredCount = -1;
+    private long appliedCount = -1;
+
+    public DependencyScheduler(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        taskManager.addListener(this);
+        rebuild();
+    }
+
+    /**
+     * Re-reads the manager's contents, e.g. after a change that sent no events.
+     * The snapshot is taken before locking the scheduler, which would otherwise
+     * wait on the store's lock while holding its own.
+     */
+    public void rebuild() {
+        while (true) {
+            TaskManager.Snapshot snapshot = taskManager.currentSnapshot();
+            synchronized (this) {
+                // An event newer than the snapshot was applied meanwhile; rebuilding would lose it
+                if (appliedCount > snapshot.modificationCount) {
+                    continue;
+                }
+                nodes.clear();
+                byOrder.clear();
+                ready.clear();
+                cyclic.clear();
+                nextOrder = 0;
+                for (Task task : snapshot.tasks) {
+                    put(task);
+                }
+                coveredCount = snapshot.modificationCount;
+                return;
+            }
+        }
+    }
+
+    public void shutdown() {
+        taskManager.removeListener(this);
+    }
+
+    /** Pending tasks with nothing left to wait for, highest effective priority first, then by deadline. */
+    public synchronized List<Task> getReadyTasks() {
+        return getReadyTasks(Integer.MAX_VALUE);
+    }
+
+    public synchronized List<Task> getReadyTasks(int limit) {
+        List<Task> tasks = new ArrayList<>(Math.min(limit, ready.size()));
+        for (Node node : ready) {
+            if (tasks.size() == limit) {
+                break;
+            }
+            tasks.add(node.task);
+        }
+        return tasks;
+    }
+
+    /** Every task, each after all of its prerequisites. */
+    public synchronized List<Task> getTopologicalOrder() {
+        List<Task> tasks = new ArrayList<>(nodes.size());
+        for (Node node : byOrder.values()) {
+            if (node.task != null) {
+                tasks.add(node.task);
+            }
+        }
+        return tasks;
+    }
+
+    public synchronized boolean isBlocked(String id) {
+        Node node = nodes.get(id);
+        return node != null && node.blockers > 0;
+    }
+
+    /** The pending prerequisites the task is waiting for. */
+    public synchronized List<Task> getBlockers(String id) {
+        Node node = nodes.get(id);
+        List<Task> blockers = new ArrayList<>();
+        if (node != null) {
+            for (Node prerequisite : node.prerequisites) {
+                if (prerequisite.pending()) {
+                    blockers.add(prerequisite.task);
+                }
+            }
+        }
+        return blockers;
+    }
+
+    /** The task's priority raised to that of the pending tasks depending on it, or null for an unknown id. */
+    public synchronized Task.Priority getEffectivePriority(String id) {
+        Node node = nodes.get(id);
+        return node != null && node.task != null ? node.effective : null;
+    }
+
+    /** Dependencies that were stored but left out because they would close a cycle, by dependent id. */
+    public synchronized Map<String, Set<String>> getCyclicDependencies() {
+        Map<String, Set<String>> result = new HashMap<>();
+        cyclic.forEach((node, ids) -> result.put(node.id, Set.copyOf(ids)));
+        return result;
+    }
+
+    /**
+     * The cycle that giving the task these dependencies would close, as ids
+     * from the task through what each depends on back to the task, or an
+     * empty list if there is none. Check before storing a change.
+     */
+    public synchronized List<String> findCycle(String taskId, Collection<String> dependencies) {
+        Node node = nodes.get(taskId);
+        for (String id : dependencies) {
+            if (id.equals(taskId)) {
+                return List.of(taskId, taskId);
+            }
+            Node target = nodes.get(id);
+            // Paths follow increasing positions, so nothing placed before the task can lead back to it
+            if (node == null || target == null || target.order < node.order) {
+                continue;
+            }
+            Map<Node, Node> reachedFrom = new HashMap<>();
+            reachedFrom.put(node, null);
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                Node current = stack.pop();
+                for (Node dependent : current.dependents) {
+                    if (dependent.order > target.order || reachedFrom.containsKey(dependent)) {
+                        continue;
+                    }
+                    reachedFrom.put(dependent, current);
+                    if (dependent == target) {
+                        List<String> cycle = new ArrayList<>();
+                        cycle.add(taskId);
+                        for (Node step = target; step != null; step = reachedFrom.get(step)) {
+                            cycle.add(step.id);
+                        }
+                        return cycle;
+                    }
+                    stack.push(dependent);
+                }
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * The first cycle that storing all of these tasks at once would close, each
+     * with its own dependencies in place of any stored ones, in the form
+     * {@link #findCycle(String, Collection)} returns; empty if there is none.
+     * The stored graph has no cycles, so every cycle runs through the batch.
+     */
+    public synchronized List<String> findCycle(Collection<Task> tasks) {
+        Map<String, List<String>> batch = new HashMap<>();
+        for (Task task : tasks) {
+            batch.put(task.getId(), task.getDependencies());
+        }
+        // Depth-first along what each task depends on; true while on the current path, false once done
+        Map<String, Boolean> onPath = new HashMap<>();
+        for (String start : batch.keySet()) {
+            if (onPath.containsKey(start)) {
+                continue;
+            }
+            Deque<String> path = new ArrayDeque<>();
+            Deque<Iterator<String>> pending = new ArrayDeque<>();
+            path.addLast(start);
+            pending.addLast(prerequisiteIds(start, batch).iterator());
+            onPath.put(start, true);
+            while (!pending.isEmpty()) {
+                Iterator<String> next = pending.peekLast();
+                if (!next.hasNext()) {
+                    onPath.put(path.removeLast(), false);
+                    pending.removeLast();
+                    continue;
+                }
+                String id = next.next();
+                Boolean state = onPath.get(id);
+                if (state == null) {
+                    path.addLast(id);
+                    pending.addLast(prerequisiteIds(id, batch).iterator());
+                    onPath.put(id, true);
+                } else if (state) {
+                    List<String> cycle = new ArrayList<>();
+                    boolean inCycle = false;
+                    for (String step : path) {
+                        inCycle |= step.equals(id);
+                        if (inCycle) {
+                            cycle.add(step);
+                        }
+                    }
+                    cycle.add(id);
+                    return cycle;
+                }
+            }
+        }
+        return List.of();
+    }
+
+    private List<String> prerequisiteIds(String id, Map<String, List<String>> batch) {
+        List<String> dependencies = batch.get(id);
+        if (dependencies != null) {
+            return dependencies;
+        }
+        Node node = nodes.get(id);
+        List<String> ids = new ArrayList<>();
+        if (node != null) {
+            node.prerequisites.forEach(prerequisite -> ids.add(prerequisite.id));
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized void onTaskAdded(Task task) {
+        if (isNew()) {
+            put(task);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskRemoved(Task task) {
+        if (isNew()) {
+            remove(task.getId());
+        }
+    }
+
+    @Override
+    public synchronized void onTaskUpdated(Task task) {
+        if (isNew()) {
+            put(task);
+        }
+    }
+
+    @Override
+    public synchronized void onTasksAdded(List<Task> tasks) {
+        if (isNew()) {
+            tasks.forEach(this::put);
+        }
+    }
+
+    @Override
+    public synchronized void onTasksRemoved(List<Task> tasks) {
+        if (isNew()) {
+            for (Task task : tasks) {
+                remove(task.getId());
+            }
+        }
+    }
+
+    // Whether the event being delivered is missing from the snapshot last rebuilt from
+    private boolean isNew() {
+        long count = taskManager.deliveringModificationCount();
+        appliedCount = Math.max(appliedCount, count);
+        return count > coveredCount;
+    }
+
+    private Node node(String id) {
+        return nodes.computeIfAbsent(id, key -> {
+            Node node = new Node(key, nextOrder++);
+            byOrder.put(node.order, node);
+            return node;
+        });
+    }
+
+    private void put(Task task) {
+        Node node = node(task.getId());
+        boolean wasPending = node.pending();
+        setReady(node, false);
+        node.task = task;
+
+        // Only the dependencies that changed touch the graph
+        Set<String> wanted = new LinkedHashSet<>(task.getDependencies());
+        List<Node> touched = new ArrayList<>();
+        boolean removed = false;
+        for (Node prerequisite : new ArrayList<>(node.prerequisites)) {
+            if (!wanted.remove(prerequisite.id)) {
+                removeEdge(prerequisite, node);
+                touched.add(prerequisite);
+                removed = true;
+            }
+        }
+        cyclic.remove(node);
+        for (String id : wanted) {
+            Node prerequisite = node(id);
+            if (addEdge(prerequisite, node)) {
+                touched.add(prerequisite);
+            } else {
+                cyclic.computeIfAbsent(node, key -> new LinkedHashSet<>()).add(id);
+                dropIfUnused(prerequisite);
+            }
+        }
+
+        if (node.pending() != wasPending) {
+            for (Node dependent : node.dependents) {
+                dependent.blockers += node.pending() ? 1 : -1;
+                refreshReady(dependent);
+            }
+            // A pending task lends its priority to its prerequisites, a completed one no longer does
+            touched.addAll(node.prerequisites);
+        }
+        touched.add(node);
+        refreshEffective(touched);
+        refreshReady(node);
+        if (removed) {
+            retryCyclic();
+        }
+    }
+
+    private void remove(String id) {
+        Node node = nodes.get(id);
+        if (node == null || node.task == null) {
+            return;
+        }
+        boolean wasPending = node.pending();
+        setReady(node, false);
+        node.task = null;
+        List<Node> touched = new ArrayList<>(node.prerequisites);
+        for (Node prerequisite : touched) {
+            removeEdge(prerequisite, node);
+        }
+        cyclic.remove(node);
+        if (wasPending) {
+            for (Node dependent : node.dependents) {
+                dependent.blockers--;
+                refreshReady(dependent);
+            }
+        }
+        // Kept while others still name it, so they wait for it again if it comes back
+        node.effective = Task.Priority.LOW;
+        dropIfUnused(node);
+        refreshEffective(touched);
+        retryCyclic();
+    }
+
+    /*
+     * Pearce-Kelly insertion of prerequisite -> dependent. If the prerequisite
+     * is already placed first, nothing moves. Otherwise the tasks reachable
+     * forward from the dependent and placed before the prerequisite, and those
+     * reachable backward from the prerequisite and placed after the dependent,
+     * swap into each other's positions. Reaching the prerequisite going
+     * forward means the edge would close a cycle.
+     */
+    private boolean addEdge(Node prerequisite, Node dependent) {
+        if (prerequisite == dependent) {
+            return false;
+        }
+        if (prerequisite.order > dependent.order) {
+            List<Node> forward = new ArrayList<>();
+            boolean acyclic = collect(dependent, prerequisite.order, true, prerequisite, forward);
+            List<Node> backward = new ArrayList<>();
+            if (acyclic) {
+                collect(prerequisite, dependent.order, false, null, backward);
+            }
+            forward.forEach(node -> node.visited = false);
+            backward.forEach(node -> node.visited = false);
+            if (!acyclic) {
+                return false;
+            }
+            reorder(backward, forward);
+        }
+        prerequisite.dependents.add(dependent);
+        dependent.prerequisites.add(prerequisite);
+        if (prerequisite.pending()) {
+            dependent.blockers++;
+            refreshReady(dependent);
+        }
+        return true;
+    }
+
+    // Depth-first over dependents (forward) or prerequisites, staying strictly inside the bound
+    private boolean collect(Node start, int bound, boolean forward, Node target, List<Node> into) {
+        Deque<Node> stack = new ArrayDeque<>();
+        start.visited = true;
+        into.add(start);
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            for (Node next : forward ? stack.pop().dependents : stack.pop().prerequisites) {
+                if (next == target) {
+                    return false;
+                }
+                if (!next.visited && (forward ? next.order < bound : next.order > bound)) {
+                    next.visited = true;
+                    into.add(next);
+                    stack.push(next);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Hands the positions the two groups held to the backward group first, each keeping its relative order
+    private void reorder(List<Node> backward, List<Node> forward) {
+        Comparator<Node> byPosition = Comparator.comparingInt(node -> node.order);
+        backward.sort(byPosition);
+        forward.sort(byPosition);
+        int[] positions = new int[backward.size() + forward.size()];
+        int i = 0;
+        for (Node node : backward) {
+            positions[i++] = node.order;
+        }
+        for (Node node : forward) {
+            positions[i++] = node.order;
+        }
+        Arrays.sort(positions);
+        i = 0;
+        for (Node node : backward) {
+            node.order = positions[i++];
+            byOrder.put(node.order, node);
+        }
+        for (Node node : forward) {
+            node.order = positions[i++];
+            byOrder.put(node.order, node);
+        }
+    }
+
+    private void removeEdge(Node prerequisite, Node dependent) {
+        prerequisite.dependents.remove(dependent);
+        dependent.prerequisites.remove(prerequisite);
+        if (prerequisite.pending()) {
+            dependent.blockers--;
+            refreshReady(dependent);
+        }
+        dropIfUnused(prerequisite);
+    }
+
+    private void dropIfUnused(Node node) {
+        if (node.task == null && node.dependents.isEmpty() && node.prerequisites.isEmpty()) {
+            nodes.remove(node.id);
+            byOrder.remove(node.order);
+        }
+    }
+
+    // A removed dependency may have broken a cycle that kept another one out
+    private void retryCyclic() {
+        if (cyclic.isEmpty()) {
+            return;
+        }
+        List<Node> touched = new ArrayList<>();
+        for (Map.Entry<Node, Set<String>> entry : new ArrayList<>(cyclic.entrySet())) {
+            Node dependent = entry.getKey();
+            for (Iterator<String> ids = entry.getValue().iterator(); ids.hasNext(); ) {
+                Node prerequisite = node(ids.next());
+                if (addEdge(prerequisite, dependent)) {
+                    ids.remove();
+                    touched.add(prerequisite);
+                } else {
+                    dropIfUnused(prerequisite);
+                }
+            }
+            if (entry.getValue().isEmpty()) {
+                cyclic.remove(dependent);
+            }
+        }
+        refreshEffective(touched);
+    }
+
+    // Recomputes effective priorities, passing each change on to the node's prerequisites
+    private void refreshEffective(Collection<Node> changed) {
+        Deque<Node> work = new ArrayDeque<>(changed);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            if (node.task == null) {
+                continue;
+            }
+            Task.Priority effective = node.task.getPriority() != null ? node.task.getPriority() : Task.Priority.LOW;
+            for (Node dependent : node.dependents) {
+                if (dependent.pending() && dependent.effective.compareTo(effective) > 0) {
+                    effective = dependent.effective;
+                }
+            }
+            if (effective != node.effective) {
+                boolean wasReady = node.ready;
+                setReady(node, false);
+                node.effective = effective;
+                setReady(node, wasReady);
+                work.addAll(node.prerequisites);
+            }
+        }
+    }
+
+    private void refreshReady(Node node) {
+        setReady(node, node.pending() && node.blockers == 0);
+    }
+
+    // The ready set is sorted by the node's task and effective priority; leave it before changing either
+    private void setReady(Node node, boolean ready) {
+        if (ready && !node.ready) {
+            this.ready.add(node);
+        } else if (!ready && node.ready) {
+            this.ready.remove(node);
+        }
+        node.ready = ready;
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A string left in a snapshot file instead of on the heap, such as a task
+ * description read by {@link BinaryTaskFormat}. {@link #get} reads the bytes
+ * through the file's {@link Source} on use and keeps the result in an LRU
+ * cache shared by all lazy text and bounded by total characters, so the text
+ * held on the heap stays within a fixed budget however many tasks are loaded.
+ */
+final class LazyText {
+    static final int CACHE_CHARS = 4 << 20;
+
+    private static final Cache CACHE = new Cache(CACHE_CHARS);
+
+    // UTF-8 length, which stays the same wherever the bytes are moved
+    private final int length;
+    private volatile Location location;
+
+    // Either a place in a source file, or the bytes themselves once copied off a closed one
+    private static final class Location {
+        final Source source;
+        final long offset;
+        final byte[] bytes;
+
+        Location(Source source, long offset, byte[] bytes) {
+            this.source = source;
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+    }
+
+    LazyText(Source source, long offset, int length) {
+        this.length = length;
+        this.location = new Location(source, offset, null);
+        source.register(this);
+    }
+
+    String get() {
+        String text = CACHE.lookup(this);
+        if (text == null) {
+            text = new String(bytes(), StandardCharsets.UTF_8);
+            CACHE.store(this, text);
+        }
+        return text;
+    }
+
+    /** The raw UTF-8 bytes, read past the cache, e.g. to copy them into a new snapshot. Not to be modified. */
+    byte[] bytes() {
+        while (true) {
+            Location at = location;
+            if (at.bytes != null) {
+                return at.bytes;
+            }
+            try {
+                return at.source.read(at.offset, length);
+            } catch (ClosedChannelException e) {
+                // The source closed under this read, after moving this text on; read it from there
+                if (location == at) {
+                    throw new UncheckedIOException(e);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    /** Points at the same bytes in another file, e.g. the snapshot about to replace the one this was read from. */
+    synchronized void moveTo(Source source, long offset) {
+        location = new Location(source, offset, null);
+        source.register(this);
+    }
+
+    // Called by a closing source before it closes its channel
+    private synchronized void copyOutOf(Source source) throws IOException {
+        Location at = location;
+        if (at.source == source) {
+            location = new Location(null, 0, source.read(at.offset, length));
+        }
+    }
+
+    /**
+     * One snapshot file that lazy text is read from, by positional reads on a
+     * channel that any number of threads share. Nothing is mapped, and closing
+     * the source first copies the bytes of any text still reading from it onto
+     * the heap, so the file can be replaced or deleted right after.
+     */
+    static final class Source implements Closeable {
+        // Only needed to reopen the channel, which follows the file across a rename
+        private volatile Path file;
+        private volatile FileChannel channel;
+        private boolean closed;
+        // Weak, so text dropped along with its task is not copied on close
+        private final Set<LazyText> texts = Collections.newSetFromMap(new WeakHashMap<>());
+
+        Source(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+
+        /** Notes that the open file was renamed, e.g. from the temp name a snapshot was written under. */
+        void renamedTo(Path file) {
+            this.file = file;
+        }
+
+        /** Whether no text reads from this source any more. */
+        synchronized boolean isUnused() {
+            return texts.isEmpty();
+        }
+
+        private synchronized void register(LazyText text) {
+            texts.add(text);
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            ByteBuffer into = ByteBuffer.wrap(bytes);
+            while (into.hasRemaining()) {
+                FileChannel current = channel;
+                try {
+                    if (current.read(into, offset + into.position()) < 0) {
+                        throw new EOFException("Lazy text runs past the end of " + file);
+                    }
+                } catch (ClosedChannelException e) {
+                    reopen(current, e);
+                }
+            }
+            return bytes;
+        }
+
+        // An interrupted read closes the channel for every thread; the others carry on with a new one
+        private synchronized void reopen(FileChannel failed, ClosedChannelException cause) throws IOException {
+            if (closed) {
+                throw cause;
+            }
+            if (channel == failed) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            if (cause instanceof ClosedByInterruptException) {
+                throw cause;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            List<LazyText> live;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                live = new ArrayList<>(texts);
+            }
+            for (LazyText text : live) {
+                text.copyOutOf(this);
+            }
+            synchronized (this) {
+                closed = true;
+                texts.clear();
+                channel.close();
+            }
+        }
+    }
+
+    // Keyed by identity: copies of a task share one LazyText, and so one cache entry
+    private static final class Cache extends LinkedHashMap<LazyText, String> {
+        private final long capacity;
+        private long chars;
+
+        Cache(long capacity) {
+            super(256, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        synchronized String lookup(LazyText text) {
+            return get(text);
+        }
+
+        synchronized void store(LazyText text, String value) {
+            String previous = put(text, value);
+            chars += value.length() - (previous != null ? previous.length() : 0);
+            Iterator<Map.Entry<LazyText, String>> eldest = entrySet().iterator();
+            // The newest entry stays even if it alone is over the budget
+            while (chars > capacity && size() > 1) {
+                chars -= eldest.next().getValue().length();
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Running task counts kept up to date from {@link TaskManager} events, so the
+ * status bar and {@link TaskStatistics} read them in O(1) instead of scanning
+ * the store. Pending deadlines still in the future are kept in a time-ordered
+ * map; a timer moves them into the overdue count as they pass and notifies
+ * change listeners, since nothing else happens to the store at that moment.
+ *
+ * Time comes from a {@link TaskClock}, as for {@link Task#isOverdue()}. With a
+ * manual clock the counts follow it when read; the timer only follows the
+ * system clock.
+ */
+public class LiveTaskStatistics implements TaskManager.TaskManagerListener {
+    private final TaskManager taskManager;
+    private final TaskClock clock;
+    private final ScheduledExecutorService timer;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Last seen state of every task, to take its old values back out on update or removal
+    private final Map<String, Task> snapshots = new HashMap<>();
+    private final Map<Task.Priority, Integer> byPriority = new EnumMap<>(Task.Priority.class);
+    private final Map<String, Integer> byCategory = new HashMap<>();
+    // Pending recurring tasks, whose later occurrences are expanded only when a window is asked for
+    private final Map<String, Task> recurring = new HashMap<>();
+    private int completed;
+    private long completedHours;
+    private int completedWithDeadline;
+
+    // Pending deadlines before the boundary are counted as overdue; later ones wait in upcoming
+    private final NavigableMap<LocalDateTime, Integer> upcoming = new TreeMap<>();
+    private LocalDateTime overdueBoundary;
+    private int overdue;
+    private ScheduledFuture<?> wakeup;
+    private LocalDateTime wakeupAt;
+
+    public LiveTaskStatistics(TaskManager taskManager) {
+        this(taskManager, TaskClock.get());
+    }
+
+    public LiveTaskStatistics(TaskManager taskManager, TaskClock clock) {
+        this.taskManager = taskManager;
+        this.clock = clock;
+        this.overdueBoundary = clock.now();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        taskManager.addListener(this);
+        rebuild();
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    /** Recounts from the manager's current contents, e.g. after a change that sent no events. */
+    public synchronized void rebuild() {
+        snapshots.clear();
+        byPriority.clear();
+        byCategory.clear();
+        recurring.clear();
+        completed = 0;
+        completedHours = 0;
+        completedWithDeadline = 0;
+        upcoming.clear();
+        overdueBoundary = clock.now();
+        overdue = 0;
+        for (Task task : taskManager.snapshot()) {
+            put(task);
+        }
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTaskAdded(Task task) {
+        put(task);
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTaskRemoved(Task task) {
+        Task previous = snapshots.remove(task.getId());
+        if (previous != null) {
+            subtract(previous);
+        }
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTaskUpdated(Task task) {
+        put(task);
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTasksAdded(List<Task> tasks) {
+        tasks.forEach(this::put);
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTasksRemoved(List<Task> tasks) {
+        for (Task task : tasks) {
+            Task previous = snapshots.remove(task.getId());
+            if (previous != null) {
+                subtract(previous);
+            }
+        }
+        armWakeup();
+    }
+
+    public synchronized int getTotalTasks() {
+        return snapshots.size();
+    }
+
+    public synchronized int getCompletedTasks() {
+        return completed;
+    }
+
+    public synchronized int getPendingTasks() {
+        return snapshots.size() - completed;
+    }
+
+    public synchronized int getOverdueTasks() {
+        advance(clock.now());
+        return overdue;
+    }
+
+    public synchronized Map<Task.Priority, Long> getTasksByPriorityCount() {
+        Map<Task.Priority, Long> counts = new EnumMap<>(Task.Priority.class);
+        byPriority.forEach((priority, count) -> counts.put(priority, (long) count));
+        return counts;
+    }
+
+    public synchronized Map<String, Long> getTasksByCategoryCount() {
+        Map<String, Long> counts = new HashMap<>();
+        byCategory.forEach((category, count) -> counts.put(category, (long) count));
+        return counts;
+    }
+
+    /**
+     * Pending deadlines strictly between now and now plus the window. Every
+     * open occurrence of a recurring task in the window counts, not only its
+     * current deadline.
+     */
+    public synchronized long getTasksDueWithin(Duration window) {
+        LocalDateTime now = clock.now();
+        LocalDateTime end = now.plus(window);
+        advance(now);
+        long count = 0;
+        for (int tasksAtDeadline : upcoming.subMap(now, false, end, false).values()) {
+            count += tasksAtDeadline;
+        }
+        for (Task task : recurring.values()) {
+            for (LocalDateTime occurrence : task.occurrencesBetween(now, end)) {
+                // The current deadline is already in upcoming
+                if (occurrence.isAfter(now) && occurrence.isAfter(task.getDeadline())
+                        && !task.getRecurrence().isDone(occurrence)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Mean hours between creation and deadline over completed tasks that have a deadline. */
+    public synchronized double getAverageCompletionHours() {
+        return completedWithDeadline == 0 ? 0.0 : (double) completedHours / completedWithDeadline;
+    }
+
+    public void shutdown() {
+        taskManager.removeListener(this);
+        timer.shutdownNow();
+    }
+
+    private void put(Task task) {
+        Task previous = snapshots.put(task.getId(), task);
+        if (previous != null) {
+            subtract(previous);
+        }
+        byPriority.merge(task.getPriority(), 1, Integer::sum);
+        byCategory.merge(task.getCategory(), 1, Integer::sum);
+        if (task.isCompleted()) {
+            completed++;
+            if (task.getDeadline() != null && task.getCreatedAt() != null) {
+                completedHours += ChronoUnit.HOURS.between(task.getCreatedAt(), task.getDeadline());
+                completedWithDeadline++;
+            }
+        } else if (task.getDeadline() != null) {
+            if (task.isRecurring()) {
+                recurring.put(task.getId(), task);
+            }
+            if (task.getDeadline().isBefore(overdueBoundary)) {
+                overdue++;
+            } else {
+                upcoming.merge(task.getDeadline(), 1, Integer::sum);
+            }
+        }
+    }
+
+    private void subtract(Task task) {
+        byPriority.computeIfPresent(task.getPriority(), (key, count) -> count > 1 ? count - 1 : null);
+        byCategory.computeIfPresent(task.getCategory(), (key, count) -> count > 1 ? count - 1 : null);
+        if (task.isCompleted()) {
+            completed--;
+            if (task.getDeadline() != null && task.getCreatedAt() != null) {
+                completedHours -= ChronoUnit.HOURS.between(task.getCreatedAt(), task.getDeadline());
+                completedWithDeadline--;
+            }
+        } else if (task.getDeadline() != null) {
+            if (task.isRecurring()) {
+                recurring.remove(task.getId());
+            }
+            if (task.getDeadline().isBefore(overdueBoundary)) {
+                overdue--;
+            } else {
+                upcoming.computeIfPresent(task.getDeadline(), (key, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    // Moves every pending deadline that has passed into the overdue count
+    private boolean advance(LocalDateTime now) {
+        if (!now.isAfter(overdueBoundary)) {
+            return false;
+        }
+        boolean changed = false;
+        Map<LocalDateTime, Integer> passed = upcoming.headMap(now, false);
+        for (int count : passed.values()) {
+            overdue += count;
+            changed = true;
+        }
+        passed.clear();
+        overdueBoundary = now;
+        return changed;
+    }
+
+    private void armWakeup() {
+        if (timer.isShutdown()) {
+            return;
+        }
+        LocalDateTime next = upcoming.isEmpty() ? null : upcoming.firstKey();
+        if (Objects.equals(next, wakeupAt)) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+            wakeup = null;
+        }
+        wakeupAt = next;
+        if (next != null) {
+            // Fire just after the deadline so it is strictly in the past
+            long delay = Math.max(0, Duration.between(clock.now(), next).toMillis() + 1);
+            wakeup = timer.schedule(this::onDeadlinePassed, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onDeadlinePassed() {
+        boolean changed;
+        synchronized (this) {
+            wakeup = null;
+            wakeupAt = null;
+            changed = advance(clock.now());
+            armWakeup();
+        }
+        if (changed) {
+            changeListeners.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Writes reminders to a {@link Logger}, for running without a display. */
+public class LoggingReminderSink implements ReminderSink {
+    private final Logger logger;
+
+    public LoggingReminderSink() {
+        this(Logger.getLogger("TaskReminders"));
+    }
+
+    public LoggingReminderSink(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void deliver(List<Reminder> reminders) {
+        for (Reminder reminder : reminders) {
+            logger.log(reminder.getKind() == Reminder.Kind.OVERDUE ? Level.WARNING : Level.INFO,
+                    reminder.getMessage());
+        }
+    }
+}
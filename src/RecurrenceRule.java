@@ -0,0 +1,467 @@
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * When a recurring task comes due, in the manner of an iCalendar RRULE: daily,
+ * weekly on given days or monthly on the start's day of the month, every
+ * {@code interval} periods from {@link #getStart}, optionally ending after a
+ * date or a number of occurrences.
+ *
+ * Occurrences are never stored. {@link #occurrencesBetween} computes those in
+ * a window on demand, jumping straight to the window's first period. The rule
+ * also records which occurrences are done: every one up to a watermark, plus
+ * the few completed out of order after it, so a series completed in order
+ * keeps a constant size however long it runs.
+ *
+ * The text form from {@link #toString} and {@link #parse} is how every task
+ * format stores a rule, e.g.
+ * {@code FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10;DTSTART=20260302T090000;DONE-THROUGH=20260304T090000}.
+ * Times are kept to the second.
+ */
+public final class RecurrenceRule implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss");
+    private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    private static final LocalDateTime[] NONE = new LocalDateTime[0];
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    private final Frequency frequency;
+    private final int interval;
+    private final LocalDateTime start;
+    // Weekly only: the days of each week, in week order
+    private final DayOfWeek[] days;
+    private final LocalDateTime until;
+    private final int count;
+    // Every occurrence up to and including this one is done
+    private final LocalDateTime doneThrough;
+    // Occurrences after doneThrough that are done, in order
+    private final LocalDateTime[] done;
+    // Built on first use, as the table asks for it on every repaint
+    private transient String description;
+
+    private RecurrenceRule(Frequency frequency, int interval, LocalDateTime start, DayOfWeek[] days,
+                           LocalDateTime until, int count, LocalDateTime doneThrough, LocalDateTime[] done) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Recurrence interval must be at least 1");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Recurrence count must not be negative");
+        }
+        this.frequency = Objects.requireNonNull(frequency, "frequency");
+        this.interval = interval;
+        this.start = start.truncatedTo(ChronoUnit.SECONDS);
+        this.days = days;
+        this.until = until;
+        this.count = count;
+        this.doneThrough = doneThrough;
+        this.done = done;
+    }
+
+    public static RecurrenceRule daily(LocalDateTime start) {
+        return new RecurrenceRule(Frequency.DAILY, 1, start, null, null, 0, null, NONE);
+    }
+
+    /** Weekly on the given days, or on the start's day of the week if none are given. */
+    public static RecurrenceRule weekly(LocalDateTime start, DayOfWeek... days) {
+        EnumSet<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+        set.addAll(Arrays.asList(days));
+        if (set.isEmpty()) {
+            set.add(start.getDayOfWeek());
+        }
+        return new RecurrenceRule(Frequency.WEEKLY, 1, start, set.toArray(new DayOfWeek[0]), null, 0, null, NONE);
+    }
+
+    /** Monthly on the start's day of the month; months too short for that day are skipped. */
+    public static RecurrenceRule monthly(LocalDateTime start) {
+        return new RecurrenceRule(Frequency.MONTHLY, 1, start, null, null, 0, null, NONE);
+    }
+
+    // Changing when the series runs starts it afresh, with nothing done
+    public RecurrenceRule withInterval(int interval) {
+        return new RecurrenceRule(frequency, interval, start, days, until, count, null, NONE);
+    }
+
+    /** Ends the series after the given time, inclusive; null for no end date. */
+    public RecurrenceRule withUntil(LocalDateTime until) {
+        return new RecurrenceRule(frequency, interval, start, days, until, count, null, NONE);
+    }
+
+    /** Ends the series after this many occurrences; 0 for no limit. */
+    public RecurrenceRule withCount(int count) {
+        return new RecurrenceRule(frequency, interval, start, days, until, count, null, NONE);
+    }
+
+    public RecurrenceRule withStart(LocalDateTime start) {
+        return new RecurrenceRule(frequency, interval, start, days, until, count, null, NONE);
+    }
+
+    public Frequency getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public LocalDateTime getStart() { return start; }
+    public LocalDateTime getUntil() { return until; }
+    public int getCount() { return count; }
+
+    public Set<DayOfWeek> getDays() {
+        return days == null ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(days)));
+    }
+
+    /** Every occurrence from {@code from} inclusive to {@code to} exclusive, done or not; to may be null for no end. */
+    public Iterable<LocalDateTime> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+        return () -> new Cursor(from, to);
+    }
+
+    public boolean isOccurrence(LocalDateTime time) {
+        Cursor cursor = new Cursor(time, null);
+        return cursor.hasNext() && cursor.next().equals(time);
+    }
+
+    public boolean isDone(LocalDateTime occurrence) {
+        return (doneThrough != null && !occurrence.isAfter(doneThrough)) || Arrays.binarySearch(done, occurrence) >= 0;
+    }
+
+    /** The first occurrence not yet done, or null once the series is over. */
+    public LocalDateTime nextPending() {
+        return nextPending(start);
+    }
+
+    /** The first occurrence at or after the given time that is not done yet, or null if there is none. */
+    public LocalDateTime nextPending(LocalDateTime from) {
+        if (doneThrough != null && !from.isAfter(doneThrough)) {
+            from = doneThrough.plusNanos(1);
+        }
+        for (LocalDateTime occurrence : occurrencesBetween(from, null)) {
+            if (Arrays.binarySearch(done, occurrence) < 0) {
+                return occurrence;
+            }
+        }
+        return null;
+    }
+
+    /** A copy with the occurrence marked done. */
+    public RecurrenceRule withDone(LocalDateTime occurrence) {
+        if (isDone(occurrence)) {
+            return this;
+        }
+        if (!isOccurrence(occurrence)) {
+            throw new IllegalArgumentException(occurrence + " is not an occurrence of " + this);
+        }
+        LocalDateTime[] marked = Arrays.copyOf(done, done.length + 1);
+        marked[done.length] = occurrence;
+        Arrays.sort(marked);
+
+        // Fold the done occurrences that now directly follow the watermark into it
+        LocalDateTime through = doneThrough;
+        int folded = 0;
+        for (LocalDateTime next : occurrencesBetween(through != null ? through.plusNanos(1) : start, null)) {
+            if (folded == marked.length || !marked[folded].equals(next)) {
+                break;
+            }
+            through = next;
+            folded++;
+        }
+        return new RecurrenceRule(frequency, interval, start, days, until, count, through,
+                Arrays.copyOfRange(marked, folded, marked.length));
+    }
+
+    /** A short description for display, such as "Every 2 weeks on Mon, Fri, 10 times". */
+    public String describe() {
+        String described = description;
+        if (described == null) {
+            described = buildDescription();
+            description = described;
+        }
+        return described;
+    }
+
+    private String buildDescription() {
+        StringBuilder text = new StringBuilder();
+        String unit = frequency == Frequency.DAILY ? "day" : frequency == Frequency.WEEKLY ? "week" : "month";
+        if (interval == 1) {
+            text.append(frequency == Frequency.DAILY ? "Daily" : frequency == Frequency.WEEKLY ? "Weekly" : "Monthly");
+        } else {
+            text.append("Every ").append(interval).append(' ').append(unit).append('s');
+        }
+        if (frequency == Frequency.WEEKLY) {
+            text.append(" on ");
+            for (int i = 0; i < days.length; i++) {
+                text.append(i > 0 ? ", " : "").append(days[i].getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+            }
+        } else if (frequency == Frequency.MONTHLY) {
+            text.append(" on day ").append(start.getDayOfMonth());
+        }
+        if (count > 0) {
+            text.append(", ").append(count).append(count == 1 ? " time" : " times");
+        }
+        if (until != null) {
+            text.append(", until ").append(until.format(UNTIL_FORMAT));
+        }
+        return text.toString();
+    }
+
+    /** Reads the text form written by {@link #toString}. */
+    public static RecurrenceRule parse(String text) {
+        Frequency frequency = null;
+        int interval = 1;
+        LocalDateTime start = null;
+        DayOfWeek[] days = null;
+        LocalDateTime until = null;
+        int count = 0;
+        LocalDateTime doneThrough = null;
+        LocalDateTime[] done = NONE;
+        try {
+            for (String part : text.trim().split(";")) {
+                int equals = part.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected NAME=VALUE but found '" + part + "'");
+                }
+                String value = part.substring(equals + 1).trim();
+                switch (part.substring(0, equals).trim().toUpperCase(Locale.ROOT)) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "DTSTART":
+                        start = parseTime(value);
+                        break;
+                    case "BYDAY":
+                        EnumSet<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+                        for (String day : value.split(",")) {
+                            set.add(parseDay(day.trim()));
+                        }
+                        days = set.toArray(new DayOfWeek[0]);
+                        break;
+                    case "UNTIL":
+                        until = parseTime(value);
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        break;
+                    case "DONE-THROUGH":
+                        doneThrough = parseTime(value);
+                        break;
+                    case "DONE":
+                        String[] times = value.split(",");
+                        done = new LocalDateTime[times.length];
+                        for (int i = 0; i < times.length; i++) {
+                            done[i] = parseTime(times[i].trim());
+                        }
+                        Arrays.sort(done);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown recurrence part '" + part + "'");
+                }
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid recurrence rule '" + text + "': " + e.getMessage(), e);
+        }
+        if (frequency == null || start == null) {
+            throw new IllegalArgumentException("A recurrence rule needs FREQ and DTSTART: '" + text + "'");
+        }
+        if (frequency == Frequency.WEEKLY && days == null) {
+            days = new DayOfWeek[] {start.getDayOfWeek()};
+        } else if (frequency != Frequency.WEEKLY && days != null) {
+            throw new IllegalArgumentException("BYDAY only applies to weekly rules: '" + text + "'");
+        }
+        return new RecurrenceRule(frequency, interval, start, days, until, count, doneThrough, done);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) {
+            text.append(";INTERVAL=").append(interval);
+        }
+        if (days != null) {
+            text.append(";BYDAY=");
+            for (int i = 0; i < days.length; i++) {
+                text.append(i > 0 ? "," : "").append(days[i].name(), 0, 2);
+            }
+        }
+        if (until != null) {
+            text.append(";UNTIL=").append(until.format(TIME_FORMAT));
+        }
+        if (count > 0) {
+            text.append(";COUNT=").append(count);
+        }
+        text.append(";DTSTART=").append(start.format(TIME_FORMAT));
+        if (doneThrough != null) {
+            text.append(";DONE-THROUGH=").append(doneThrough.format(TIME_FORMAT));
+        }
+        if (done.length > 0) {
+            text.append(";DONE=");
+            for (int i = 0; i < done.length; i++) {
+                text.append(i > 0 ? "," : "").append(done[i].format(TIME_FORMAT));
+            }
+        }
+        return text.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecurrenceRule)) return false;
+        return toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        return LocalDateTime.parse(value, TIME_FORMAT);
+    }
+
+    private static DayOfWeek parseDay(String value) {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().startsWith(value.toUpperCase(Locale.ROOT)) && value.length() >= 2) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day '" + value + "'");
+    }
+
+    /*
+     * Walks the series from the first period that can reach the window. Each
+     * period (a day, week or month, times the interval) has one slot per
+     * occurrence it can hold; index counts the occurrences before the current
+     * slot, so COUNT holds without generating the ones before the window.
+     */
+    private final class Cursor implements Iterator<LocalDateTime> {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private long period;
+        private int slot;
+        private long index;
+        private LocalDateTime next;
+        private boolean finished;
+
+        Cursor(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+            if (from.isAfter(start)) {
+                period = Math.floorDiv(periodsBetween(from), interval);
+            }
+            index = occurrencesBefore(period);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                next = find();
+                finished = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public LocalDateTime next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LocalDateTime result = next;
+            next = null;
+            return result;
+        }
+
+        private LocalDateTime find() {
+            while (count == 0 || index < count) {
+                LocalDateTime candidate = candidate(period, slot);
+                if (++slot == slotsPerPeriod()) {
+                    slot = 0;
+                    period++;
+                }
+                // Days of the first week before the start, and months without the day, are not occurrences
+                if (candidate == null || candidate.isBefore(start)) {
+                    continue;
+                }
+                if (until != null && candidate.isAfter(until)) {
+                    return null;
+                }
+                index++;
+                if (to != null && !candidate.isBefore(to)) {
+                    return null;
+                }
+                if (!candidate.isBefore(from)) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+    }
+
+    private int slotsPerPeriod() {
+        return frequency == Frequency.WEEKLY ? days.length : 1;
+    }
+
+    // Whole days, weeks or months from the start's to the time's
+    private long periodsBetween(LocalDateTime time) {
+        switch (frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS.between(start.toLocalDate(), time.toLocalDate());
+            case WEEKLY:
+                return ChronoUnit.WEEKS.between(weekOf(start), weekOf(time));
+            default:
+                return ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(time));
+        }
+    }
+
+    // Occurrences in the periods before the given one
+    private long occurrencesBefore(long period) {
+        if (period == 0) {
+            return 0;
+        }
+        switch (frequency) {
+            case DAILY:
+                return period;
+            case WEEKLY:
+                int beforeStart = 0;
+                while (beforeStart < days.length && days[beforeStart].compareTo(start.getDayOfWeek()) < 0) {
+                    beforeStart++;
+                }
+                return period * days.length - beforeStart;
+            default:
+                if (start.getDayOfMonth() <= 28) {
+                    return period;
+                }
+                long occurrences = 0;
+                for (long p = 0; p < period; p++) {
+                    if (candidate(p, 0) != null) {
+                        occurrences++;
+                    }
+                }
+                return occurrences;
+        }
+    }
+
+    // The slot's time, or null for a month too short for the start's day
+    private LocalDateTime candidate(long period, int slot) {
+        long periods = period * interval;
+        switch (frequency) {
+            case DAILY:
+                return start.plusDays(periods);
+            case WEEKLY:
+                return weekOf(start).plusWeeks(periods).plusDays(days[slot].getValue() - 1).atTime(start.toLocalTime());
+            default:
+                YearMonth month = YearMonth.from(start).plusMonths(periods);
+                int day = start.getDayOfMonth();
+                return day <= month.lengthOfMonth() ? month.atDay(day).atTime(start.toLocalTime()) : null;
+        }
+    }
+
+    private static LocalDate weekOf(LocalDateTime time) {
+        return time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+}
@@ -0,0 +1,49 @@
+import java.time.LocalDateTime;
+
+/**
+ * One notification about a task, produced by {@link TaskReminderService}
+ * and handed to a {@link ReminderSink} in batches.
+ */
+public class Reminder {
+    public enum Kind { DUE_SOON, OVERDUE }
+
+    private final Task task;
+    private final Kind kind;
+    private final long minutesUntilDeadline;
+    private final LocalDateTime deadline;
+
+    public Reminder(Task task, Kind kind, long minutesUntilDeadline) {
+        this(task, kind, minutesUntilDeadline, task.getDeadline());
+    }
+
+    /** A reminder of one occurrence of a recurring task, which may not be its current deadline. */
+    public Reminder(Task task, Kind kind, long minutesUntilDeadline, LocalDateTime deadline) {
+        this.task = task;
+        this.kind = kind;
+        this.minutesUntilDeadline = minutesUntilDeadline;
+        this.deadline = deadline;
+    }
+
+    public Task getTask() { return task; }
+
+    public Kind getKind() { return kind; }
+
+    public long getMinutesUntilDeadline() { return minutesUntilDeadline; }
+
+    public LocalDateTime getDeadline() { return deadline; }
+
+    public String getMessage() {
+        if (kind == Kind.DUE_SOON) {
+            return String.format("Task '%s' is due in %d minutes! Priority: %s",
+                    task.getTitle(), minutesUntilDeadline, task.getPriority());
+        }
+        return String.format("Task '%s' is overdue! Deadline was: %s",
+                task.getTitle(), deadline == null || deadline.equals(task.getDeadline())
+                        ? task.getFormattedDeadline() : Task.formatDeadline(deadline));
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,10 @@
+import java.util.List;
+
+/**
+ * Destination for reminders. {@link TaskReminderService} calls {@link #deliver}
+ * from its own thread with every reminder that came due within one coalescing
+ * window, each (task, kind) pair at most once per deadline.
+ */
+public interface ReminderSink {
+    void deliver(List<Reminder> reminders);
+}
@@ -0,0 +1,509 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Task store split into shards by a key such as the category or owner, each
+ * shard a {@link TaskManager} of its own with its own lock, indexes and file.
+ * Writers to different shards never wait for each other, and loading or
+ * saving works through all shard files at once. Reads across shards merge
+ * the shards' ordered views, so the global priority order needs no re-sort.
+ *
+ * Each shard is one file in the store's directory, named after its key, and
+ * the store remembers which shard holds each id. A change that gives a task
+ * another key removes it from one shard and adds it to the other, keeping its
+ * version. Changes and lookups through the store lock the id's stripe, so a
+ * move never interleaves with another change to the task and a lookup never
+ * finds it between shards.
+ */
+public class ShardedTaskStore implements Closeable {
+    public static final String DEFAULT_SHARD = "default";
+    private static final int ID_LOCKS = 64;
+
+    /**
+     * Shards by category, ignoring case like the category index, so "Work" and
+     * "work" share one file even on a case-insensitive file system; tasks
+     * without a category share the default shard.
+     */
+    public static final Function<Task, String> BY_CATEGORY = task ->
+            task.getCategory() == null || task.getCategory().isBlank() ? DEFAULT_SHARD
+                    : task.getCategory().toLowerCase(Locale.ROOT);
+
+    private final Path directory;
+    private final String extension;
+    private final Function<Task, String> shardKey;
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    // Which shard holds each id, so a lookup does not ask every shard
+    private final Map<String, String> shardById = new ConcurrentHashMap<>();
+    // Files of shards that load found empty, deleted by the next save
+    private final Set<Path> retiredFiles = ConcurrentHashMap.newKeySet();
+    private final List<TaskManager.TaskManagerListener> listeners = new CopyOnWriteArrayList<>();
+    // Striped by id; a batch takes its stripes in index order, so two batches never deadlock
+    private final ReentrantLock[] idLocks = new ReentrantLock[ID_LOCKS];
+    // Guarded by this, like shard creation
+    private boolean journaling;
+
+    private static final class Shard {
+        final String key;
+        final Path file;
+        final TaskManager taskManager = new TaskManager();
+        final TaskPersistence persistence;
+        TaskJournal journal;
+
+        Shard(String key, Path file) {
+            this.key = key;
+            this.file = file;
+            this.persistence = new TaskPersistence(file.toString());
+        }
+    }
+
+    /** Category shards stored as JSON files in the given directory. */
+    public ShardedTaskStore(String directory) {
+        this(directory, ".json", BY_CATEGORY);
+    }
+
+    /**
+     * @param extension file extension of every shard, e.g. {@code .json} or {@value BinaryTaskFormat#EXTENSION}
+     * @param shardKey  maps a task to its shard; must never return null
+     */
+    public ShardedTaskStore(String directory, String extension, Function<Task, String> shardKey) {
+        this.directory = Paths.get(directory);
+        this.extension = extension;
+        this.shardKey = shardKey;
+        for (int i = 0; i < idLocks.length; i++) {
+            idLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public void addListener(TaskManager.TaskManagerListener listener) {
+        listeners.add(listener);
+        shards.values().forEach(shard -> shard.taskManager.addListener(listener));
+    }
+
+    public void removeListener(TaskManager.TaskManagerListener listener) {
+        listeners.remove(listener);
+        shards.values().forEach(shard -> shard.taskManager.removeListener(listener));
+    }
+
+    /**
+     * Replaces the contents with the shard files in the directory, reading and
+     * indexing them in parallel. Tasks found in a file whose key they no longer
+     * match are moved to their own shard; the next {@link #save} puts them there
+     * on disk and deletes files left with no tasks, such as one named before
+     * the key function changed.
+     */
+    public void load() throws IOException {
+        Files.createDirectories(directory);
+        // A shard created since the last save has only a journal so far
+        Set<String> loadedKeys = new TreeSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                "*{" + extension + "," + extension + TaskPersistence.JOURNAL_SUFFIX + "}")) {
+            for (Path file : stream) {
+                loadedKeys.add(keyOf(file));
+            }
+        }
+        shardById.clear();
+        List<List<Task>> misplaced = inParallel(new ArrayList<>(loadedKeys), key -> {
+            Shard shard = shard(key);
+            List<Task> own = new ArrayList<>();
+            List<Task> moved = new ArrayList<>();
+            for (Task task : shard.persistence.loadTasks()) {
+                if (!key.equals(shardKey.apply(task))) {
+                    moved.add(task);
+                } else if (shardById.putIfAbsent(task.getId(), key) == null) {
+                    // A task copied between files by hand stays in the shard that claimed it first
+                    own.add(task);
+                }
+            }
+            shard.taskManager.replaceAll(own);
+            return moved;
+        });
+        shards.forEach((key, shard) -> {
+            if (!loadedKeys.contains(key)) {
+                shard.taskManager.clearAllTasks();
+            }
+        });
+        for (List<Task> tasks : misplaced) {
+            for (Task task : tasks) {
+                if (!shardById.containsKey(task.getId())) {
+                    addTask(task);
+                }
+            }
+        }
+        for (String key : loadedKeys) {
+            Shard shard = shards.get(key);
+            if (shard.taskManager.snapshot().isEmpty()) {
+                retire(shard);
+            }
+        }
+    }
+
+    /** Writes every shard's snapshot to its file, all shards at once. */
+    public void save() throws IOException {
+        Files.createDirectories(directory);
+        deleteRetiredFiles();
+        inParallel(new ArrayList<>(shards.values()), shard -> {
+            shard.persistence.saveTasks(shard.taskManager.snapshot());
+            return null;
+        });
+    }
+
+    /** Journals every change per shard, including shards created later; see {@link TaskPersistence#attachJournal}. */
+    public synchronized void attachJournals() throws IOException {
+        journaling = true;
+        for (Shard shard : shards.values()) {
+            if (shard.journal == null) {
+                shard.journal = shard.persistence.attachJournal(shard.taskManager);
+            }
+        }
+    }
+
+    /** Closes the shard journals; changes made afterwards are only kept by {@link #save}. */
+    @Override
+    public synchronized void close() throws IOException {
+        journaling = false;
+        for (Shard shard : shards.values()) {
+            if (shard.journal != null) {
+                shard.taskManager.removeListener(shard.journal);
+                shard.journal.close();
+                shard.journal = null;
+            }
+        }
+    }
+
+    /** Adds a task, or replaces the one with its id as an update of it, wherever that one is stored. */
+    public void addTask(Task task) {
+        withIdLock(task.getId(), () -> {
+            String key = shardKey.apply(task);
+            String previous = shardById.put(task.getId(), key);
+            Task stored = previous != null && !previous.equals(key) ? moveOut(previous, task) : task;
+            shard(key).taskManager.addTask(stored);
+            return null;
+        });
+    }
+
+    /** Adds a batch, one bulk addition per shard it touches; the last copy of a repeated id wins. */
+    public void addAll(Collection<Task> tasks) {
+        Map<String, Task> latest = new LinkedHashMap<>();
+        tasks.forEach(task -> latest.put(task.getId(), task));
+        BitSet stripes = new BitSet(ID_LOCKS);
+        latest.keySet().forEach(id -> stripes.set(stripe(id)));
+        stripes.stream().forEach(stripe -> idLocks[stripe].lock());
+        try {
+            Map<String, List<Task>> byShard = new LinkedHashMap<>();
+            for (Task task : latest.values()) {
+                String key = shardKey.apply(task);
+                String previous = shardById.put(task.getId(), key);
+                Task stored = previous != null && !previous.equals(key) ? moveOut(previous, task) : task;
+                byShard.computeIfAbsent(key, k -> new ArrayList<>()).add(stored);
+            }
+            byShard.forEach((key, batch) -> shard(key).taskManager.addAll(batch));
+        } finally {
+            stripes.stream().forEach(stripe -> idLocks[stripe].unlock());
+        }
+    }
+
+    public boolean removeTask(String id) {
+        return withIdLock(id, () -> {
+            String key = shardById.remove(id);
+            return key != null && shards.get(key).taskManager.removeTask(id);
+        });
+    }
+
+    public Task getTask(String id) {
+        return withIdLock(id, () -> {
+            Shard shard = shardOf(id);
+            return shard != null ? shard.taskManager.getTask(id) : null;
+        });
+    }
+
+    /** Same contract as {@link TaskManager#updateTask(Task)}, moving the task if its key changed. */
+    public Task updateTask(Task task) {
+        return withIdLock(task.getId(), () -> {
+            Shard source = shardOf(task.getId());
+            if (source == null) {
+                throw new NoSuchElementException("No task with id " + task.getId());
+            }
+            return moveIfNeeded(source, source.taskManager.updateTask(task));
+        });
+    }
+
+    /** Same contract as {@link TaskManager#updateTask(String, UnaryOperator)}, moving the task if its key changed. */
+    public Task updateTask(String id, UnaryOperator<Task> change) {
+        return withIdLock(id, () -> {
+            Shard source = shardOf(id);
+            if (source == null) {
+                return null;
+            }
+            Task stored = source.taskManager.updateTask(id, change);
+            return stored != null ? moveIfNeeded(source, stored) : null;
+        });
+    }
+
+    /** Every task in priority order, merged from the shards' snapshots. */
+    public List<Task> getAllTasks() {
+        List<List<Task>> runs = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            runs.add(shard.taskManager.snapshot());
+        }
+        return merge(runs, TaskIndex.PRIORITY_ORDER, 0, -1);
+    }
+
+    /**
+     * The page of tasks matching the query across all shards. Each shard
+     * answers with its first offset + limit matches in the query's order,
+     * and the pages are merged.
+     */
+    public List<Task> query(TaskQuery query) {
+        TaskQuery perShard = query.offset(0);
+        if (query.getLimit() >= 0) {
+            perShard = perShard.limit((int) Math.min(Integer.MAX_VALUE, (long) query.getOffset() + query.getLimit()));
+        }
+        List<List<Task>> runs = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            runs.add(shard.taskManager.query(perShard));
+        }
+        return merge(runs, TaskIndex.sortOrder(query.getSort(), query.isDescending()), query.getOffset(), query.getLimit());
+    }
+
+    public int count(TaskQuery query) {
+        int count = 0;
+        for (Shard shard : shards.values()) {
+            count += shard.taskManager.count(query);
+        }
+        return count;
+    }
+
+    public SortedSet<String> getShardKeys() {
+        return new TreeSet<>(shards.keySet());
+    }
+
+    /**
+     * The manager holding one shard, or null if there is no such shard yet.
+     * Add and remove tasks through the store, which keeps track of where each id is.
+     */
+    public TaskManager getShard(String key) {
+        Shard shard = shards.get(key);
+        return shard != null ? shard.taskManager : null;
+    }
+
+    // Called with the id's stripe locked, so stored is still the task's latest version
+    private Task moveIfNeeded(Shard source, Task stored) {
+        String key = shardKey.apply(stored);
+        if (key.equals(source.key)) {
+            return stored;
+        }
+        if (source.taskManager.removeTask(stored.getId())) {
+            shardById.put(stored.getId(), key);
+            shard(key).taskManager.addTask(stored);
+        }
+        return stored;
+    }
+
+    // Takes a task out of the shard it is leaving; the copy replacing it continues from its version
+    private Task moveOut(String key, Task task) {
+        TaskManager source = shards.get(key).taskManager;
+        Task current = source.getTask(task.getId());
+        if (current == null || !source.removeTask(task.getId())) {
+            return task;
+        }
+        return task.withVersion(current.getVersion() + 1);
+    }
+
+    private <T> T withIdLock(String id, Supplier<T> action) {
+        ReentrantLock lock = idLocks[stripe(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(String id) {
+        return Math.floorMod(id.hashCode(), ID_LOCKS);
+    }
+
+    private String keyOf(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(TaskPersistence.JOURNAL_SUFFIX)) {
+            name = name.substring(0, name.length() - TaskPersistence.JOURNAL_SUFFIX.length());
+        }
+        return URLDecoder.decode(name.substring(0, name.length() - extension.length()), StandardCharsets.UTF_8);
+    }
+
+    private Shard shardOf(String id) {
+        String key = shardById.get(id);
+        return key != null ? shards.get(key) : null;
+    }
+
+    // Existing shards are found without locking; only creating one is serialised
+    private Shard shard(String key) {
+        Shard shard = shards.get(key);
+        return shard != null ? shard : createShard(key);
+    }
+
+    private synchronized Shard createShard(String key) {
+        Shard shard = shards.get(key);
+        if (shard != null) {
+            return shard;
+        }
+        shard = new Shard(key, directory.resolve(URLEncoder.encode(key, StandardCharsets.UTF_8) + extension));
+        listeners.forEach(shard.taskManager::addListener);
+        retiredFiles.remove(shard.file);
+        retiredFiles.remove(journalOf(shard.file));
+        if (journaling) {
+            try {
+                shard.journal = shard.persistence.attachJournal(shard.taskManager);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        shards.put(key, shard);
+        return shard;
+    }
+
+    private synchronized void retire(Shard shard) throws IOException {
+        shards.remove(shard.key);
+        listeners.forEach(shard.taskManager::removeListener);
+        if (shard.journal != null) {
+            shard.taskManager.removeListener(shard.journal);
+            shard.journal.close();
+            shard.journal = null;
+        }
+        retiredFiles.add(shard.file);
+        retiredFiles.add(journalOf(shard.file));
+    }
+
+    private synchronized void deleteRetiredFiles() throws IOException {
+        for (Path file : retiredFiles) {
+            if (!isShardFile(file)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        retiredFiles.clear();
+    }
+
+    // Whether a live shard uses the file under another name, e.g. another case on a case-insensitive file system
+    private boolean isShardFile(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        for (Shard shard : shards.values()) {
+            for (Path own : List.of(shard.file, journalOf(shard.file))) {
+                if (Files.exists(own) && Files.isSameFile(own, file)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Path journalOf(Path file) {
+        return Paths.get(file + TaskPersistence.JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Merges lists that are each in the given order, skipping the first
+     * {@code skip} results and stopping after {@code limit} (negative for all).
+     * A heap holds the head of every list, so each result costs O(log k).
+     */
+    static List<Task> merge(List<List<Task>> runs, Comparator<Task> order, int skip, int limit) {
+        long total = 0;
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> order.compare(a.current, b.current));
+        for (List<Task> run : runs) {
+            total += run.size();
+            if (!run.isEmpty()) {
+                heads.add(new Cursor(run.iterator()));
+            }
+        }
+        long available = Math.max(0, total - skip);
+        int size = (int) (limit < 0 ? available : Math.min(limit, available));
+        List<Task> merged = new ArrayList<>(size);
+        while (merged.size() < size) {
+            Cursor cursor = heads.poll();
+            if (skip > 0) {
+                skip--;
+            } else {
+                merged.add(cursor.current);
+            }
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Cursor {
+        final Iterator<Task> rest;
+        Task current;
+
+        Cursor(Iterator<Task> rest) {
+            this.rest = rest;
+            this.current = rest.next();
+        }
+
+        boolean advance() {
+            if (!rest.hasNext()) {
+                return false;
+            }
+            current = rest.next();
+            return true;
+        }
+    }
+
+    private interface ShardAction<T, R> {
+        R apply(T item) throws IOException;
+    }
+
+    // One worker per core at most; the first failure is rethrown once every item has finished
+    private static <T, R> List<R> inParallel(List<T> items, ShardAction<T, R> action) throws IOException {
+        int workers = Math.max(1, Math.min(items.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "task-shard-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<R>> futures = new ArrayList<>();
+            for (T item : items) {
+                futures.add(pool.submit(() -> action.apply(item)));
+            }
+            List<R> results = new ArrayList<>();
+            IOException failure = null;
+            for (Future<R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading or saving shards");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
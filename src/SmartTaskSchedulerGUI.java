@@ -1,28 +1,82 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskManagerListener {
+    // Best-ranked search matches shown in the table
+    private static final int SEARCH_LIMIT = 500;
+    // Preset filters as queries; anything else typed into the filter box is parsed as a query itself
+    private static final Map<String, String> FILTER_QUERIES = new LinkedHashMap<>();
+
+    static {
+        FILTER_QUERIES.put("All Tasks", "");
+        FILTER_QUERIES.put("Pending", "pending");
+        FILTER_QUERIES.put("Completed", "completed");
+        FILTER_QUERIES.put("Today's Tasks", "deadline = today");
+        FILTER_QUERIES.put("Overdue", "overdue");
+        FILTER_QUERIES.put("High Priority", "priority = HIGH");
+        FILTER_QUERIES.put("Medium Priority", "priority = MEDIUM");
+        FILTER_QUERIES.put("Low Priority", "priority = LOW");
+    }
+
     private TaskManager taskManager;
     private TaskPersistence persistence;
+    private TaskJournal journal;
     private TaskReminderService reminderService;
+    private LiveTaskStatistics statistics;
+    private DayBoundaryService dayBoundaries;
+    // Query behind the rows on screen; EDT only
+    private TaskQuery activeQuery = TaskQuery.all();
+    private TaskSearchIndex searchIndex;
     private TaskTableModel tableModel;
     private JTable taskTable;
     private JComboBox<String> filterCombo;
+    private JTextField searchField;
     private JLabel statusLabel;
+    private BackgroundTaskRunner runner;
+    private final AtomicBoolean statusUpdatePending = new AtomicBoolean();
 
     public SmartTaskSchedulerGUI() {
         taskManager = new TaskManager();
         persistence = new TaskPersistence();
         tableModel = new TaskTableModel();
+        statistics = new LiveTaskStatistics(taskManager);
+        // Tasks turn overdue without any store event; the statistics timer reports it
+        statistics.addChangeListener(this::scheduleStatusUpdate);
+        searchIndex = new TaskSearchIndex(taskManager);
+        // Deadlines passing and midnight change rows without any store event
+        dayBoundaries = new DayBoundaryService(taskManager);
+        dayBoundaries.addListener(new DayBoundaryService.Listener() {
+            @Override
+            public void onTasksReclassified(List<Task> tasks) {
+                tableModel.refreshRows(tasks);
+                SwingUtilities.invokeLater(() -> refreshTimeDependentFilter());
+            }
+
+            @Override
+            public void onDayChanged(LocalDate today) {
+                SwingUtilities.invokeLater(() -> refreshTimeDependentFilter());
+            }
+        });
 
         taskManager.addListener(this);
+        taskManager.addListener(tableModel);
 
         initComponents();
         loadTasks();
@@ -33,9 +87,7 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                saveTasks();
-                reminderService.shutdown();
-                System.exit(0);
+                exitApplication();
             }
         });
     }
@@ -75,13 +127,33 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
         JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         filterPanel.add(new JLabel("Filter:"));
 
-        filterCombo = new JComboBox<>(new String[]{
-                "All Tasks", "Pending", "Completed", "Today's Tasks",
-                "Overdue", "High Priority", "Medium Priority", "Low Priority"
-        });
+        filterCombo = new JComboBox<>(FILTER_QUERIES.keySet().toArray(new String[0]));
+        filterCombo.setEditable(true);
+        filterCombo.setToolTipText("Pick a filter or type a query, e.g. priority >= HIGH and deadline < +2d and !completed");
         filterCombo.addActionListener(e -> applyFilter());
         filterPanel.add(filterCombo);
 
+        // Each keystroke re-runs the search in the background; only the latest result is shown
+        filterPanel.add(new JLabel("Search:"));
+        searchField = new JTextField(20);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        filterPanel.add(searchField);
+
         mainPanel.add(filterPanel, BorderLayout.NORTH);
 
         // Table
@@ -106,6 +178,7 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
         statusLabel = new JLabel("Ready");
         statusLabel.setBorder(new EmptyBorder(5, 10, 5, 10));
         add(statusLabel, BorderLayout.SOUTH);
+        runner = new BackgroundTaskRunner(statusLabel::setText);
 
         // Menu bar
         createMenuBar();
@@ -124,13 +197,9 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
         JMenuItem loadItem = new JMenuItem("Load Tasks");
         JMenuItem exitItem = new JMenuItem("Exit");
 
-        saveItem.addActionListener(e -> saveTasks());
+        saveItem.addActionListener(e -> saveTasks(() -> { }));
         loadItem.addActionListener(e -> loadTasks());
-        exitItem.addActionListener(e -> {
-            saveTasks();
-            reminderService.shutdown();
-            System.exit(0);
-        });
+        exitItem.addActionListener(e -> exitApplication());
 
         fileMenu.add(saveItem);
         fileMenu.add(loadItem);
@@ -155,7 +224,7 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
 
         if (dialog.isOkPressed()) {
             taskManager.addTask(dialog.getTask());
-            refreshTable();
+            selectTask(dialog.getTask());
         }
     }
 
@@ -172,8 +241,12 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
         dialog.setVisible(true);
 
         if (dialog.isOkPressed()) {
-            taskManager.updateTask(task);
-            refreshTable();
+            try {
+                selectTask(taskManager.updateTask(dialog.getTask()));
+            } catch (ConcurrentModificationException | NoSuchElementException e) {
+                JOptionPane.showMessageDialog(this, "The task was changed or deleted while you were editing it. "
+                        + "Please open it again.", "Edit Conflict", JOptionPane.WARNING_MESSAGE);
+            }
         }
     }
 
@@ -192,7 +265,6 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
 
         if (result == JOptionPane.YES_OPTION) {
             taskManager.removeTask(task);
-            refreshTable();
         }
     }
 
@@ -204,104 +276,204 @@ public class SmartTaskSchedulerGUI extends JFrame implements TaskManager.TaskMan
             return;
         }
 
-        Task task = tableModel.getTaskAt(selectedRow);
-        task.setCompleted(!task.isCompleted());
-        taskManager.updateTask(task);
-        refreshTable();
+        // A pending recurring task completes its current occurrence and moves on to the next
+        Task task = taskManager.updateTask(tableModel.getTaskAt(selectedRow).getId(),
+                stored -> stored.isRecurring() && !stored.isCompleted()
+                        ? stored.withOccurrenceCompleted(stored.getDeadline())
+                        : stored.withCompleted(!stored.isCompleted()));
+        if (task != null) {
+            selectTask(task);
+        }
+    }
+
+    // Edits can move a task to another row; keep it selected and visible
+    private void selectTask(Task task) {
+        int row = tableModel.indexOf(task.getId());
+        if (row >= 0) {
+            taskTable.setRowSelectionInterval(row, row);
+            taskTable.scrollRectToVisible(taskTable.getCellRect(row, 0, true));
+        }
     }
 
     private void applyFilter() {
-        String filter = (String) filterCombo.getSelectedItem();
-        List<Task> filteredTasks;
-
-        switch (filter) {
-            case "Pending":
-                filteredTasks = taskManager.getPendingTasks();
-                break;
-            case "Completed":
-                filteredTasks = taskManager.getCompletedTasks();
-                break;
-            case "Today's Tasks":
-                filteredTasks = taskManager.getTodaysTasks();
-                break;
-            case "Overdue":
-                filteredTasks = taskManager.getOverdueTasks();
-                break;
-            case "High Priority":
-                filteredTasks = taskManager.getTasksByPriority(Task.Priority.HIGH);
-                break;
-            case "Medium Priority":
-                filteredTasks = taskManager.getTasksByPriority(Task.Priority.MEDIUM);
-                break;
-            case "Low Priority":
-                filteredTasks = taskManager.getTasksByPriority(Task.Priority.LOW);
-                break;
-            default:
-                filteredTasks = taskManager.getAllTasks();
-                break;
+        String filter = String.valueOf(filterCombo.getSelectedItem());
+        TaskQuery query;
+        try {
+            query = TaskQuery.parse(FILTER_QUERIES.getOrDefault(filter, filter));
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid Filter", JOptionPane.ERROR_MESSAGE);
+            filterCombo.setSelectedIndex(0); // Fires this again with the default filter
+            return;
+        }
+        activeQuery = query;
+        // The predicate keeps the table model's incremental updates consistent with the query
+        Predicate<Task> predicate = query.asPredicate();
+
+        // A search narrows the filter to its best matches; the matcher decides about later changes
+        String search = searchField.getText();
+        Supplier<List<Task>> rows = search.isBlank() ? () -> taskManager.query(query)
+                : () -> searchIndex.search(search, SEARCH_LIMIT, predicate);
+        Predicate<Task> rowFilter = search.isBlank() ? predicate
+                : predicate.and(TaskSearchIndex.matcher(search));
+
+        // Query off the EDT; only the latest filter request gets applied
+        runner.submitLatest("filter", progress -> {
+            long version;
+            List<Task> tasks;
+            do {
+                version = taskManager.getModificationCount();
+                tasks = rows.get();
+            } while (version != taskManager.getModificationCount());
+            return new FilterResult(version, tasks);
+        }, result -> {
+            if (result.version != taskManager.getModificationCount()) {
+                applyFilter(); // The store changed while the query ran
+                return;
+            }
+            tableModel.setFilter(rowFilter, result.tasks);
+            updateStatusLabel();
+        }, e -> JOptionPane.showMessageDialog(this, "Error filtering tasks: " + e.getMessage(),
+                "Filter Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private static class FilterResult {
+        final long version;
+        final List<Task> tasks;
+
+        FilterResult(long version, List<Task> tasks) {
+            this.version = version;
+            this.tasks = tasks;
         }
+    }
 
-        tableModel.setTasks(filteredTasks);
-        updateStatusLabel();
+    // A filter such as "overdue" or "deadline = today" gains and loses tasks as time passes
+    private void refreshTimeDependentFilter() {
+        if (activeQuery.dependsOnTime()) {
+            applyFilter();
+        }
     }
 
     private void refreshTable() {
         applyFilter(); // This will refresh based on current filter
     }
 
+    // Listener events can arrive from any thread and in bursts; refresh the label once per burst on the EDT
+    private void scheduleStatusUpdate() {
+        if (statusUpdatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                statusUpdatePending.set(false);
+                updateStatusLabel();
+            });
+        }
+    }
+
     private void updateStatusLabel() {
-        int totalTasks = taskManager.getAllTasks().size();
-        int pendingTasks = taskManager.getPendingTasks().size();
-        int completedTasks = taskManager.getCompletedTasks().size();
-        int overdueTasks = taskManager.getOverdueTasks().size();
+        int totalTasks = statistics.getTotalTasks();
+        int pendingTasks = statistics.getPendingTasks();
+        int completedTasks = statistics.getCompletedTasks();
+        int overdueTasks = statistics.getOverdueTasks();
 
-        statusLabel.setText(String.format(
+        String status = String.format(
                 "Total: %d | Pending: %d | Completed: %d | Overdue: %d",
                 totalTasks, pendingTasks, completedTasks, overdueTasks
-        ));
+        );
+        IOException journalFailure = journal != null ? journal.getFailure() : null;
+        if (journalFailure != null) {
+            status += " | Changes not journaled (" + journalFailure.getMessage() + "), save to keep them";
+        }
+        statusLabel.setText(status);
     }
 
-    private void saveTasks() {
-        try {
-            persistence.saveTasks(taskManager.getAllTasks());
+    private void exitApplication() {
+        saveTasks(() -> {
+            reminderService.shutdown();
+            statistics.shutdown();
+            dayBoundaries.shutdown();
+            searchIndex.close();
+            System.exit(0);
+        });
+    }
+
+    // Writes on a worker thread, then runs afterSave on the EDT whether or not the save succeeded
+    private void saveTasks(Runnable afterSave) {
+        statusLabel.setText("Saving tasks...");
+        runner.submit(progress -> {
+            persistence.saveTasks(taskManager.snapshot());
+            return null;
+        }, ignored -> {
+            updateStatusLabel();
             JOptionPane.showMessageDialog(this, "Tasks saved successfully!",
                     "Save Successful", JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
+            afterSave.run();
+        }, e -> {
+            updateStatusLabel();
             JOptionPane.showMessageDialog(this, "Error saving tasks: " + e.getMessage(),
                     "Save Error", JOptionPane.ERROR_MESSAGE);
-        }
+            afterSave.run();
+        });
     }
 
     private void loadTasks() {
-        try {
+        TaskJournal previousJournal = journal;
+        statusLabel.setText("Loading tasks...");
+
+        runner.submit(progress -> {
+            // A file that fails to load leaves the store and its journal as they were
             List<Task> tasks = persistence.loadTasks();
-            taskManager.clearAllTasks();
-            for (Task task : tasks) {
-                taskManager.addTask(task);
+            progress.update("Indexing " + tasks.size() + " tasks...");
+            // Reloading re-adds every task, which must not be journaled again
+            if (previousJournal != null) {
+                previousJournal.close();
             }
+            taskManager.replaceAll(tasks);
+            return persistence.attachJournal(taskManager);
+        }, attached -> {
+            journal = attached;
+            attached.addFailureListener(e -> scheduleStatusUpdate());
             refreshTable();
             JOptionPane.showMessageDialog(this, "Tasks loaded successfully!",
                     "Load Successful", JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Error loading tasks: " + e.getMessage(),
-                    "Load Error", JOptionPane.ERROR_MESSAGE);
-        }
+        }, e -> {
+            refreshTable();
+            String message = "Error loading tasks: " + e.getMessage();
+            // Failing after the old journal closed must not leave later edits unjournaled
+            if (journal == null || journal.isClosed()) {
+                try {
+                    journal = persistence.attachJournal(taskManager);
+                    journal.addFailureListener(failure -> scheduleStatusUpdate());
+                } catch (IOException journalError) {
+                    journal = null;
+                    message += "\nChanges will not be journaled: " + journalError.getMessage();
+                }
+            }
+            JOptionPane.showMessageDialog(this, message, "Load Error", JOptionPane.ERROR_MESSAGE);
+        });
     }
 
     // TaskManager.TaskManagerListener implementation
     @Override
     public void onTaskAdded(Task task) {
-        updateStatusLabel();
+        scheduleStatusUpdate();
     }
 
     @Override
     public void onTaskRemoved(Task task) {
-        updateStatusLabel();
+        scheduleStatusUpdate();
     }
 
     @Override
     public void onTaskUpdated(Task task) {
-        updateStatusLabel();
+        scheduleStatusUpdate();
+    }
+
+    @Override
+    public void onTasksAdded(List<Task> tasks) {
+        scheduleStatusUpdate();
+    }
+
+    @Override
+    public void onTasksRemoved(List<Task> tasks) {
+        scheduleStatusUpdate();
     }
 
     public static void main(String[] args) {
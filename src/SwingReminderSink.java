@@ -0,0 +1,29 @@
+import javax.swing.*;
+import java.util.List;
+
+/** Shows each batch of reminders in one non-modal dialog. */
+public class SwingReminderSink implements ReminderSink {
+
+    @Override
+    public void deliver(List<Reminder> reminders) {
+        boolean anyOverdue = reminders.stream().anyMatch(r -> r.getKind() == Reminder.Kind.OVERDUE);
+        StringBuilder message = new StringBuilder();
+        for (Reminder reminder : reminders) {
+            if (message.length() > 0) {
+                message.append('\n');
+            }
+            message.append(reminder.getMessage());
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane pane = new JOptionPane(message.toString(),
+                    anyOverdue ? JOptionPane.ERROR_MESSAGE : JOptionPane.WARNING_MESSAGE);
+            String title = reminders.size() == 1
+                    ? (anyOverdue ? "Overdue Task" : "Task Reminder")
+                    : reminders.size() + " Task Reminders";
+            JDialog dialog = pane.createDialog(null, title);
+            dialog.setModal(false);
+            dialog.setVisible(true);
+        });
+    }
+}
@@ -1,9 +1,17 @@
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.io.Serializable;
+import java.util.*;
 
+/**
+ * A task as stored at one moment. Tasks are immutable: an edit makes a copy
+ * with one of the {@code with} methods and stores it through {@link TaskManager},
+ * so any task a reader holds stays a consistent snapshot.
+ */
 public class Task implements Comparable<Task>, Serializable {
     private static final long serialVersionUID = 1L;
+    private static final DateTimeFormatter DEADLINE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
 
     public enum Priority {
         LOW(1), MEDIUM(2), HIGH(3), URGENT(4);
@@ -19,22 +27,56 @@ public class Task implements Comparable<Task>, Serializable {
         }
     }
 
-    private String title;
-    private String description;
-    private Priority priority;
-    private LocalDateTime deadline;
-    private LocalDateTime createdAt;
-    private boolean completed;
-    private String category;
+    private final String id;
+    private final String title;
+    private final String description;
+    // Set instead of description when the text was left in a binary snapshot; see LazyText
+    private final transient LazyText lazyDescription;
+    private final Priority priority;
+    private final LocalDateTime deadline;
+    private final LocalDateTime createdAt;
+    private final boolean completed;
+    private final String category;
+    // Null for a one-off task; see withRecurrence
+    private final RecurrenceRule recurrence;
+    // Ids of the tasks this one waits for; null rather than empty, so JSON leaves it out
+    private final List<String> dependencies;
+    // Bumped by TaskManager on every stored change; not persisted, so loaded tasks start at 0
+    private final transient long version;
+    // Formatted on first use; a copy with another deadline starts without it
+    private transient String formattedDeadline;
 
     public Task(String title, String description, Priority priority, LocalDateTime deadline, String category) {
+        this(newId(), title, description, priority, deadline, LocalDateTime.now(), false, category);
+    }
+
+    // Rebuilds a stored task with its original id, creation time and status
+    Task(String id, String title, String description, Priority priority, LocalDateTime deadline,
+         LocalDateTime createdAt, boolean completed, String category) {
+        this(id, title, description, null, priority, deadline, createdAt, completed, category, null, null, 0);
+    }
+
+    // A stored task whose description is read from its snapshot file when first asked for
+    Task(String id, String title, LazyText description, Priority priority, LocalDateTime deadline,
+         LocalDateTime createdAt, boolean completed, String category) {
+        this(id, title, null, description, priority, deadline, createdAt, completed, category, null, null, 0);
+    }
+
+    private Task(String id, String title, String description, LazyText lazyDescription, Priority priority,
+                 LocalDateTime deadline, LocalDateTime createdAt, boolean completed, String category,
+                 RecurrenceRule recurrence, List<String> dependencies, long version) {
+        this.id = id;
         this.title = title;
         this.description = description;
+        this.lazyDescription = lazyDescription;
         this.priority = priority;
         this.deadline = deadline;
+        this.createdAt = createdAt;
+        this.completed = completed;
         this.category = category;
-        this.createdAt = LocalDateTime.now();
-        this.completed = false;
+        this.recurrence = recurrence;
+        this.dependencies = dependencies;
+        this.version = version;
     }
 
     @Override
@@ -58,43 +100,183 @@ public class Task implements Comparable<Task>, Serializable {
         return this.createdAt.compareTo(other.createdAt);
     }
 
+    static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /** Whether the deadline falls on today's date according to {@link TaskClock}. */
     public boolean isDueToday() {
-        if (deadline == null) return false;
-        LocalDateTime now = LocalDateTime.now();
-        return deadline.toLocalDate().equals(now.toLocalDate());
+        return isDueToday(TaskClock.get().today());
     }
 
+    public boolean isDueToday(LocalDate today) {
+        return deadline != null && deadline.toLocalDate().equals(today);
+    }
+
+    /** Whether the deadline has passed according to {@link TaskClock}. */
     public boolean isOverdue() {
-        if (deadline == null) return false;
-        return deadline.isBefore(LocalDateTime.now());
+        return isOverdue(TaskClock.get().now());
+    }
+
+    public boolean isOverdue(LocalDateTime now) {
+        return deadline != null && deadline.isBefore(now);
     }
 
     public String getFormattedDeadline() {
         if (deadline == null) return "No deadline";
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
-        return deadline.format(formatter);
+        // Racing threads at worst format it twice, as with String.hashCode
+        String formatted = formattedDeadline;
+        if (formatted == null) {
+            formatted = formatDeadline(deadline);
+            formattedDeadline = formatted;
+        }
+        return formatted;
+    }
+
+    static String formatDeadline(LocalDateTime deadline) {
+        return deadline.format(DEADLINE_FORMAT);
     }
 
-    // Getters and Setters
+    public String getId() { return id; }
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
+    public String getDescription() { return lazyDescription != null ? lazyDescription.get() : description; }
+    public Priority getPriority() { return priority; }
+    public LocalDateTime getDeadline() { return deadline; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public boolean isCompleted() { return completed; }
+    public String getCategory() { return category; }
+    public RecurrenceRule getRecurrence() { return recurrence; }
+    public boolean isRecurring() { return recurrence != null; }
 
-    public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
+    /** Ids of the tasks that must be completed before this one can start; see {@link DependencyScheduler}. */
+    public List<String> getDependencies() {
+        return dependencies != null ? Collections.unmodifiableList(dependencies) : Collections.emptyList();
+    }
 
-    public Priority getPriority() { return priority; }
-    public void setPriority(Priority priority) { this.priority = priority; }
+    /**
+     * When the task comes due in [from, to): every occurrence of a recurring
+     * task, done or not, computed as it is iterated, or else the deadline.
+     */
+    public Iterable<LocalDateTime> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+        if (recurrence != null) {
+            return recurrence.occurrencesBetween(from, to);
+        }
+        boolean inside = deadline != null && !deadline.isBefore(from) && (to == null || deadline.isBefore(to));
+        return inside ? List.of(deadline) : List.of();
+    }
 
-    public LocalDateTime getDeadline() { return deadline; }
-    public void setDeadline(LocalDateTime deadline) { this.deadline = deadline; }
+    /** Whether the task still has to be done by the given time: its deadline, or an open occurrence. */
+    public boolean isPendingAt(LocalDateTime occurrence) {
+        if (completed) {
+            return false;
+        }
+        return recurrence != null
+                ? recurrence.isOccurrence(occurrence) && !recurrence.isDone(occurrence)
+                : occurrence.equals(deadline);
+    }
 
-    public LocalDateTime getCreatedAt() { return createdAt; }
+    /**
+     * Version of the stored task this instance was read from or derived from.
+     * {@link TaskManager#updateTask(Task)} rejects a change whose version is no
+     * longer the stored one.
+     */
+    public long getVersion() { return version; }
 
-    public boolean isCompleted() { return completed; }
-    public void setCompleted(boolean completed) { this.completed = completed; }
+    // Each copy keeps the version it was derived from; TaskManager assigns the next one when storing it
+    public Task withTitle(String title) {
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
 
-    public String getCategory() { return category; }
-    public void setCategory(String category) { this.category = category; }
+    public Task withDescription(String description) {
+        return new Task(id, title, description, null, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    public Task withPriority(Priority priority) {
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    /** For a recurring task a new deadline starts the series again from it, and no deadline ends it. */
+    public Task withDeadline(LocalDateTime deadline) {
+        if (recurrence != null && !Objects.equals(deadline, this.deadline)) {
+            return withRecurrence(null).withDeadline(deadline)
+                    .withRecurrence(deadline != null ? recurrence.withStart(deadline) : null);
+        }
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    public Task withCompleted(boolean completed) {
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    public Task withCategory(String category) {
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    /** A copy that waits for the tasks with the given ids; duplicates are dropped. */
+    public Task withDependencies(Collection<String> dependencies) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(dependencies));
+        if (ids.contains(id)) {
+            throw new IllegalArgumentException("A task cannot depend on itself");
+        }
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category,
+                recurrence, ids.isEmpty() ? null : ids, version);
+    }
+
+    /**
+     * A copy that repeats by the rule, or a one-off task if it is null. The
+     * deadline of a recurring task is always its first occurrence not yet
+     * done, and the task is completed once none is left.
+     */
+    public Task withRecurrence(RecurrenceRule recurrence) {
+        LocalDateTime next = recurrence != null ? recurrence.nextPending() : deadline;
+        boolean over = recurrence != null && next == null;
+        return new Task(id, title, description, lazyDescription, priority, over ? deadline : next, createdAt,
+                completed || over, category, recurrence, dependencies, version);
+    }
+
+    /**
+     * A copy with the occurrence done, moving the deadline on to the next one.
+     * Only the occurrence is recorded, not a task per occurrence. A one-off
+     * task is simply completed.
+     */
+    public Task withOccurrenceCompleted(LocalDateTime occurrence) {
+        return recurrence != null ? withRecurrence(recurrence.withDone(occurrence)) : withCompleted(true);
+    }
+
+    // Only for tasks read from storage without an id, or with one that clashes
+    Task withId(String id) {
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    Task withVersion(long version) {
+        return new Task(id, title, description, lazyDescription, priority, deadline, createdAt, completed, category, recurrence, dependencies, version);
+    }
+
+    // The description as kept in a snapshot file, or null if it is on the heap
+    LazyText lazyDescription() {
+        return lazyDescription;
+    }
+
+    // A copy that holds its description itself, for serialisers that read fields directly
+    Task withDescriptionLoaded() {
+        return lazyDescription == null ? this : withDescription(getDescription());
+    }
+
+    private Object writeReplace() {
+        return withDescriptionLoaded();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Task)) return false;
+        return id != null && id.equals(((Task) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id != null ? id.hashCode() : System.identityHashCode(this);
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,301 @@
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous feed of {@link TaskManager} changes for consumers that should
+ * not hold up writers. Every change is numbered with the next sequence and
+ * appended to a bounded ring buffer; subscribers read batches from it on
+ * their own threads, each at its own position, and can resume from the last
+ * sequence they handled. The dispatching thread only ever appends: a
+ * subscriber that falls a full buffer behind either skips ahead or starts
+ * over from a snapshot, and never holds up writers or the other listeners.
+ *
+ * <pre>
+ * TaskChangeFeed.Subscription subscription = feed.subscribe(0, TaskChangeFeed.Backpressure.SNAPSHOT_AND_RESUME);
+ * while (running) {
+ *     for (TaskChangeFeed.Change change : subscription.poll(256, 1, TimeUnit.SECONDS)) { ... }
+ * }
+ * </pre>
+ */
+public class TaskChangeFeed implements TaskManager.TaskManagerListener, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * What a subscriber gets when the changes it has not read yet no longer fit
+     * in the buffer. Writers are never made to wait: the manager delivers events
+     * to every listener on one thread, so waiting there would stall the journal
+     * and the other listeners while events kept queuing up behind it.
+     */
+    public enum Backpressure {
+        /** The subscriber skips to the oldest change still buffered; {@link Subscription#getDropped()} counts what it missed. */
+        DROP_OLDEST,
+        /** The subscriber gets one {@link Change.Type#SNAPSHOT} of the whole store, then the changes after it. */
+        SNAPSHOT_AND_RESUME
+    }
+
+    public static final class Change {
+        public enum Type { ADDED, UPDATED, REMOVED, SNAPSHOT }
+
+        private final long sequence;
+        private final Type type;
+        private final List<Task> tasks;
+        private final Task previous;
+        // Store modification count the change brought about, to line changes up with snapshots
+        private final long modificationCount;
+
+        Change(long sequence, Type type, List<Task> tasks, Task previous, long modificationCount) {
+            this.sequence = sequence;
+            this.type = type;
+            this.tasks = tasks;
+            this.previous = previous;
+            this.modificationCount = modificationCount;
+        }
+
+        /** Position in the feed; a snapshot carries the sequence of the last change it includes. */
+        public long getSequence() { return sequence; }
+        public Type getType() { return type; }
+        /** The tasks added, removed or stored by an update, or every task for a snapshot. */
+        public List<Task> getTasks() { return tasks; }
+        /** For an update, the version it replaced; null otherwise. */
+        public Task getPrevious() { return previous; }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + type + " " + tasks.size() + " task(s)";
+        }
+    }
+
+    private final TaskManager taskManager;
+    private final Change[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    // Sequence of the last change appended; the first change is 1
+    private long head;
+    private boolean closed;
+
+    public TaskChangeFeed(TaskManager taskManager) {
+        this(taskManager, DEFAULT_CAPACITY);
+    }
+
+    public TaskChangeFeed(TaskManager taskManager, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.taskManager = taskManager;
+        this.ring = new Change[capacity];
+        taskManager.addListener(this);
+    }
+
+    /** Sequence of the latest change, or 0 before the first. */
+    public long getLatestSequence() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Subscribes from the next change on. */
+    public Subscription subscribe(Backpressure backpressure) {
+        lock.lock();
+        try {
+            return subscribe(head, backpressure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Subscribes to the changes after the given sequence, typically the last one
+     * a consumer handled before it stopped. With {@link Backpressure#SNAPSHOT_AND_RESUME},
+     * 0 starts with a snapshot of the whole store, including tasks added before the
+     * feed existed. Throws IllegalArgumentException if the sequence is in the future.
+     */
+    public Subscription subscribe(long afterSequence, Backpressure backpressure) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The change feed is closed");
+            }
+            if (afterSequence < 0 || afterSequence > head) {
+                throw new IllegalArgumentException("Sequence " + afterSequence + " is not between 0 and " + head);
+            }
+            // Position 0 lies before the buffer, so the first poll takes the snapshot
+            boolean fromSnapshot = afterSequence == 0 && backpressure == Backpressure.SNAPSHOT_AND_RESUME;
+            return new Subscription(fromSnapshot ? 0 : afterSequence + 1, backpressure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Detaches from the manager and ends every subscription; buffered changes can still be read. */
+    @Override
+    public void close() {
+        taskManager.removeListener(this);
+        lock.lock();
+        try {
+            closed = true;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onTaskAdded(Task task) {
+        append(Change.Type.ADDED, List.of(task), null);
+    }
+
+    @Override
+    public void onTaskRemoved(Task task) {
+        append(Change.Type.REMOVED, List.of(task), null);
+    }
+
+    @Override
+    public void onTaskUpdated(Task task) {
+        append(Change.Type.UPDATED, List.of(task), null);
+    }
+
+    @Override
+    public void onTaskUpdated(Task previous, Task updated) {
+        append(Change.Type.UPDATED, List.of(updated), previous);
+    }
+
+    @Override
+    public void onTasksAdded(List<Task> tasks) {
+        append(Change.Type.ADDED, tasks, null);
+    }
+
+    @Override
+    public void onTasksRemoved(List<Task> tasks) {
+        append(Change.Type.REMOVED, tasks, null);
+    }
+
+    // Runs on the dispatching thread, once per change and in change order
+    private void append(Change.Type type, List<Task> tasks, Task previous) {
+        long modificationCount = taskManager.deliveringModificationCount();
+        lock.lock();
+        try {
+            long sequence = head + 1;
+            ring[slot(sequence)] = new Change(sequence, type, tasks, previous, modificationCount);
+            head = sequence;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long oldest() {
+        return Math.max(1, head - ring.length + 1);
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % ring.length);
+    }
+
+    /**
+     * One consumer's position in the feed. Meant to be read by one thread at a
+     * time; changes come back in sequence order.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Backpressure backpressure;
+        // Guarded by the feed's lock
+        private long next;
+        private long dropped;
+        // Changes up to this modification count are already in the snapshot handed out
+        private long coveredCount = -1;
+        private boolean cancelled;
+
+        private Subscription(long next, Backpressure backpressure) {
+            this.next = next;
+            this.backpressure = backpressure;
+        }
+
+        /**
+         * Waits up to the timeout for changes and returns at most maxChanges of
+         * them; an empty list means none arrived in time, or the subscription
+         * or feed was closed with nothing left to read.
+         */
+        public List<Change> poll(int maxChanges, long timeout, TimeUnit unit) throws InterruptedException {
+            if (maxChanges < 1) {
+                throw new IllegalArgumentException("maxChanges must be positive, got " + maxChanges);
+            }
+            long remaining = unit.toNanos(timeout);
+            lock.lock();
+            try {
+                while (next > head && !cancelled && !closed) {
+                    if (remaining <= 0) {
+                        return List.of();
+                    }
+                    remaining = published.awaitNanos(remaining);
+                }
+                if (cancelled) {
+                    return List.of();
+                }
+                List<Change> batch = new ArrayList<>(Math.min(maxChanges, (int) Math.min(head - next + 1, ring.length)));
+                if (next < oldest()) {
+                    catchUp(batch);
+                }
+                while (batch.size() < maxChanges && next <= head) {
+                    Change change = ring[slot(next++)];
+                    // Changes made before the snapshot was taken but delivered after it are already in it
+                    if (change.modificationCount > coveredCount) {
+                        batch.add(change);
+                    }
+                }
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // The subscriber has fallen behind the buffer
+        private void catchUp(List<Change> batch) {
+            if (backpressure == Backpressure.SNAPSHOT_AND_RESUME) {
+                // Every change appended so far is reflected in a snapshot taken now
+                TaskManager.Snapshot snapshot = taskManager.currentSnapshot();
+                batch.add(new Change(head, Change.Type.SNAPSHOT, snapshot.tasks, null, snapshot.modificationCount));
+                coveredCount = snapshot.modificationCount;
+                next = head + 1;
+            } else {
+                dropped += oldest() - next;
+                next = oldest();
+            }
+        }
+
+        /** Sequence of the last change returned, to resume from later. */
+        public long getPosition() {
+            lock.lock();
+            try {
+                return Math.max(0, next - 1);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Changes skipped so far because this DROP_OLDEST subscriber fell behind. */
+        public long getDropped() {
+            lock.lock();
+            try {
+                return dropped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Stops the subscription; a waiting poll returns empty. */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                cancelled = true;
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * The time that task logic such as {@link Task#isOverdue()}, filters and
+ * {@link DayBoundaryService} compares deadlines against. The system clock
+ * turns the time into dates at most once per tick and hands every caller in
+ * between the same values, so painting a large table or filtering a store
+ * allocates no dates per task. Tests install a {@link #manual}
+ * clock with {@link #use} and move it by hand.
+ */
+public abstract class TaskClock {
+    public static final long TICK_MILLIS = 1000;
+
+    private static final TaskClock SYSTEM = new Ticking(TICK_MILLIS);
+    private static volatile TaskClock current = SYSTEM;
+
+    /** The clock in use, the ticking system clock unless another was installed. */
+    public static TaskClock get() {
+        return current;
+    }
+
+    /** Installs a clock for all task logic, e.g. a manual one in a test. */
+    public static void use(TaskClock clock) {
+        current = clock;
+    }
+
+    /** The ticking system clock, for putting it back after {@link #use}. */
+    public static TaskClock system() {
+        return SYSTEM;
+    }
+
+    /** A clock that stands still at the given time until it is set or advanced. */
+    public static Manual manual(LocalDateTime start) {
+        return new Manual(start);
+    }
+
+    public abstract LocalDateTime now();
+
+    public LocalDate today() {
+        return now().toLocalDate();
+    }
+
+    private static final class Ticking extends TaskClock {
+        private final long periodMillis;
+        private volatile Tick tick;
+
+        private static final class Tick {
+            final long millis;
+            final LocalDateTime now;
+            final LocalDate today;
+
+            Tick(long millis) {
+                this.millis = millis;
+                this.now = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+                this.today = now.toLocalDate();
+            }
+        }
+
+        Ticking(long periodMillis) {
+            this.periodMillis = periodMillis;
+            this.tick = new Tick(System.currentTimeMillis());
+        }
+
+        private Tick tick() {
+            long millis = System.currentTimeMillis();
+            Tick last = tick;
+            // Also refreshes if the system clock was set back
+            if (millis - last.millis >= periodMillis || millis < last.millis) {
+                last = new Tick(millis);
+                tick = last;
+            }
+            return last;
+        }
+
+        @Override
+        public LocalDateTime now() {
+            return tick().now;
+        }
+
+        @Override
+        public LocalDate today() {
+            return tick().today;
+        }
+    }
+
+    public static final class Manual extends TaskClock {
+        private volatile LocalDateTime now;
+
+        private Manual(LocalDateTime start) {
+            this.now = start;
+        }
+
+        @Override
+        public LocalDateTime now() {
+            return now;
+        }
+
+        public void set(LocalDateTime time) {
+            now = time;
+        }
+
+        public synchronized void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+}
@@ -7,10 +7,13 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 
 public class TaskDialog extends JDialog {
+    private static final String[] REPEAT_CHOICES = {"Never", "Daily", "Weekly", "Monthly"};
+
     private JTextField titleField;
     private JTextArea descriptionArea;
     private JComboBox<Task.Priority> priorityCombo;
     private JTextField deadlineField;
+    private JComboBox<String> repeatCombo;
     private JTextField categoryField;
     private JCheckBox completedCheckBox;
 
@@ -66,15 +69,28 @@ public class TaskDialog extends JDialog {
         deadlineField = new JTextField(20);
         formPanel.add(deadlineField, gbc);
 
-        // Category
+        // Repeat; an existing rule is offered first so an edit keeps it as it is
         gbc.gridx = 0; gbc.gridy = 4; gbc.fill = GridBagConstraints.NONE; gbc.weightx = 0;
+        formPanel.add(new JLabel("Repeat:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx = 1.0;
+        repeatCombo = new JComboBox<>();
+        if (task != null && task.isRecurring()) {
+            repeatCombo.addItem(task.getRecurrence().describe());
+        }
+        for (String choice : REPEAT_CHOICES) {
+            repeatCombo.addItem(choice);
+        }
+        formPanel.add(repeatCombo, gbc);
+
+        // Category
+        gbc.gridx = 0; gbc.gridy = 5; gbc.fill = GridBagConstraints.NONE; gbc.weightx = 0;
         formPanel.add(new JLabel("Category:"), gbc);
         gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx = 1.0;
         categoryField = new JTextField(20);
         formPanel.add(categoryField, gbc);
 
         // Completed checkbox
-        gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2;
+        gbc.gridx = 0; gbc.gridy = 6; gbc.gridwidth = 2;
         completedCheckBox = new JCheckBox("Completed");
         formPanel.add(completedCheckBox, gbc);
 
@@ -138,6 +154,13 @@ public class TaskDialog extends JDialog {
             }
         }
 
+        int repeat = repeatCombo.getSelectedIndex() - (task != null && task.isRecurring() ? 1 : 0);
+        if (repeat != 0 && deadline == null) {
+            JOptionPane.showMessageDialog(this, "A repeating task needs a deadline!",
+                    "Validation Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+
         String category = categoryField.getText().trim();
         if (category.isEmpty()) {
             category = "General";
@@ -146,18 +169,34 @@ public class TaskDialog extends JDialog {
         if (task == null) {
             task = new Task(title, descriptionArea.getText().trim(),
                     (Task.Priority) priorityCombo.getSelectedItem(), deadline, category);
+            if (repeat > 0) {
+                task = task.withRecurrence(repeatRule(repeat, deadline));
+            }
         } else {
-            task.setTitle(title);
-            task.setDescription(descriptionArea.getText().trim());
-            task.setPriority((Task.Priority) priorityCombo.getSelectedItem());
-            task.setDeadline(deadline);
-            task.setCategory(category);
-            task.setCompleted(completedCheckBox.isSelected());
+            // An edited copy; the caller stores it, and the original stays as it was if the dialog is cancelled
+            task = task.withTitle(title)
+                    .withDescription(descriptionArea.getText().trim())
+                    .withPriority((Task.Priority) priorityCombo.getSelectedItem())
+                    .withDeadline(deadline)
+                    .withCategory(category)
+                    .withCompleted(completedCheckBox.isSelected());
+            // -1 keeps the task's own rule, which a new deadline has already restarted from it
+            if (repeat >= 0) {
+                task = task.withRecurrence(repeat > 0 ? repeatRule(repeat, deadline) : null);
+            }
         }
 
         return true;
     }
 
+    private static RecurrenceRule repeatRule(int choice, LocalDateTime start) {
+        switch (choice) {
+            case 1: return RecurrenceRule.daily(start);
+            case 2: return RecurrenceRule.weekly(start);
+            default: return RecurrenceRule.monthly(start);
+        }
+    }
+
     public Task getTask() {
         return task;
     }
@@ -1,84 +1,405 @@
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
 
+/**
+ * Writes tasks as CSV or an HTML report. Tasks are consumed one at a time from
+ * an iterator or stream and written through a large buffer, escaping straight
+ * into the output, so memory use stays flat however many tasks are exported.
+ *
+ * The parallel variants format fixed-size chunks of a list on the common
+ * fork-join pool and write the encoded chunks in order with gathering writes;
+ * their output is byte-identical to the sequential exports.
+ *
+ * For analytics, JSON Lines writes one compact task object per line and the
+ * columnar format is described in {@link ColumnarTaskFile}; both are read back
+ * by {@link TaskImporter}.
+ */
 public class TaskExporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHUNK_TASKS = 4096;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private static final DateTimeFormatter CSV_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter HTML_DATE = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
+    // HTML_DATE's month abbreviations, so common dates are written without going through the formatter
+    private static final String[] MONTHS = new String[12];
+
+    static {
+        DateTimeFormatter month = DateTimeFormatter.ofPattern("MMM");
+        for (Month m : Month.values()) {
+            MONTHS[m.ordinal()] = LocalDate.of(2000, m, 1).format(month);
+        }
+    }
+
+    private static final String HTML_HEADER = String.join(NEWLINE,
+            "<!DOCTYPE html>",
+            "<html><head><title>Task Report</title>",
+            "<style>",
+            "table { border-collapse: collapse; width: 100%; }",
+            "th, td { border: 1px solid #ddd; padding: 8px; text-align: left; }",
+            "th { background-color: #f2f2f2; }",
+            ".high { background-color: #ffcccc; }",
+            ".medium { background-color: #ffffcc; }",
+            ".low { background-color: #ccffcc; }",
+            ".completed { text-decoration: line-through; opacity: 0.6; }",
+            "</style></head><body>",
+            "<h1>Task Report</h1>",
+            "<table>",
+            "<tr><th>Title</th><th>Priority</th><th>Deadline</th><th>Category</th><th>Status</th></tr>") + NEWLINE;
+    private static final String HTML_FOOTER = "</table>" + NEWLINE + "</body></html>" + NEWLINE;
+    private static final class Json {
+        static final TypeAdapter<Task> TASK = TaskPersistence.gsonBuilder().create().getAdapter(Task.class);
+    }
+
+    private static final String CSV_HEADER = "Title,Description,Priority,Deadline,Category,Status,Created" + NEWLINE;
 
     public static void exportToCSV(List<Task> tasks, String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            // Write header
-            writer.println("Title,Description,Priority,Deadline,Category,Status,Created");
-
-            // Write tasks
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-            for (Task task : tasks) {
-                writer.printf("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"%n",
-                        escapeCSV(task.getTitle()),
-                        escapeCSV(task.getDescription()),
-                        task.getPriority(),
-                        task.getDeadline() != null ? task.getDeadline().format(formatter) : "",
-                        escapeCSV(task.getCategory()),
-                        task.isCompleted() ? "Completed" : "Pending",
-                        task.getCreatedAt().format(formatter)
-                );
-            }
+        exportToCSV(tasks.iterator(), filename);
+    }
+
+    public static void exportToCSV(Stream<? extends Task> tasks, String filename) throws IOException {
+        exportToCSV(tasks.iterator(), filename);
+    }
+
+    public static void exportToCSV(Iterator<? extends Task> tasks, String filename) throws IOException {
+        try (Writer writer = openWriter(filename)) {
+            writeCSV(tasks, writer);
         }
     }
 
     public static void exportToHTML(List<Task> tasks, String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("<!DOCTYPE html>");
-            writer.println("<html><head><title>Task Report</title>");
-            writer.println("<style>");
-            writer.println("table { border-collapse: collapse; width: 100%; }");
-            writer.println("th, td { border: 1px solid #ddd; padding: 8px; text-align: left; }");
-            writer.println("th { background-color: #f2f2f2; }");
-            writer.println(".high { background-color: #ffcccc; }");
-            writer.println(".medium { background-color: #ffffcc; }");
-            writer.println(".low { background-color: #ccffcc; }");
-            writer.println(".completed { text-decoration: line-through; opacity: 0.6; }");
-            writer.println("</style></head><body>");
-            writer.println("<h1>Task Report</h1>");
-            writer.println("<table>");
-            writer.println("<tr><th>Title</th><th>Priority</th><th>Deadline</th><th>Category</th><th>Status</th></tr>");
-
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
-            for (Task task : tasks) {
-                String rowClass = "";
-                if (task.isCompleted()) {
-                    rowClass = "completed";
-                } else {
-                    switch (task.getPriority()) {
-                        case HIGH: rowClass = "high"; break;
-                        case MEDIUM: rowClass = "medium"; break;
-                        case LOW: rowClass = "low"; break;
-                    }
+        exportToHTML(tasks.iterator(), filename);
+    }
+
+    public static void exportToHTML(Stream<? extends Task> tasks, String filename) throws IOException {
+        exportToHTML(tasks.iterator(), filename);
+    }
+
+    public static void exportToHTML(Iterator<? extends Task> tasks, String filename) throws IOException {
+        try (Writer writer = openWriter(filename)) {
+            writeHTML(tasks, writer);
+        }
+    }
+
+    public static void exportToCSVParallel(List<? extends Task> tasks, String filename) throws IOException {
+        exportParallel(tasks, filename, CSV_HEADER, "", TaskExporter::writeCSVRow);
+    }
+
+    public static void exportToHTMLParallel(List<? extends Task> tasks, String filename) throws IOException {
+        exportParallel(tasks, filename, HTML_HEADER, HTML_FOOTER, TaskExporter::writeHTMLRow);
+    }
+
+    public static void exportToJSONLines(List<Task> tasks, String filename) throws IOException {
+        exportToJSONLines(tasks.iterator(), filename);
+    }
+
+    public static void exportToJSONLines(Stream<? extends Task> tasks, String filename) throws IOException {
+        exportToJSONLines(tasks.iterator(), filename);
+    }
+
+    public static void exportToJSONLines(Iterator<? extends Task> tasks, String filename) throws IOException {
+        try (Writer writer = openWriter(filename)) {
+            writeJSONLines(tasks, writer);
+        }
+    }
+
+    public static void exportToColumnar(List<Task> tasks, String filename) throws IOException {
+        exportToColumnar(tasks.iterator(), filename);
+    }
+
+    public static void exportToColumnar(Stream<? extends Task> tasks, String filename) throws IOException {
+        exportToColumnar(tasks.iterator(), filename);
+    }
+
+    public static void exportToColumnar(Iterator<? extends Task> tasks, String filename) throws IOException {
+        ColumnarTaskFile.write(tasks, Paths.get(filename));
+    }
+
+    /** Writes the CSV export to a caller-owned writer, which is left open. */
+    public static void writeCSV(Iterator<? extends Task> tasks, Writer out) throws IOException {
+        out.write(CSV_HEADER);
+        char[] scratch = new char[16];
+        while (tasks.hasNext()) {
+            writeCSVRow(tasks.next(), out, scratch);
+        }
+        out.flush();
+    }
+
+    /** Writes the HTML report to a caller-owned writer, which is left open. */
+    public static void writeHTML(Iterator<? extends Task> tasks, Writer out) throws IOException {
+        out.write(HTML_HEADER);
+        char[] scratch = new char[16];
+        while (tasks.hasNext()) {
+            writeHTMLRow(tasks.next(), out, scratch);
+        }
+        out.write(HTML_FOOTER);
+        out.flush();
+    }
+
+    /** Writes one JSON object per task, each on its own line, to a caller-owned writer. */
+    public static void writeJSONLines(Iterator<? extends Task> tasks, Writer out) throws IOException {
+        while (tasks.hasNext()) {
+            JsonWriter json = new JsonWriter(out);
+            json.setSerializeNulls(false);
+            Json.TASK.write(json, tasks.next());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private interface RowWriter {
+        void write(Task task, Writer out, char[] scratch) throws IOException;
+    }
+
+    private static void exportParallel(List<? extends Task> tasks, String filename,
+                                       String header, String footer, RowWriter rows) throws IOException {
+        int chunks = (tasks.size() + CHUNK_TASKS - 1) / CHUNK_TASKS;
+        // Bounds how many formatted chunks wait in memory for the writer
+        int window = 2 * Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        Deque<ForkJoinTask<ByteBuffer>> pending = new ArrayDeque<>();
+        try (FileChannel channel = openChannel(filename)) {
+            List<ByteBuffer> ready = new ArrayList<>();
+            ready.add(encode(header));
+            int next = 0;
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < window) {
+                    int from = next++ * CHUNK_TASKS;
+                    List<? extends Task> chunk = tasks.subList(from, Math.min(tasks.size(), from + CHUNK_TASKS));
+                    pending.add(ForkJoinPool.commonPool().submit(() -> formatChunk(chunk, rows)));
+                }
+                // Wait for the oldest chunk, then take every later one that is already done
+                ready.add(pending.poll().join());
+                while (!pending.isEmpty() && pending.peek().isDone()) {
+                    ready.add(pending.poll().join());
                 }
+                writeFully(channel, ready);
+                ready.clear();
+            }
+            ready.add(encode(footer));
+            writeFully(channel, ready);
+        } finally {
+            pending.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private static ByteBuffer formatChunk(List<? extends Task> chunk, RowWriter rows) throws IOException {
+        StringBuilderWriter out = new StringBuilderWriter(chunk.size() * 128);
+        char[] scratch = new char[16];
+        for (Task task : chunk) {
+            rows.write(task, out, scratch);
+        }
+        return encode(out.builder.toString());
+    }
+
+    private static ByteBuffer encode(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
 
-                writer.printf("<tr class=\"%s\">", rowClass);
-                writer.printf("<td>%s</td>", escapeHTML(task.getTitle()));
-                writer.printf("<td>%s</td>", task.getPriority());
-                writer.printf("<td>%s</td>", task.getDeadline() != null ? task.getDeadline().format(formatter) : "No deadline");
-                writer.printf("<td>%s</td>", escapeHTML(task.getCategory()));
-                writer.printf("<td>%s</td>", task.isCompleted() ? "Completed" : "Pending");
-                writer.println("</tr>");
+    private static void writeFully(FileChannel channel, List<ByteBuffer> buffers) throws IOException {
+        ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+        int first = 0;
+        while (first < array.length) {
+            channel.write(array, first, array.length - first);
+            while (first < array.length && !array[first].hasRemaining()) {
+                first++;
             }
+        }
+    }
+
+    // Unsynchronized counterpart of StringWriter for formatting a chunk on one thread
+    private static final class StringBuilderWriter extends Writer {
+        final StringBuilder builder;
+
+        StringBuilderWriter(int capacity) {
+            builder = new StringBuilder(capacity);
+        }
+
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            builder.append(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            builder.append(text, offset, offset + length);
+        }
+
+        @Override
+        public void write(String text) {
+            builder.append(text);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void writeCSVRow(Task task, Writer out, char[] scratch) throws IOException {
+        out.write('"');
+        writeEscapedCSV(out, task.getTitle());
+        out.write("\",\"");
+        writeEscapedCSV(out, task.getDescription());
+        out.write("\",\"");
+        out.write(task.getPriority().name());
+        out.write("\",\"");
+        if (task.getDeadline() != null) {
+            writeCSVDate(out, task.getDeadline(), scratch);
+        }
+        out.write("\",\"");
+        writeEscapedCSV(out, task.getCategory());
+        out.write(task.isCompleted() ? "\",\"Completed\",\"" : "\",\"Pending\",\"");
+        if (task.getCreatedAt() != null) {
+            writeCSVDate(out, task.getCreatedAt(), scratch);
+        }
+        out.write('"');
+        out.write(NEWLINE);
+    }
+
+    private static void writeHTMLRow(Task task, Writer out, char[] scratch) throws IOException {
+        String rowClass = "";
+        if (task.isCompleted()) {
+            rowClass = "completed";
+        } else {
+            switch (task.getPriority()) {
+                case HIGH: rowClass = "high"; break;
+                case MEDIUM: rowClass = "medium"; break;
+                case LOW: rowClass = "low"; break;
+            }
+        }
+
+        out.write("<tr class=\"");
+        out.write(rowClass);
+        out.write("\"><td>");
+        writeEscapedHTML(out, task.getTitle());
+        out.write("</td><td>");
+        out.write(task.getPriority().name());
+        out.write("</td><td>");
+        if (task.getDeadline() != null) {
+            writeHTMLDate(out, task.getDeadline(), scratch);
+        } else {
+            out.write("No deadline");
+        }
+        out.write("</td><td>");
+        writeEscapedHTML(out, task.getCategory());
+        out.write(task.isCompleted() ? "</td><td>Completed</td></tr>" : "</td><td>Pending</td></tr>");
+        out.write(NEWLINE);
+    }
+
+    // Copies runs of plain characters and doubles each quote, in one pass over the text
+    private static void writeEscapedCSV(Writer out, String text) throws IOException {
+        if (text == null) return;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                out.write(text, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(text, start, text.length() - start);
+    }
+
+    private static void writeEscapedHTML(Writer out, String text) throws IOException {
+        if (text == null) return;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = "&quot;"; break;
+                default: continue;
+            }
+            out.write(text, start, i - start);
+            out.write(entity);
+            start = i + 1;
+        }
+        out.write(text, start, text.length() - start);
+    }
+
+    // yyyy-MM-dd HH:mm
+    private static void writeCSVDate(Writer out, LocalDateTime dateTime, char[] scratch) throws IOException {
+        int year = dateTime.getYear();
+        if (year < 1 || year > 9999) {
+            out.write(CSV_DATE.format(dateTime));
+            return;
+        }
+        digits(scratch, 0, year, 4);
+        scratch[4] = '-';
+        digits(scratch, 5, dateTime.getMonthValue(), 2);
+        scratch[7] = '-';
+        digits(scratch, 8, dateTime.getDayOfMonth(), 2);
+        scratch[10] = ' ';
+        digits(scratch, 11, dateTime.getHour(), 2);
+        scratch[13] = ':';
+        digits(scratch, 14, dateTime.getMinute(), 2);
+        out.write(scratch, 0, 16);
+    }
+
+    // MMM dd, yyyy HH:mm
+    private static void writeHTMLDate(Writer out, LocalDateTime dateTime, char[] scratch) throws IOException {
+        int year = dateTime.getYear();
+        if (year < 1 || year > 9999) {
+            out.write(HTML_DATE.format(dateTime));
+            return;
+        }
+        out.write(MONTHS[dateTime.getMonthValue() - 1]);
+        scratch[0] = ' ';
+        digits(scratch, 1, dateTime.getDayOfMonth(), 2);
+        scratch[3] = ',';
+        scratch[4] = ' ';
+        digits(scratch, 5, year, 4);
+        scratch[9] = ' ';
+        digits(scratch, 10, dateTime.getHour(), 2);
+        scratch[12] = ':';
+        digits(scratch, 13, dateTime.getMinute(), 2);
+        out.write(scratch, 0, 15);
+    }
 
-            writer.println("</table>");
-            writer.println("</body></html>");
+    private static void digits(char[] target, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            target[i] = (char) ('0' + value % 10);
+            value /= 10;
         }
     }
 
-    private static String escapeCSV(String text) {
-        if (text == null) return "";
-        return text.replace("\"", "\"\"");
+    private static FileChannel openChannel(String filename) throws IOException {
+        return FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 
-    private static String escapeHTML(String text) {
-        if (text == null) return "";
-        return text.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;");
+    private static Writer openWriter(String filename) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new BufferedOutputStream(Channels.newOutputStream(openChannel(filename)), BUFFER_SIZE),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
     }
-}
\ No newline at end of file
+}
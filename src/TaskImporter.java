@@ -0,0 +1,135 @@
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Readers for the JSON Lines and columnar exports. The readers hand tasks over
+ * one at a time, so a scan never materialises the whole dump; the import
+ * methods load a dump into a {@link TaskManager}.
+ */
+public class TaskImporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final class Json {
+        static final TypeAdapter<Task> TASK = TaskPersistence.gsonBuilder().create().getAdapter(Task.class);
+    }
+
+    // Imports add everything in one bulk call: the tasks end up in memory anyway, listeners
+    // see a single event, and an empty manager builds its indexes in one linear pass
+    public static int importJSONLines(String filename, TaskManager taskManager) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        readJSONLines(Paths.get(filename), tasks::add);
+        taskManager.addAll(tasks);
+        return tasks.size();
+    }
+
+    public static int importColumnar(String filename, TaskManager taskManager) throws IOException {
+        List<Task> tasks;
+        try (ColumnarTaskFile file = ColumnarTaskFile.open(Paths.get(filename))) {
+            tasks = new ArrayList<>(file.getRowCount());
+            file.tasks().forEachRemaining(tasks::add);
+        }
+        taskManager.addAll(tasks);
+        return tasks.size();
+    }
+
+    public static void readJSONLines(Path file, Consumer<Task> consumer) throws IOException {
+        readJSONLines(file, 0, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Reads the lines that start within [from, to) bytes of the file. Splitting a
+     * file at arbitrary offsets and reading each range in parallel visits every
+     * line exactly once. Blank lines are skipped; a malformed line fails the read.
+     */
+    public static void readJSONLines(Path file, long from, long to, Consumer<Task> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LineReader lines = new LineReader(channel, Math.max(0, from - 1));
+            long position = from;
+            if (from > 0) {
+                // Start after the newline ending the line that straddles the split, or at from itself
+                position = from - 1 + lines.skipLine();
+            }
+            byte[] line;
+            while (position < to && (line = lines.readLine()) != null) {
+                long lineStart = position;
+                position += lines.lastLength();
+                if (line.length == 0) continue;
+                try {
+                    JsonReader json = new JsonReader(new StringReader(new String(line, StandardCharsets.UTF_8)));
+                    Task task = Json.TASK.read(json);
+                    if (task.getId() == null) {
+                        task = task.withId(Task.newId());
+                    }
+                    consumer.accept(task);
+                } catch (JsonParseException | IllegalStateException e) {
+                    throw new IOException("Malformed task at byte " + lineStart + " of " + file, e);
+                }
+            }
+        }
+    }
+
+    // Splits raw bytes on '\n' so callers can track exact byte offsets
+    private static final class LineReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private byte[] line = new byte[256];
+        private int lastLength;
+
+        LineReader(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            channel.position(position);
+            buffer.flip();
+        }
+
+        /** The next line without its terminator, or null at the end of the file. */
+        byte[] readLine() throws IOException {
+            int length = 0;
+            int consumed = 0;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read <= 0) {
+                        lastLength = consumed;
+                        return consumed == 0 ? null : Arrays.copyOf(line, length);
+                    }
+                }
+                byte b = buffer.get();
+                consumed++;
+                if (b == '\n') {
+                    lastLength = consumed;
+                    if (length > 0 && line[length - 1] == '\r') length--;
+                    return Arrays.copyOf(line, length);
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+
+        /** Bytes taken by the line returned last, including its terminator. */
+        int lastLength() {
+            return lastLength;
+        }
+
+        // Discards up to and including the next newline and returns how many bytes that was
+        long skipLine() throws IOException {
+            readLine();
+            return lastLength;
+        }
+    }
+}
@@ -0,0 +1,614 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Ordered store and secondary indexes behind {@link TaskManager}, keyed by task id.
+ * Tasks are immutable, so a stored task keeps the keys it was indexed under
+ * and can always be found again to be replaced or removed.
+ * Not thread-safe: changes need TaskManager's write lock. Reads modify
+ * nothing, so any number of them may run at once under its read lock.
+ */
+class TaskIndex {
+    // Same order as Task.compareTo, with the id as a final tie-break
+    static final Comparator<Task> PRIORITY_ORDER = (a, b) -> {
+        int priorityComparison = Integer.compare(b.getPriority().getValue(), a.getPriority().getValue());
+        if (priorityComparison != 0) {
+            return priorityComparison;
+        }
+        if (a.getDeadline() != null && b.getDeadline() != null) {
+            int deadlineComparison = a.getDeadline().compareTo(b.getDeadline());
+            if (deadlineComparison != 0) {
+                return deadlineComparison;
+            }
+        } else if (a.getDeadline() != null) {
+            return -1;
+        } else if (b.getDeadline() != null) {
+            return 1;
+        }
+        int createdComparison = compareNullable(a.getCreatedAt(), b.getCreatedAt());
+        if (createdComparison != 0) {
+            return createdComparison;
+        }
+        return a.getId().compareTo(b.getId());
+    };
+
+    private static final Comparator<Task> DEADLINE_ORDER = (a, b) -> {
+        int deadlineComparison = a.getDeadline().compareTo(b.getDeadline());
+        if (deadlineComparison != 0) {
+            return deadlineComparison;
+        }
+        return a.getId().compareTo(b.getId());
+    };
+
+    private final Map<String, Task> byId = new HashMap<>();
+    private final NavigableSet<Task> ordered = new TreeSet<>(PRIORITY_ORDER);
+    private final Map<Task.Priority, NavigableSet<Task>> byPriority = new EnumMap<>(Task.Priority.class);
+    private final Map<String, NavigableSet<Task>> byCategory = new HashMap<>();
+    private final Map<String, Integer> categoryNames = new HashMap<>();
+    private final NavigableSet<Task> completed = new TreeSet<>(PRIORITY_ORDER);
+    private final NavigableSet<Task> pending = new TreeSet<>(PRIORITY_ORDER);
+    private final NavigableSet<Task> byDeadline = new TreeSet<>(DEADLINE_ORDER);
+    private final NavigableSet<Task> pendingByDeadline = new TreeSet<>(DEADLINE_ORDER);
+
+    TaskIndex() {
+        for (Task.Priority priority : Task.Priority.values()) {
+            byPriority.put(priority, new TreeSet<>(PRIORITY_ORDER));
+        }
+    }
+
+    boolean contains(String id) {
+        return byId.containsKey(id);
+    }
+
+    Task get(String id) {
+        return byId.get(id);
+    }
+
+    /** Adds a task, or replaces the stored task with the same id. */
+    void put(Task task) {
+        Objects.requireNonNull(task, "task");
+        Task previous = byId.put(Objects.requireNonNull(task.getId(), "task id"), task);
+        if (previous != null) {
+            unlink(previous);
+        }
+        link(task);
+    }
+
+    /**
+     * Adds many tasks at once. Into an empty index this sorts the batch once per
+     * ordering and builds every tree bottom-up in linear time from the sorted runs,
+     * instead of rebalancing on each insert.
+     */
+    void putAll(Collection<Task> tasks) {
+        if (!byId.isEmpty()) {
+            tasks.forEach(this::put);
+            return;
+        }
+
+        for (Task task : tasks) {
+            Objects.requireNonNull(task, "task");
+            byId.put(Objects.requireNonNull(task.getId(), "task id"), task);
+        }
+        List<Task> sorted = new ArrayList<>(byId.values());
+        sorted.sort(PRIORITY_ORDER);
+
+        // Partitioning a sorted run keeps every partition sorted
+        Map<Task.Priority, List<Task>> priorityRuns = new EnumMap<>(Task.Priority.class);
+        Map<String, List<Task>> categoryRuns = new HashMap<>();
+        List<Task> completedRun = new ArrayList<>();
+        List<Task> pendingRun = new ArrayList<>();
+        List<Task> deadlineRun = new ArrayList<>();
+        for (Task entry : sorted) {
+            priorityRuns.computeIfAbsent(entry.getPriority(), key -> new ArrayList<>()).add(entry);
+            categoryRuns.computeIfAbsent(categoryKey(entry.getCategory()), key -> new ArrayList<>()).add(entry);
+            categoryNames.merge(entry.getCategory(), 1, Integer::sum);
+            (entry.isCompleted() ? completedRun : pendingRun).add(entry);
+            if (entry.getDeadline() != null) {
+                deadlineRun.add(entry);
+            }
+        }
+        deadlineRun.sort(DEADLINE_ORDER);
+        List<Task> pendingDeadlineRun = new ArrayList<>();
+        for (Task entry : deadlineRun) {
+            if (!entry.isCompleted()) {
+                pendingDeadlineRun.add(entry);
+            }
+        }
+
+        ordered.addAll(new SortedRun(sorted, PRIORITY_ORDER));
+        priorityRuns.forEach((priority, run) -> byPriority.get(priority).addAll(new SortedRun(run, PRIORITY_ORDER)));
+        categoryRuns.forEach((key, run) -> {
+            NavigableSet<Task> bucket = new TreeSet<>(PRIORITY_ORDER);
+            bucket.addAll(new SortedRun(run, PRIORITY_ORDER));
+            byCategory.put(key, bucket);
+        });
+        completed.addAll(new SortedRun(completedRun, PRIORITY_ORDER));
+        pending.addAll(new SortedRun(pendingRun, PRIORITY_ORDER));
+        byDeadline.addAll(new SortedRun(deadlineRun, DEADLINE_ORDER));
+        pendingByDeadline.addAll(new SortedRun(pendingDeadlineRun, DEADLINE_ORDER));
+    }
+
+    /** Removes the task with the given id, returning the stored instance or null. */
+    Task remove(String id) {
+        Task entry = byId.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        unlink(entry);
+        return entry;
+    }
+
+    void clear() {
+        byId.clear();
+        ordered.clear();
+        byPriority.values().forEach(Set::clear);
+        byCategory.clear();
+        categoryNames.clear();
+        completed.clear();
+        pending.clear();
+        byDeadline.clear();
+        pendingByDeadline.clear();
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    List<Task> all() {
+        return tasksOf(ordered);
+    }
+
+    List<Task> byPriority(Task.Priority priority) {
+        NavigableSet<Task> bucket = byPriority.get(priority);
+        return bucket != null ? tasksOf(bucket) : new ArrayList<>();
+    }
+
+    List<Task> byCategory(String category) {
+        if (category == null) {
+            return new ArrayList<>();
+        }
+        NavigableSet<Task> bucket = byCategory.get(categoryKey(category));
+        return bucket != null ? tasksOf(bucket) : new ArrayList<>();
+    }
+
+    Set<String> categories() {
+        return new HashSet<>(categoryNames.keySet());
+    }
+
+    List<Task> completed() {
+        return tasksOf(completed);
+    }
+
+    List<Task> pending() {
+        return tasksOf(pending);
+    }
+
+    /** Tasks whose deadline falls on the given day, earliest first. */
+    List<Task> dueOn(LocalDate day) {
+        Task from = probe(day.atStartOfDay());
+        Task to = probe(day.plusDays(1).atStartOfDay());
+        return tasksOf(byDeadline.subSet(from, true, to, false));
+    }
+
+    /** Pending tasks whose deadline is strictly before the given instant, earliest first. */
+    List<Task> pendingDueBefore(LocalDateTime instant) {
+        return tasksOf(pendingByDeadline.headSet(probe(instant), false));
+    }
+
+    /**
+     * Runs a query: scans the smallest index the query's top-level conditions
+     * allow, tests the remaining conditions in one pass, and pages the result.
+     * When the scanned index is already in the requested order the scan stops
+     * as soon as the page is full; otherwise at most offset + limit matches
+     * are held while scanning.
+     */
+    List<Task> query(TaskQuery query, LocalDateTime now) {
+        Plan plan = plan(query, now);
+        int skip = query.offset;
+        int limit = query.limit < 0 ? Integer.MAX_VALUE : query.limit;
+        List<Task> page = new ArrayList<>(Math.min(limit, 1024));
+        if (limit == 0) {
+            return page;
+        }
+        if (plan.inSortOrder) {
+            for (Task entry : plan.scan(query.descending)) {
+                if (!plan.accepts(entry, now)) continue;
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    page.add(entry);
+                    if (page.size() == limit) break;
+                }
+            }
+            return page;
+        }
+
+        Comparator<Task> order = sortOrder(query.sort, query.descending);
+        List<Task> matches;
+        if (query.limit >= 0 && (long) query.offset + query.limit < plan.estimate) {
+            // Keep the best offset + limit matches, worst on top of the heap
+            int keep = query.offset + query.limit;
+            PriorityQueue<Task> best = new PriorityQueue<>(keep + 1, order.reversed());
+            for (Task entry : plan.scan(false)) {
+                if (!plan.accepts(entry, now)) continue;
+                if (best.size() == keep && order.compare(entry, best.peek()) >= 0) continue;
+                best.add(entry);
+                if (best.size() > keep) {
+                    best.poll();
+                }
+            }
+            matches = new ArrayList<>(best);
+        } else {
+            matches = new ArrayList<>();
+            for (Task entry : plan.scan(false)) {
+                if (plan.accepts(entry, now)) {
+                    matches.add(entry);
+                }
+            }
+        }
+        matches.sort(order);
+        for (int i = skip; i < matches.size() && page.size() < limit; i++) {
+            page.add(matches.get(i));
+        }
+        return page;
+    }
+
+    /** Number of tasks matching the query's conditions, ignoring its offset and limit. */
+    int count(TaskQuery query, LocalDateTime now) {
+        Plan plan = plan(query, now);
+        if (plan.residual.isEmpty() && plan.exact) {
+            return plan.estimate;
+        }
+        int count = 0;
+        for (Task entry : plan.scan(false)) {
+            if (plan.accepts(entry, now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** One-line description of how the query would run. */
+    String explain(TaskQuery query, LocalDateTime now) {
+        Plan plan = plan(query, now);
+        StringBuilder description = new StringBuilder("scan ").append(plan.description)
+                .append(" (").append(plan.exact ? "" : "at most ").append(plan.estimate).append(" rows)");
+        if (!plan.residual.isEmpty()) {
+            description.append(", filter ").append(plan.residual.size())
+                    .append(plan.residual.size() == 1 ? " condition" : " conditions");
+        }
+        if (plan.inSortOrder) {
+            description.append(", already ordered by ").append(query.sort.name().toLowerCase(Locale.ROOT));
+        } else {
+            description.append(", sort by ").append(query.sort.name().toLowerCase(Locale.ROOT));
+        }
+        return description.toString();
+    }
+
+    /** An index scan, as a run of ordered sets, plus the conditions the scan does not already guarantee. */
+    private static final class Plan {
+        final String description;
+        final List<NavigableSet<Task>> parts;
+        // Rows the scan visits; exact unless counting stopped early
+        final int estimate;
+        final boolean exact;
+        final boolean deadlineOrdered;
+        final List<TaskQuery.Condition> covered;
+        List<TaskQuery.Condition> residual;
+        boolean inSortOrder;
+
+        Plan(String description, List<NavigableSet<Task>> parts, int estimate, boolean exact,
+             boolean deadlineOrdered, List<TaskQuery.Condition> covered) {
+            this.description = description;
+            this.parts = parts;
+            this.estimate = estimate;
+            this.exact = exact;
+            this.deadlineOrdered = deadlineOrdered;
+            this.covered = covered;
+        }
+
+        Iterable<Task> scan(boolean descending) {
+            return () -> new Iterator<Task>() {
+                private int next;
+                private Iterator<Task> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && next < parts.size()) {
+                        NavigableSet<Task> part = parts.get(descending ? parts.size() - 1 - next : next);
+                        current = descending ? part.descendingIterator() : part.iterator();
+                        next++;
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Task next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return current.next();
+                }
+            };
+        }
+
+        // The remaining conditions as one fused test
+        boolean accepts(Task entry, LocalDateTime now) {
+            for (TaskQuery.Condition condition : residual) {
+                if (!condition.test(entry, now)) return false;
+            }
+            return true;
+        }
+    }
+
+    private Plan plan(TaskQuery query, LocalDateTime now) {
+        List<TaskQuery.Condition> conditions = TaskQuery.conjuncts(query.where);
+        List<Plan> candidates = new ArrayList<>();
+        candidates.add(new Plan("all tasks", List.of(ordered), ordered.size(), true, false, List.of()));
+
+        Set<Task.Priority> priorities = EnumSet.allOf(Task.Priority.class);
+        List<TaskQuery.Condition> priorityConditions = new ArrayList<>();
+        TaskQuery.CompletedCondition status = null;
+        List<TaskQuery.Condition> deadlineConditions = new ArrayList<>();
+        TaskQuery.TimeRange bounds = TaskQuery.TimeRange.ALL;
+        for (TaskQuery.Condition condition : conditions) {
+            if (condition instanceof TaskQuery.PriorityCondition) {
+                priorities.retainAll(((TaskQuery.PriorityCondition) condition).accepted);
+                priorityConditions.add(condition);
+            } else if (condition instanceof TaskQuery.CategoryCondition) {
+                TaskQuery.CategoryCondition category = (TaskQuery.CategoryCondition) condition;
+                if (category.equal) {
+                    NavigableSet<Task> bucket = byCategory.get(categoryKey(category.category));
+                    candidates.add(new Plan("category " + category.category,
+                            bucket != null ? List.of(bucket) : List.of(), bucket != null ? bucket.size() : 0,
+                            true, false, List.of(condition)));
+                }
+            } else if (condition instanceof TaskQuery.CompletedCondition) {
+                status = (TaskQuery.CompletedCondition) condition;
+                NavigableSet<Task> bucket = status.completed ? completed : pending;
+                candidates.add(new Plan(status.completed ? "completed" : "pending", List.of(bucket), bucket.size(),
+                        true, false, List.of(condition)));
+            } else if (condition instanceof TaskQuery.TimeCondition) {
+                TaskQuery.TimeCondition time = (TaskQuery.TimeCondition) condition;
+                if (time.field == TaskQuery.TimeField.DEADLINE && time.op != TaskQuery.Op.NE) {
+                    bounds = bounds.intersect(time.range(now));
+                    deadlineConditions.add(condition);
+                }
+            }
+        }
+
+        if (!priorityConditions.isEmpty()) {
+            List<NavigableSet<Task>> buckets = new ArrayList<>();
+            int size = 0;
+            // Highest priority first, which keeps the concatenation in priority order
+            for (int i = Task.Priority.values().length - 1; i >= 0; i--) {
+                Task.Priority priority = Task.Priority.values()[i];
+                if (priorities.contains(priority)) {
+                    buckets.add(byPriority.get(priority));
+                    size += byPriority.get(priority).size();
+                }
+            }
+            candidates.add(new Plan("priority " + priorities, buckets, size, true, false, priorityConditions));
+        }
+
+        Plan best = candidates.get(0);
+        for (Plan candidate : candidates) {
+            if (candidate.estimate < best.estimate) {
+                best = candidate;
+            }
+        }
+
+        if (!deadlineConditions.isEmpty()) {
+            NavigableSet<Task> source = byDeadline;
+            List<TaskQuery.Condition> covered = new ArrayList<>(deadlineConditions);
+            if (status != null && !status.completed) {
+                source = pendingByDeadline;
+                covered.add(status);
+            }
+            NavigableSet<Task> range;
+            if (bounds.isEmpty()) {
+                range = Collections.emptyNavigableSet();
+            } else if (bounds.from != null && bounds.to != null) {
+                range = source.subSet(lowerProbe(bounds), true, upperProbe(bounds), false);
+            } else if (bounds.from != null) {
+                range = source.tailSet(lowerProbe(bounds), true);
+            } else {
+                range = source.headSet(upperProbe(bounds), false);
+            }
+            // A range's size costs a walk, so stop counting once it is no better than the best index;
+            // any range beats scanning everything, so then there is nothing to count
+            int size = 0;
+            boolean exact = false;
+            if (best == candidates.get(0)) {
+                size = best.estimate;
+            } else {
+                Iterator<Task> walk = range.iterator();
+                while (size <= best.estimate && walk.hasNext()) {
+                    walk.next();
+                    size++;
+                }
+                exact = !walk.hasNext();
+            }
+            if (best == candidates.get(0) || size < best.estimate
+                    || (size == best.estimate && query.sort == TaskQuery.Sort.DEADLINE)) {
+                best = new Plan((source == pendingByDeadline ? "pending deadline " : "deadline ") + bounds,
+                        List.of(range), size, exact, true, covered);
+            }
+        }
+
+        List<TaskQuery.Condition> residual = new ArrayList<>();
+        for (TaskQuery.Condition condition : conditions) {
+            if (!best.covered.contains(condition)) {
+                residual.add(condition);
+            }
+        }
+        best.residual = residual;
+        best.inSortOrder = best.deadlineOrdered ? query.sort == TaskQuery.Sort.DEADLINE
+                : query.sort == TaskQuery.Sort.PRIORITY;
+        return best;
+    }
+
+    // Each sort key ends in the id, so deadline order matches the deadline index exactly
+    static Comparator<Task> sortOrder(TaskQuery.Sort sort, boolean descending) {
+        Comparator<Task> order;
+        switch (sort) {
+            case DEADLINE:
+                order = nullsLast(entry -> entry.getDeadline());
+                break;
+            case CREATED:
+                order = nullsLast(entry -> entry.getCreatedAt());
+                break;
+            case TITLE:
+                order = nullsLast(entry -> entry.getTitle() != null
+                        ? entry.getTitle().toLowerCase(Locale.ROOT) : null);
+                break;
+            case CATEGORY:
+                order = nullsLast(entry -> categoryKey(entry.getCategory()));
+                break;
+            default:
+                order = PRIORITY_ORDER;
+                break;
+        }
+        if (sort != TaskQuery.Sort.PRIORITY) {
+            order = order.thenComparing(entry -> entry.getId());
+        }
+        return descending ? order.reversed() : order;
+    }
+
+    private static <K extends Comparable<? super K>> Comparator<Task> nullsLast(Function<Task, K> key) {
+        return Comparator.comparing(key, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+
+    private void link(Task entry) {
+        ordered.add(entry);
+        byPriority.get(entry.getPriority()).add(entry);
+        byCategory.computeIfAbsent(categoryKey(entry.getCategory()), key -> new TreeSet<>(PRIORITY_ORDER)).add(entry);
+        categoryNames.merge(entry.getCategory(), 1, Integer::sum);
+        (entry.isCompleted() ? completed : pending).add(entry);
+        if (entry.getDeadline() != null) {
+            byDeadline.add(entry);
+            if (!entry.isCompleted()) {
+                pendingByDeadline.add(entry);
+            }
+        }
+    }
+
+    private void unlink(Task entry) {
+        ordered.remove(entry);
+        byPriority.get(entry.getPriority()).remove(entry);
+        String key = categoryKey(entry.getCategory());
+        NavigableSet<Task> bucket = byCategory.get(key);
+        if (bucket != null) {
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                byCategory.remove(key);
+            }
+        }
+        categoryNames.computeIfPresent(entry.getCategory(), (name, count) -> count > 1 ? count - 1 : null);
+        (entry.isCompleted() ? completed : pending).remove(entry);
+        if (entry.getDeadline() != null) {
+            byDeadline.remove(entry);
+            pendingByDeadline.remove(entry);
+        }
+    }
+
+    /**
+     * Read-only SortedSet view of an already sorted, duplicate-free list. Passing
+     * one to an empty TreeSet's addAll lets it build its tree in linear time.
+     * Range views and lookups binary-search the list.
+     */
+    private static final class SortedRun extends AbstractSet<Task> implements SortedSet<Task> {
+        private final List<Task> run;
+        private final Comparator<Task> order;
+
+        SortedRun(List<Task> run, Comparator<Task> order) {
+            this.run = run;
+            this.order = order;
+        }
+
+        @Override public Iterator<Task> iterator() { return Collections.unmodifiableList(run).iterator(); }
+        @Override public int size() { return run.size(); }
+        @Override public Comparator<? super Task> comparator() { return order; }
+
+        @Override
+        public Task first() {
+            if (run.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            return run.get(0);
+        }
+
+        @Override
+        public Task last() {
+            if (run.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            return run.get(run.size() - 1);
+        }
+
+        @Override public SortedSet<Task> headSet(Task to) { return new SortedRun(run.subList(0, indexOf(to)), order); }
+        @Override public SortedSet<Task> tailSet(Task from) { return new SortedRun(run.subList(indexOf(from), run.size()), order); }
+
+        @Override
+        public SortedSet<Task> subSet(Task from, Task to) {
+            if (order.compare(from, to) > 0) {
+                throw new IllegalArgumentException("Range starts after it ends");
+            }
+            return new SortedRun(run.subList(indexOf(from), indexOf(to)), order);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Task)) {
+                return false;
+            }
+            int at = indexOf((Task) o);
+            return at < run.size() && order.compare(run.get(at), (Task) o) == 0;
+        }
+
+        // Index of the first task that does not sort before the given one
+        private int indexOf(Task task) {
+            int low = 0;
+            int high = run.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (order.compare(run.get(mid), task) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static String categoryKey(String category) {
+        return category != null ? category.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static List<Task> tasksOf(Collection<Task> bucket) {
+        return new ArrayList<>(bucket);
+    }
+
+    // Range probe for the deadline indexes; the empty id sorts before every real one
+    private static Task probe(LocalDateTime deadline) {
+        return new Task("", null, (String) null, null, deadline, null, false, null);
+    }
+
+    // A probe sorts before every task with its deadline, and no time lies between t and t + 1ns,
+    // so excluding a lower bound or including an upper one means probing the next nanosecond
+    private static Task lowerProbe(TaskQuery.TimeRange bounds) {
+        return probe(bounds.fromInclusive ? bounds.from : bounds.from.plusNanos(1));
+    }
+
+    private static Task upperProbe(TaskQuery.TimeRange bounds) {
+        return probe(bounds.toInclusive ? bounds.to.plusNanos(1) : bounds.to);
+    }
+
+    private static int compareNullable(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return a.compareTo(b);
+    }
+}
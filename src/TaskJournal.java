@@ -0,0 +1,192 @@
+import com.google.gson.stream.JsonWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only change log kept next to the task snapshot. Each add or update
+ * appends the full task as one compact JSON line and each removal appends its
+ * id, so persisting an edit costs one record instead of rewriting the store.
+ * Loading replays the log over the snapshot; see {@link TaskPersistence#loadTasks()}.
+ *
+ * If a write fails, the journal stops appending, since a log with a gap would
+ * replay wrongly, and reports the error through {@link #getFailure} and its
+ * failure listeners. Changes are then only in memory until the next snapshot,
+ * which covers them and lets the journal carry on.
+ */
+public class TaskJournal implements TaskManager.TaskManagerListener, Closeable {
+    static final String PUT = "put";
+    static final String REMOVE = "remove";
+
+    // Compact once the log holds more records than the last snapshot had tasks, keeping appends amortized O(1)
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+    private static final Logger LOGGER = Logger.getLogger(TaskJournal.class.getName());
+
+    private final TaskPersistence persistence;
+    // Shares the persistence lock so compaction and saves never take the two in opposite orders
+    private final Object lock;
+    private final TaskManager taskManager;
+    private final Path file;
+    private Writer writer;
+    private int records;
+    private int compactionThreshold;
+    private boolean closed;
+    // First write that failed since the last snapshot; read without the lock so a status bar never waits on a save
+    private volatile IOException failure;
+    private final List<Consumer<IOException>> failureListeners = new CopyOnWriteArrayList<>();
+
+    TaskJournal(TaskPersistence persistence, TaskManager taskManager, Path file) throws IOException {
+        this.persistence = persistence;
+        this.lock = persistence;
+        this.taskManager = taskManager;
+        this.file = file;
+        this.records = Files.exists(file) ? countRecords(file) : 0;
+        this.compactionThreshold = Math.max(MIN_COMPACTION_RECORDS, taskManager.snapshot().size());
+        this.writer = openWriter(file, StandardOpenOption.APPEND);
+        if (endsWithTornRecord(file)) {
+            // Terminate a record cut short by a crash so it stays on a line of its own
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void onTaskAdded(Task task) {
+        append(PUT, task);
+    }
+
+    @Override
+    public void onTaskRemoved(Task task) {
+        append(REMOVE, task);
+    }
+
+    @Override
+    public void onTaskUpdated(Task task) {
+        append(PUT, task);
+    }
+
+    @Override
+    public void onTasksAdded(List<Task> tasks) {
+        appendAll(PUT, tasks);
+    }
+
+    @Override
+    public void onTasksRemoved(List<Task> tasks) {
+        appendAll(REMOVE, tasks);
+    }
+
+    /** Folds the log into a fresh snapshot of the manager's current tasks. */
+    public void compact() throws IOException {
+        synchronized (lock) {
+            persistence.saveTasks(taskManager.snapshot());
+        }
+    }
+
+    // Called by TaskPersistence once a snapshot covering every record has been written
+    void truncate() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            writer.close();
+            writer = openWriter(file, StandardOpenOption.TRUNCATE_EXISTING);
+            records = 0;
+            compactionThreshold = Math.max(MIN_COMPACTION_RECORDS, taskManager.snapshot().size());
+            failure = null;
+        }
+    }
+
+    /**
+     * The write error since the last snapshot, or null. While there is one,
+     * changes are not journaled and are lost unless the tasks are saved.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /** Called with the error when a write fails, on the thread that made the change. */
+    public void addFailureListener(Consumer<IOException> listener) {
+        failureListeners.add(listener);
+    }
+
+    public void removeFailureListener(Consumer<IOException> listener) {
+        failureListeners.remove(listener);
+    }
+
+    public boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            taskManager.removeListener(this);
+            persistence.detachJournal(this);
+            writer.close();
+        }
+    }
+
+    private void append(String op, Task task) {
+        appendAll(op, List.of(task));
+    }
+
+    private void appendAll(String op, List<Task> tasks) {
+        synchronized (lock) {
+            // A gap in the log would replay wrongly; the next snapshot covers these changes instead
+            if (closed || failure != null) return;
+            try {
+                // A batch that would outgrow the log is cheaper to fold straight into a snapshot
+                if (records + tasks.size() > compactionThreshold) {
+                    compact();
+                    return;
+                }
+                for (Task task : tasks) {
+                    JsonWriter json = new JsonWriter(writer);
+                    json.setSerializeNulls(false);
+                    if (REMOVE.equals(op)) {
+                        persistence.writeRecord(json, op, task.getId());
+                    } else {
+                        persistence.writeRecord(json, op, task);
+                    }
+                    writer.write('\n');
+                }
+                writer.flush();
+                records += tasks.size();
+            } catch (IOException e) {
+                // The in-memory store is still correct; the next successful save rewrites the snapshot
+                failure = e;
+                LOGGER.log(Level.SEVERE, "Could not journal changes to " + file + "; they are kept only until the next save", e);
+                failureListeners.forEach(listener -> listener.accept(e));
+            }
+        }
+    }
+
+    private static Writer openWriter(Path file, StandardOpenOption mode) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode),
+                StandardCharsets.UTF_8));
+    }
+
+    private static boolean endsWithTornRecord(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (raf.length() == 0) return false;
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        }
+    }
+
+    private static int countRecords(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return (int) reader.lines().filter(line -> !line.isEmpty()).count();
+        }
+    }
+}
@@ -1,21 +1,71 @@
 import java.util.*;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.time.LocalDateTime;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
+/**
+ * Thread-safe task store. Reads share a read lock and run concurrently;
+ * changes take the write lock. Listeners are notified after the lock is
+ * released, one change at a time and in the order the changes were made,
+ * so a listener never sees an update before the addition it follows. A
+ * thread that changes the store while another thread is notifying leaves
+ * its events to that thread and returns without waiting for them.
+ *
+ * Tasks are immutable. An update stores a new copy with the next version,
+ * so readers can hold on to tasks or whole snapshots without locking.
+ */
 public class TaskManager {
-    private PriorityBlockingQueue<Task> taskQueue;
-    private List<TaskManagerListener> listeners;
+    // Id-keyed, priority-ordered store plus secondary indexes; guarded by lock
+    private final TaskIndex index;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<TaskManagerListener> listeners = new CopyOnWriteArrayList<>();
+    // Notifications queued under the write lock, so the queue order is the change order
+    private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private volatile long modificationCount;
+    private volatile Snapshot snapshot;
+    // Modification count of the change whose event is being delivered; only touched by the dispatching thread
+    private long deliveringCount;
+
+    static final class Snapshot {
+        final long modificationCount;
+        final List<Task> tasks;
+
+        Snapshot(long modificationCount, List<Task> tasks) {
+            this.modificationCount = modificationCount;
+            this.tasks = tasks;
+        }
+    }
 
     public interface TaskManagerListener {
         void onTaskAdded(Task task);
         void onTaskRemoved(Task task);
         void onTaskUpdated(Task task);
+
+        // Override to also see the version the update replaced
+        default void onTaskUpdated(Task previous, Task updated) {
+            onTaskUpdated(updated);
+        }
+
+        // Bulk changes arrive as one call; override to handle them in a single pass
+        default void onTasksAdded(List<Task> tasks) {
+            tasks.forEach(this::onTaskAdded);
+        }
+
+        default void onTasksRemoved(List<Task> tasks) {
+            tasks.forEach(this::onTaskRemoved);
+        }
     }
 
     public TaskManager() {
-        this.taskQueue = new PriorityBlockingQueue<>();
-        this.listeners = new ArrayList<>();
+        this.index = new TaskIndex();
     }
 
     public void addListener(TaskManagerListener listener) {
@@ -26,86 +76,322 @@ public class TaskManager {
         listeners.remove(listener);
     }
 
+    /**
+     * Adds a task. If one with the same id is stored, this is an update of it
+     * instead: the stored version goes up by one and listeners get
+     * onTaskUpdated, so a copy holding an older version can never win a later
+     * {@link #updateTask(Task)}. If another thread is notifying listeners, they
+     * may hear of this change only after this returns.
+     */
     public void addTask(Task task) {
-        taskQueue.offer(task);
-        notifyTaskAdded(task);
+        write(() -> {
+            Task current = index.get(task.getId());
+            if (current != null) {
+                commit(current, task);
+            } else {
+                index.put(task);
+                queue(listener -> listener.onTaskAdded(task));
+            }
+            return true;
+        });
     }
 
+    /** Same as {@link #upsertAll}, for callers that do not need the count. */
+    public void addAll(Collection<Task> tasks) {
+        upsertAll(tasks);
+    }
+
+    /**
+     * Adds a batch of tasks under one lock and notifies listeners once with the
+     * new tasks; a task whose id is already stored updates it as {@link #addTask}
+     * does, in the same step. Returns how many tasks were new; the rest updated
+     * a stored task or an earlier copy in the batch. If another thread is
+     * notifying listeners, they may hear of this change only after this returns.
+     */
+    public int upsertAll(Collection<Task> tasks) {
+        List<Task> batch = new ArrayList<>(tasks);
+        int[] fresh = new int[1];
+        write(() -> {
+            // Within the batch the last copy of a new id wins, as it would in the index
+            Map<String, Task> added = new LinkedHashMap<>();
+            for (Task task : batch) {
+                Task current = index.get(task.getId());
+                if (current != null) {
+                    commit(current, task);
+                } else {
+                    added.put(task.getId(), task);
+                }
+            }
+            List<Task> stored = new ArrayList<>(added.values());
+            index.putAll(stored);
+            queueTasksAdded(stored);
+            fresh[0] = stored.size();
+            return true;
+        });
+        return fresh[0];
+    }
+
+    /**
+     * Swaps the whole store for the given tasks, e.g. when reloading from disk.
+     * Listeners get one removal event for the old tasks and one addition event for the new.
+     * If another thread is notifying listeners, they may hear of this change only after this returns.
+     */
+    public void replaceAll(Collection<Task> tasks) {
+        List<Task> added = new ArrayList<>(tasks);
+        write(() -> {
+            List<Task> removed = index.all();
+            index.clear();
+            index.putAll(added);
+            queueTasksRemoved(removed);
+            queueTasksAdded(added);
+            return true;
+        });
+    }
+
+    /** Same as {@link #removeTask(String)} with the task's id. */
     public boolean removeTask(Task task) {
-        boolean removed = taskQueue.remove(task);
-        if (removed) {
-            notifyTaskRemoved(task);
-        }
-        return removed;
+        return removeTask(task.getId());
+    }
+
+    /**
+     * Removes the task with the given id; returns false if there is none.
+     * If another thread is notifying listeners, they may hear of this change only after this returns.
+     */
+    public boolean removeTask(String id) {
+        return write(() -> {
+            Task removed = index.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            queue(listener -> listener.onTaskRemoved(removed));
+            return true;
+        });
     }
 
-    public void updateTask(Task task) {
-        // Remove and re-add to maintain priority order
-        taskQueue.remove(task);
-        taskQueue.offer(task);
-        notifyTaskUpdated(task);
+    /**
+     * Stores an edited copy of a task, e.g. one made with {@link Task#withPriority}.
+     * The copy must derive from the version currently stored; if another change
+     * got there first this throws ConcurrentModificationException and stores
+     * nothing, so the caller can re-read the task and retry. Returns the stored
+     * task, which carries the next version. If another thread is notifying
+     * listeners, they may hear of this change only after this returns.
+     */
+    public Task updateTask(Task task) {
+        Task[] stored = new Task[1];
+        write(() -> {
+            Task current = index.get(task.getId());
+            if (current == null) {
+                throw new NoSuchElementException("No task with id " + task.getId());
+            }
+            if (current.getVersion() != task.getVersion()) {
+                throw new ConcurrentModificationException("Task " + task.getId() + " is at version "
+                        + current.getVersion() + ", the change was made to version " + task.getVersion());
+            }
+            stored[0] = commit(current, task);
+            return true;
+        });
+        return stored[0];
+    }
+
+    /**
+     * Replaces the stored task with the given id by the change applied to it, as
+     * one atomic step, so concurrent read-modify-write updates are never lost.
+     * Returns the stored task, or null if there is no such task. The change runs
+     * under the write lock, may run only once, and must keep the task's id.
+     * If another thread is notifying listeners, they may hear of this change only after this returns.
+     */
+    public Task updateTask(String id, UnaryOperator<Task> change) {
+        Task[] stored = new Task[1];
+        write(() -> {
+            Task current = index.get(id);
+            if (current == null) {
+                return false;
+            }
+            Task updated = change.apply(current);
+            if (!id.equals(updated.getId())) {
+                throw new IllegalArgumentException("An update must keep the task id " + id);
+            }
+            stored[0] = commit(current, updated);
+            return true;
+        });
+        return stored[0];
+    }
+
+    public Task getTask(String id) {
+        return read(() -> index.get(id));
     }
 
     public List<Task> getAllTasks() {
-        return new ArrayList<>(taskQueue);
+        return read(index::all);
+    }
+
+    /**
+     * Every task in priority order as of one moment, as an unmodifiable list.
+     * The list is shared by all callers until the next change, so repeated reads
+     * between changes cost nothing and take no lock.
+     */
+    public List<Task> snapshot() {
+        return currentSnapshot().tasks;
+    }
+
+    // The snapshot together with the modification count it reflects
+    Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.modificationCount == modificationCount) {
+            return current;
+        }
+        return read(() -> {
+            // The write lock is out, so the count cannot move while the copy is made
+            Snapshot fresh = new Snapshot(modificationCount, Collections.unmodifiableList(index.all()));
+            snapshot = fresh;
+            return fresh;
+        });
+    }
+
+    /**
+     * While a listener is being notified, the modification count the change
+     * brought the store to. Lets a listener line events up with a snapshot.
+     */
+    long deliveringModificationCount() {
+        return deliveringCount;
     }
 
     public List<Task> getTasksByPriority(Task.Priority priority) {
-        return taskQueue.stream()
-                .filter(task -> task.getPriority() == priority)
-                .collect(Collectors.toList());
+        return read(() -> index.byPriority(priority));
     }
 
     public List<Task> getTodaysTasks() {
-        return taskQueue.stream()
-                .filter(Task::isDueToday)
-                .collect(Collectors.toList());
+        return read(() -> index.dueOn(TaskClock.get().today()));
     }
 
     public List<Task> getOverdueTasks() {
-        return taskQueue.stream()
-                .filter(Task::isOverdue)
-                .filter(task -> !task.isCompleted())
-                .collect(Collectors.toList());
+        return read(() -> index.pendingDueBefore(TaskClock.get().now()));
     }
 
     public List<Task> getCompletedTasks() {
-        return taskQueue.stream()
-                .filter(Task::isCompleted)
-                .collect(Collectors.toList());
+        return read(index::completed);
     }
 
     public List<Task> getPendingTasks() {
-        return taskQueue.stream()
-                .filter(task -> !task.isCompleted())
-                .collect(Collectors.toList());
+        return read(index::pending);
     }
 
     public List<Task> getTasksByCategory(String category) {
-        return taskQueue.stream()
-                .filter(task -> task.getCategory().equalsIgnoreCase(category))
-                .collect(Collectors.toList());
+        return read(() -> index.byCategory(category));
     }
 
     public Set<String> getAllCategories() {
-        return taskQueue.stream()
-                .map(Task::getCategory)
-                .collect(Collectors.toSet());
+        return read(index::categories);
+    }
+
+    /** The page of tasks matching the query, in its order; relative times are taken from now. */
+    public List<Task> query(TaskQuery query) {
+        return read(() -> index.query(query, TaskClock.get().now()));
+    }
+
+    /** Number of tasks matching the query's conditions, ignoring its offset and limit. */
+    public int count(TaskQuery query) {
+        return read(() -> index.count(query, TaskClock.get().now()));
     }
 
+    /** Describes the index scan and filtering a query would run with the current contents. */
+    public String explain(TaskQuery query) {
+        return read(() -> index.explain(query, TaskClock.get().now()));
+    }
+
+    /**
+     * Removes every task. If another thread is notifying listeners, they may
+     * hear of this change only after this returns.
+     */
     public void clearAllTasks() {
-        taskQueue.clear();
+        write(() -> {
+            List<Task> removed = index.all();
+            index.clear();
+            queueTasksRemoved(removed);
+            return true;
+        });
+    }
+
+    /**
+     * Count of changes made so far. A query result is current as long as this
+     * has not moved since the query ran.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    // Only called under the write lock
+    private Task commit(Task current, Task updated) {
+        Task stored = updated.withVersion(current.getVersion() + 1);
+        index.put(stored);
+        queue(listener -> listener.onTaskUpdated(current, stored));
+        return stored;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return reader.get();
+        } finally {
+            readLock.unlock();
+        }
     }
 
-    private void notifyTaskAdded(Task task) {
-        listeners.forEach(listener -> listener.onTaskAdded(task));
+    // Runs a change under the write lock, then delivers the events it queued; returns whether anything changed
+    private boolean write(BooleanSupplier change) {
+        boolean changed;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            changed = change.getAsBoolean();
+            if (changed) {
+                modificationCount++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        dispatch();
+        return changed;
+    }
+
+    // Only called under the write lock, by a change that will be counted
+    private void queue(Consumer<TaskManagerListener> event) {
+        long count = modificationCount + 1;
+        events.add(() -> {
+            deliveringCount = count;
+            listeners.forEach(event);
+        });
     }
 
-    private void notifyTaskRemoved(Task task) {
-        listeners.forEach(listener -> listener.onTaskRemoved(task));
+    private void queueTasksAdded(List<Task> tasks) {
+        if (tasks.isEmpty()) return;
+        List<Task> view = Collections.unmodifiableList(tasks);
+        queue(listener -> listener.onTasksAdded(view));
     }
 
-    private void notifyTaskUpdated(Task task) {
-        listeners.forEach(listener -> listener.onTaskUpdated(task));
+    private void queueTasksRemoved(List<Task> tasks) {
+        if (tasks.isEmpty()) return;
+        List<Task> view = Collections.unmodifiableList(tasks);
+        queue(listener -> listener.onTasksRemoved(view));
+    }
+
+    /**
+     * Delivers queued events in order, on whichever thread gets here first. The
+     * outer loop closes the gap where another thread queues an event just after
+     * the queue looked empty but before the flag was cleared. A listener that
+     * changes the store from a callback has its events delivered after the current one.
+     */
+    private void dispatch() {
+        while (!events.isEmpty() && dispatching.compareAndSet(false, true)) {
+            try {
+                Runnable event;
+                while ((event = events.poll()) != null) {
+                    event.run();
+                }
+            } finally {
+                dispatching.set(false);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,52 +1,348 @@
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import java.io.*;
-import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
 public class TaskPersistence {
     private static final String TASKS_FILE = "tasks.json";
+    static final String JOURNAL_SUFFIX = ".log";
+    private final Path tasksFile;
+    private final Path journalFile;
     private Gson gson;
+    private TypeAdapter<Task> taskAdapter;
+    private TaskJournal journal;
+    // Open on the binary snapshot for its lazily loaded descriptions; closed before the file is replaced
+    private final List<LazyText.Source> descriptionSources = new ArrayList<>();
 
     public TaskPersistence() {
-        gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+        this(TASKS_FILE);
+    }
+
+    public TaskPersistence(String tasksFile) {
+        this.tasksFile = Paths.get(tasksFile);
+        this.journalFile = Paths.get(tasksFile + JOURNAL_SUFFIX);
+        gson = gsonBuilder()
                 .setPrettyPrinting()
                 .create();
+        taskAdapter = gson.getAdapter(Task.class);
+    }
+
+    /**
+     * Writes a full snapshot through a temp file and an atomic rename, then
+     * discards the change journal since the snapshot now covers it.
+     */
+    public synchronized void saveTasks(List<Task> tasks) throws IOException {
+        if (BinaryTaskFormat.handles(tasksFile)) {
+            BinaryTaskFormat.Relocation relocation = new BinaryTaskFormat.Relocation();
+            List<LazyText.Source> moved = new ArrayList<>(1);
+            writeAtomically(tasksFile, out -> BinaryTaskFormat.write(tasks, out, relocation), written -> {
+                // Windows cannot replace a file that is open, so the descriptions move to the new one first
+                LazyText.Source source = relocation.apply(written);
+                if (source != null) {
+                    moved.add(source);
+                }
+                closeDescriptionSources();
+                descriptionSources.addAll(moved);
+            });
+            moved.forEach(source -> source.renamedTo(tasksFile));
+        } else {
+            writeAtomically(tasksFile, out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                JsonWriter json = gson.newJsonWriter(writer);
+                json.beginArray();
+                for (Task task : tasks) {
+                    taskAdapter.write(json, task);
+                }
+                json.endArray();
+                json.flush();
+            });
+        }
+        if (journal != null) {
+            journal.truncate();
+        } else {
+            Files.deleteIfExists(journalFile);
+        }
     }
 
-    public void saveTasks(List<Task> tasks) throws IOException {
-        try (FileWriter writer = new FileWriter(TASKS_FILE)) {
-            gson.toJson(tasks, writer);
+    /**
+     * Reads the last snapshot and replays any journal records written after it.
+     * The snapshot format follows the file extension: {@value BinaryTaskFormat#EXTENSION}
+     * files are binary, anything else is JSON.
+     */
+    public synchronized List<Task> loadTasks() throws IOException {
+        Map<String, Task> tasks = new LinkedHashMap<>();
+        if (Files.exists(tasksFile)) {
+            for (Task task : readSnapshot()) {
+                tasks.put(task.getId(), task);
+            }
         }
+        if (Files.exists(journalFile)) {
+            replayJournal(tasks);
+        }
+        return tasks.isEmpty() ? List.of() : new ArrayList<>(tasks.values());
     }
 
-    public List<Task> loadTasks() throws IOException {
-        File file = new File(TASKS_FILE);
-        if (!file.exists()) {
-            return List.of(); // Return empty list if file doesn't exist
+    /**
+     * Starts journaling every change made through the given manager, so a
+     * single edit costs one appended record instead of a full rewrite.
+     * The journal is compacted into a new snapshot once it outgrows the last one.
+     */
+    public synchronized TaskJournal attachJournal(TaskManager taskManager) throws IOException {
+        if (journal != null) {
+            journal.close();
         }
+        journal = new TaskJournal(this, taskManager, journalFile);
+        taskManager.addListener(journal);
+        return journal;
+    }
 
-        try (FileReader reader = new FileReader(TASKS_FILE)) {
-            Type taskListType = new TypeToken<List<Task>>(){}.getType();
-            List<Task> tasks = gson.fromJson(reader, taskListType);
-            return tasks != null ? tasks : List.of();
+    synchronized void detachJournal(TaskJournal detached) {
+        if (journal == detached) {
+            journal = null;
         }
     }
 
-    private static class LocalDateTimeAdapter implements JsonSerializer<LocalDateTime>, JsonDeserializer<LocalDateTime> {
+    void writeRecord(JsonWriter json, String op, Task task) throws IOException {
+        json.beginObject();
+        json.name("op").value(op);
+        json.name("task");
+        taskAdapter.write(json, task);
+        json.endObject();
+    }
+
+    void writeRecord(JsonWriter json, String op, String id) throws IOException {
+        json.beginObject();
+        json.name("op").value(op);
+        json.name("id").value(id);
+        json.endObject();
+    }
+
+    // Shared by every JSON format, so tasks read and write the same way everywhere
+    static GsonBuilder gsonBuilder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter().nullSafe())
+                .registerTypeAdapter(RecurrenceRule.class, new RecurrenceRuleAdapter().nullSafe())
+                .registerTypeAdapterFactory(new LazyDescriptionAdapterFactory());
+    }
+
+    /** Copies a task store between formats, e.g. tasks.json to tasks.stmb and back. */
+    public static void convert(String sourceFile, String targetFile) throws IOException {
+        TaskPersistence source = new TaskPersistence(sourceFile);
+        TaskPersistence target = new TaskPersistence(targetFile);
+        target.saveTasks(source.loadTasks());
+        // Neither is used again, so neither file should stay open for lazy descriptions
+        source.closeDescriptionSources();
+        target.closeDescriptionSources();
+    }
+
+    private List<Task> readSnapshot() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        if (Files.size(tasksFile) == 0) {
+            return tasks;
+        }
+        if (BinaryTaskFormat.handles(tasksFile)) {
+            tasks.addAll(readBinarySnapshot());
+            assignMissingIds(tasks);
+            return tasks;
+        }
+        try (Reader reader = Files.newBufferedReader(tasksFile, StandardCharsets.UTF_8)) {
+            JsonReader json = gson.newJsonReader(reader);
+            if (json.peek() == JsonToken.NULL) {
+                return tasks;
+            }
+            json.beginArray();
+            while (json.hasNext()) {
+                tasks.add(taskAdapter.read(json));
+            }
+            json.endArray();
+        }
+        assignMissingIds(tasks);
+        return tasks;
+    }
+
+    private void replayJournal(Map<String, Task> tasks) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                try {
+                    applyRecord(line, tasks);
+                } catch (JsonParseException | IOException | IllegalStateException e) {
+                    // A record torn by a crashed append; the journal always starts the next one on a new line
+                }
+            }
+        }
+    }
+
+    private void applyRecord(String line, Map<String, Task> tasks) throws IOException {
+        JsonReader json = new JsonReader(new StringReader(line));
+        String op = null;
+        String id = null;
+        Task task = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "op": op = json.nextString(); break;
+                case "id": id = json.nextString(); break;
+                case "task": task = taskAdapter.read(json); break;
+                default: json.skipValue(); break;
+            }
+        }
+        json.endObject();
+
+        if (TaskJournal.PUT.equals(op) && task != null && task.getId() != null) {
+            tasks.remove(task.getId());
+            tasks.put(task.getId(), task);
+        } else if (TaskJournal.REMOVE.equals(op) && id != null) {
+            tasks.remove(id);
+        }
+    }
+
+    private interface WriteAction {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private interface ReplaceAction {
+        void prepare(Path written) throws IOException;
+    }
+
+    // Lazy descriptions stay readable when the file goes: anything still reading one is copied to the heap
+    private void closeDescriptionSources() throws IOException {
+        for (LazyText.Source source : descriptionSources) {
+            source.close();
+        }
+        descriptionSources.clear();
+    }
+
+    private List<Task> readBinarySnapshot() throws IOException {
+        // Sources whose tasks are all gone have nothing left to copy and can go now
+        Iterator<LazyText.Source> sources = descriptionSources.iterator();
+        while (sources.hasNext()) {
+            LazyText.Source source = sources.next();
+            if (source.isUnused()) {
+                source.close();
+                sources.remove();
+            }
+        }
+        LazyText.Source source = new LazyText.Source(tasksFile);
+        List<Task> tasks;
+        try {
+            tasks = BinaryTaskFormat.read(tasksFile, source);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+        if (source.isUnused()) {
+            source.close();
+        } else {
+            descriptionSources.add(source);
+        }
+        return tasks;
+    }
+
+    // Writes next to the target and renames over it, so a crash leaves either the old or the new file
+    private static void writeAtomically(Path target, WriteAction action) throws IOException {
+        writeAtomically(target, action, written -> { });
+    }
+
+    // beforeReplace gets the complete temp file just before it is renamed over the target
+    private static void writeAtomically(Path target, WriteAction action, ReplaceAction beforeReplace) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+                action.write(out);
+                out.flush();
+                channel.force(true);
+            }
+            beforeReplace.prepare(temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Files written before tasks had ids, or edited by hand, may lack ids or repeat them
+    private static void assignMissingIds(List<Task> tasks) {
+        Set<String> seen = new HashSet<>();
+        for (ListIterator<Task> it = tasks.listIterator(); it.hasNext(); ) {
+            Task task = it.next();
+            if (task.getId() == null || !seen.add(task.getId())) {
+                task = task.withId(Task.newId());
+                it.set(task);
+                seen.add(task.getId());
+            }
+        }
+    }
+
+    // Gson reads fields directly, so a description still in a binary snapshot is loaded before writing
+    private static class LazyDescriptionAdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Task.class) {
+                return null;
+            }
+            TypeAdapter<Task> delegate = (TypeAdapter<Task>) gson.getDelegateAdapter(this, type);
+            return (TypeAdapter<T>) new TypeAdapter<Task>() {
+                @Override
+                public void write(JsonWriter out, Task task) throws IOException {
+                    delegate.write(out, task != null ? task.withDescriptionLoaded() : null);
+                }
+
+                @Override
+                public Task read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
+    }
+
+    private static class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
         private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
         @Override
-        public JsonElement serialize(LocalDateTime dateTime, Type type, JsonSerializationContext context) {
-            return new JsonPrimitive(dateTime.format(formatter));
+        public void write(JsonWriter out, LocalDateTime dateTime) throws IOException {
+            out.value(dateTime.format(formatter));
+        }
+
+        @Override
+        public LocalDateTime read(JsonReader in) throws IOException {
+            return LocalDateTime.parse(in.nextString(), formatter);
+        }
+    }
+
+    // A rule is stored as its text form, the same in every format
+    private static class RecurrenceRuleAdapter extends TypeAdapter<RecurrenceRule> {
+        @Override
+        public void write(JsonWriter out, RecurrenceRule rule) throws IOException {
+            out.value(rule.toString());
         }
 
         @Override
-        public LocalDateTime deserialize(JsonElement json, Type type, JsonDeserializationContext context) {
-            return LocalDateTime.parse(json.getAsString(), formatter);
+        public RecurrenceRule read(JsonReader in) throws IOException {
+            return RecurrenceRule.parse(in.nextString());
         }
     }
-}
\ No newline at end of file
+}
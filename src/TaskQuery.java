@@ -0,0 +1,734 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Filter, order and page over tasks, written as a small query language and
+ * run by {@link TaskManager#query(TaskQuery)}, which scans the most selective
+ * index the conditions allow and checks the rest on the way.
+ *
+ * <pre>
+ * priority >= HIGH and category = tech and deadline &lt; +2d and !completed
+ * (overdue or deadline = today) and title ~ "report" order by deadline limit 20 offset 40
+ * </pre>
+ *
+ * Fields: {@code priority} (LOW..URGENT, compared by rank), {@code category}
+ * (case-insensitive), {@code deadline} and {@code created} (an ISO date or
+ * date-time, {@code now}, {@code today}, {@code tomorrow}, {@code yesterday},
+ * {@code none}, or an offset from now such as {@code +2d}, {@code -3h},
+ * {@code 30m}, {@code 1w}), {@code title} and {@code description} ({@code ~}
+ * for contains). A date stands for its whole day, so {@code deadline = today}
+ * matches any time today. Flags: {@code completed}, {@code pending},
+ * {@code overdue}. Conditions combine with {@code and}, {@code or},
+ * {@code not}/{@code !} and parentheses; relative times are resolved when the
+ * query runs.
+ */
+public final class TaskQuery {
+
+    public enum Sort { PRIORITY, DEADLINE, CREATED, TITLE, CATEGORY }
+
+    private static final TaskQuery ALL = new TaskQuery("", null, Sort.PRIORITY, false, 0, -1);
+
+    private final String text;
+    // Null matches every task
+    final Condition where;
+    final Sort sort;
+    final boolean descending;
+    final int offset;
+    // Negative for no limit
+    final int limit;
+
+    private TaskQuery(String text, Condition where, Sort sort, boolean descending, int offset, int limit) {
+        this.text = text;
+        this.where = where;
+        this.sort = sort;
+        this.descending = descending;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /** Every task in priority order. */
+    public static TaskQuery all() {
+        return ALL;
+    }
+
+    /** Parses a query; throws IllegalArgumentException naming the offending position. */
+    public static TaskQuery parse(String query) {
+        return new Parser(query).parse();
+    }
+
+    public TaskQuery orderBy(Sort sort, boolean descending) {
+        return new TaskQuery(text, where, Objects.requireNonNull(sort, "sort"), descending, offset, limit);
+    }
+
+    public TaskQuery offset(int offset) {
+        if (offset < 0) throw new IllegalArgumentException("Negative offset: " + offset);
+        return new TaskQuery(text, where, sort, descending, offset, limit);
+    }
+
+    public TaskQuery limit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
+        return new TaskQuery(text, where, sort, descending, offset, limit);
+    }
+
+    /** The filter on its own, evaluated against the current time on every call. */
+    public Predicate<Task> asPredicate() {
+        if (where == null) {
+            return task -> true;
+        }
+        return task -> where.test(task, TaskClock.get().now());
+    }
+
+    /** Whether the matching tasks can change as time passes, e.g. for {@code overdue} or {@code deadline = today}. */
+    public boolean dependsOnTime() {
+        return dependsOnTime(where);
+    }
+
+    private static boolean dependsOnTime(Condition condition) {
+        if (condition instanceof TimeCondition) {
+            return ((TimeCondition) condition).value.isRelative();
+        }
+        if (condition instanceof Not) {
+            return dependsOnTime(((Not) condition).operand);
+        }
+        List<Condition> operands = condition instanceof And ? ((And) condition).operands
+                : condition instanceof Or ? ((Or) condition).operands : List.of();
+        for (Condition operand : operands) {
+            if (dependsOnTime(operand)) return true;
+        }
+        return false;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /** The page size, or -1 when unlimited. */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    // Filter conditions, each tested against one task
+
+    abstract static class Condition {
+        abstract boolean test(Task task, LocalDateTime now);
+    }
+
+    enum Op {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        boolean holds(int comparison) {
+            switch (this) {
+                case EQ: return comparison == 0;
+                case NE: return comparison != 0;
+                case LT: return comparison < 0;
+                case LE: return comparison <= 0;
+                case GT: return comparison > 0;
+                default: return comparison >= 0;
+            }
+        }
+    }
+
+    static final class PriorityCondition extends Condition {
+        final Set<Task.Priority> accepted = EnumSet.noneOf(Task.Priority.class);
+
+        PriorityCondition(Op op, Task.Priority value) {
+            for (Task.Priority priority : Task.Priority.values()) {
+                if (op.holds(Integer.compare(priority.getValue(), value.getValue()))) {
+                    accepted.add(priority);
+                }
+            }
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            return accepted.contains(task.getPriority());
+        }
+    }
+
+    static final class CategoryCondition extends Condition {
+        final String category;
+        final boolean equal;
+
+        CategoryCondition(String category, boolean equal) {
+            this.category = category;
+            this.equal = equal;
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            boolean same = category == null ? task.getCategory() == null
+                    : category.equalsIgnoreCase(task.getCategory());
+            return same == equal;
+        }
+    }
+
+    static final class CompletedCondition extends Condition {
+        final boolean completed;
+
+        CompletedCondition(boolean completed) {
+            this.completed = completed;
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            return task.isCompleted() == completed;
+        }
+    }
+
+    enum TimeField { DEADLINE, CREATED }
+
+    /**
+     * A comparison of a timestamp with an instant or a whole day. Every form
+     * except != resolves to one range, which is what the planner scans on the
+     * deadline index. A day is the half-open range [midnight, next midnight);
+     * an instant is the single point [t, t], so {@code deadline = now} and
+     * {@code deadline <= 2030-01-01T10:00} include a task due at exactly that time.
+     */
+    static final class TimeCondition extends Condition {
+        final TimeField field;
+        final Op op;
+        final TimeValue value;
+
+        TimeCondition(TimeField field, Op op, TimeValue value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+        }
+
+        /** The range this condition accepts at the given time. Not for NE. */
+        TimeRange range(LocalDateTime now) {
+            LocalDateTime start = value.start(now);
+            LocalDateTime end = value.end(now);
+            boolean instant = value.isInstant();
+            switch (op) {
+                case EQ: return new TimeRange(start, true, end, instant);
+                case LT: return new TimeRange(null, false, start, false);
+                case LE: return new TimeRange(null, false, end, instant);
+                case GT: return new TimeRange(end, !instant, null, false);
+                case GE: return new TimeRange(start, true, null, false);
+                default: throw new IllegalStateException("No single range for " + op.symbol);
+            }
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            LocalDateTime time = field == TimeField.DEADLINE ? task.getDeadline() : task.getCreatedAt();
+            if (time == null) {
+                return false;
+            }
+            if (op == Op.NE) {
+                return !new TimeCondition(field, Op.EQ, value).range(now).contains(time);
+            }
+            return range(now).contains(time);
+        }
+    }
+
+    /** A range of timestamps; a null bound is open. */
+    static final class TimeRange {
+        static final TimeRange ALL = new TimeRange(null, false, null, false);
+
+        final LocalDateTime from;
+        final boolean fromInclusive;
+        final LocalDateTime to;
+        final boolean toInclusive;
+
+        TimeRange(LocalDateTime from, boolean fromInclusive, LocalDateTime to, boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        boolean contains(LocalDateTime time) {
+            if (from != null && (fromInclusive ? time.isBefore(from) : !time.isAfter(from))) return false;
+            if (to != null && (toInclusive ? time.isAfter(to) : !time.isBefore(to))) return false;
+            return true;
+        }
+
+        boolean isEmpty() {
+            if (from == null || to == null) return false;
+            int comparison = from.compareTo(to);
+            return comparison > 0 || (comparison == 0 && !(fromInclusive && toInclusive));
+        }
+
+        /** The range both this and the other accept. */
+        TimeRange intersect(TimeRange other) {
+            LocalDateTime newFrom = from;
+            boolean newFromInclusive = fromInclusive;
+            if (other.from != null && (from == null || other.from.isAfter(from)
+                    || (other.from.equals(from) && !other.fromInclusive))) {
+                newFrom = other.from;
+                newFromInclusive = other.fromInclusive;
+            }
+            LocalDateTime newTo = to;
+            boolean newToInclusive = toInclusive;
+            if (other.to != null && (to == null || other.to.isBefore(to)
+                    || (other.to.equals(to) && !other.toInclusive))) {
+                newTo = other.to;
+                newToInclusive = other.toInclusive;
+            }
+            return new TimeRange(newFrom, newFromInclusive, newTo, newToInclusive);
+        }
+
+        @Override
+        public String toString() {
+            return (from == null ? "(" : (fromInclusive ? "[" : "(") + from) + ", "
+                    + (to == null ? ")" : to + (toInclusive ? "]" : ")"));
+        }
+    }
+
+    static final class MissingCondition extends Condition {
+        final TimeField field;
+
+        MissingCondition(TimeField field) {
+            this.field = field;
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            return (field == TimeField.DEADLINE ? task.getDeadline() : task.getCreatedAt()) == null;
+        }
+    }
+
+    static final class ContainsCondition extends Condition {
+        final boolean title;
+        final String text;
+
+        ContainsCondition(boolean title, String text) {
+            this.title = title;
+            this.text = text.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            String value = title ? task.getTitle() : task.getDescription();
+            return value != null && value.toLowerCase(Locale.ROOT).contains(text);
+        }
+    }
+
+    static final class Not extends Condition {
+        final Condition operand;
+
+        Not(Condition operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            return !operand.test(task, now);
+        }
+    }
+
+    static final class And extends Condition {
+        final List<Condition> operands;
+
+        And(List<Condition> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            for (Condition operand : operands) {
+                if (!operand.test(task, now)) return false;
+            }
+            return true;
+        }
+    }
+
+    static final class Or extends Condition {
+        final List<Condition> operands;
+
+        Or(List<Condition> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean test(Task task, LocalDateTime now) {
+            for (Condition operand : operands) {
+                if (operand.test(task, now)) return true;
+            }
+            return false;
+        }
+    }
+
+    /** The top-level conjuncts of a condition, which the planner may serve from an index. */
+    static List<Condition> conjuncts(Condition condition) {
+        if (condition == null) {
+            return List.of();
+        }
+        if (condition instanceof And) {
+            List<Condition> flat = new ArrayList<>();
+            for (Condition operand : ((And) condition).operands) {
+                flat.addAll(conjuncts(operand));
+            }
+            return flat;
+        }
+        return List.of(condition);
+    }
+
+    /** An instant, a whole day, or either relative to the time the query runs. */
+    static final class TimeValue {
+        private final LocalDateTime instant;
+        private final LocalDate day;
+        private final long offsetMinutes;
+        private final Integer dayOffset;
+
+        private TimeValue(LocalDateTime instant, LocalDate day, long offsetMinutes, Integer dayOffset) {
+            this.instant = instant;
+            this.day = day;
+            this.offsetMinutes = offsetMinutes;
+            this.dayOffset = dayOffset;
+        }
+
+        LocalDateTime start(LocalDateTime now) {
+            if (instant != null) return instant;
+            if (day != null) return day.atStartOfDay();
+            if (dayOffset != null) return now.toLocalDate().plusDays(dayOffset).atStartOfDay();
+            return now.plusMinutes(offsetMinutes);
+        }
+
+        // The next day for day values, exclusive; the instant itself otherwise, inclusive
+        LocalDateTime end(LocalDateTime now) {
+            if (instant != null) return instant;
+            if (day != null) return day.plusDays(1).atStartOfDay();
+            if (dayOffset != null) return now.toLocalDate().plusDays(dayOffset + 1).atStartOfDay();
+            return now.plusMinutes(offsetMinutes);
+        }
+
+        // Resolved against the time the query runs, unlike a fixed date or date-time
+        boolean isRelative() {
+            return instant == null && day == null;
+        }
+
+        // An exact time, fixed or relative such as now or +2h, rather than a day
+        boolean isInstant() {
+            return day == null && dayOffset == null;
+        }
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private int next;
+
+        Parser(String source) {
+            this.source = source == null ? "" : source;
+            tokenize();
+        }
+
+        TaskQuery parse() {
+            Condition where = null;
+            if (!atEnd() && !peekKeyword("order") && !peekKeyword("limit") && !peekKeyword("offset")) {
+                where = parseOr();
+            }
+            Sort sort = Sort.PRIORITY;
+            boolean descending = false;
+            int offset = 0;
+            int limit = -1;
+            if (acceptKeyword("order")) {
+                expectKeyword("by");
+                String field = advance("sort field");
+                try {
+                    sort = Sort.valueOf(field.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw error("Unknown sort field '" + field + "'", next - 1);
+                }
+                if (acceptKeyword("desc")) {
+                    descending = true;
+                } else {
+                    acceptKeyword("asc");
+                }
+            }
+            while (!atEnd()) {
+                if (acceptKeyword("limit")) {
+                    limit = parseCount();
+                } else if (acceptKeyword("offset")) {
+                    offset = parseCount();
+                } else {
+                    throw error("Unexpected '" + tokens.get(next) + "'", next);
+                }
+            }
+            return new TaskQuery(source.trim(), where, sort, descending, offset, limit);
+        }
+
+        private Condition parseOr() {
+            List<Condition> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (acceptKeyword("or")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        private Condition parseAnd() {
+            List<Condition> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (acceptKeyword("and")) {
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        private Condition parseUnary() {
+            if (accept("!") || acceptKeyword("not")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Condition inner = parseOr();
+                expect(")");
+                return inner;
+            }
+            int at = next;
+            String word = advance("condition").toLowerCase(Locale.ROOT);
+            switch (word) {
+                case "completed":
+                    return peekOperator() ? new CompletedCondition(parseBoolean()) : new CompletedCondition(true);
+                case "pending":
+                    return new CompletedCondition(false);
+                case "overdue":
+                    return new And(List.of(new CompletedCondition(false),
+                            new TimeCondition(TimeField.DEADLINE, Op.LT, new TimeValue(null, null, 0, null))));
+                case "priority":
+                    return parsePriority();
+                case "category":
+                    return parseCategory();
+                case "deadline":
+                    return parseTime(TimeField.DEADLINE);
+                case "created":
+                    return parseTime(TimeField.CREATED);
+                case "title":
+                    expect("~");
+                    return new ContainsCondition(true, advance("text"));
+                case "description":
+                    expect("~");
+                    return new ContainsCondition(false, advance("text"));
+                default:
+                    throw error("Unknown field '" + tokens.get(at) + "'", at);
+            }
+        }
+
+        private boolean parseBoolean() {
+            Op op = parseOp();
+            if (op != Op.EQ && op != Op.NE) {
+                throw error("Only = and != apply to completed", next - 1);
+            }
+            String value = advance("true or false").toLowerCase(Locale.ROOT);
+            if (!value.equals("true") && !value.equals("false")) {
+                throw error("Expected true or false", next - 1);
+            }
+            return value.equals("true") == (op == Op.EQ);
+        }
+
+        private Condition parsePriority() {
+            Op op = parseOp();
+            String value = advance("priority");
+            try {
+                return new PriorityCondition(op, Task.Priority.valueOf(value.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw error("Unknown priority '" + value + "'", next - 1);
+            }
+        }
+
+        private Condition parseCategory() {
+            Op op = parseOp();
+            if (op != Op.EQ && op != Op.NE) {
+                throw error("Only = and != apply to category", next - 1);
+            }
+            String value = advance("category");
+            boolean none = isNone(value) && !quoted(next - 1);
+            return new CategoryCondition(none ? null : value, op == Op.EQ);
+        }
+
+        private Condition parseTime(TimeField field) {
+            Op op = parseOp();
+            int at = next;
+            String value = advance("time");
+            if (isNone(value)) {
+                if (op != Op.EQ && op != Op.NE) {
+                    throw error("Only = and != compare with none", at);
+                }
+                Condition missing = new MissingCondition(field);
+                return op == Op.EQ ? missing : new Not(missing);
+            }
+            return new TimeCondition(field, op, parseTimeValue(value, at));
+        }
+
+        private TimeValue parseTimeValue(String value, int at) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "now": return new TimeValue(null, null, 0, null);
+                case "today": return new TimeValue(null, null, 0, 0);
+                case "tomorrow": return new TimeValue(null, null, 0, 1);
+                case "yesterday": return new TimeValue(null, null, 0, -1);
+                default: break;
+            }
+            if (value.matches("[+-]?\\d+[mhdwMHDW]")) {
+                long amount = Long.parseLong(value.substring(value.startsWith("+") ? 1 : 0, value.length() - 1));
+                switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+                    case 'm': return new TimeValue(null, null, amount, null);
+                    case 'h': return new TimeValue(null, null, amount * 60, null);
+                    case 'd': return new TimeValue(null, null, amount * 60 * 24, null);
+                    default: return new TimeValue(null, null, amount * 60 * 24 * 7, null);
+                }
+            }
+            try {
+                if (value.contains("T")) {
+                    return new TimeValue(LocalDateTime.parse(value), null, 0, null);
+                }
+                return new TimeValue(null, LocalDate.parse(value), 0, null);
+            } catch (DateTimeParseException e) {
+                throw error("Unrecognised time '" + value + "'", at);
+            }
+        }
+
+        private Op parseOp() {
+            int at = next;
+            String symbol = advance("comparison");
+            if (symbol.equals("==")) {
+                return Op.EQ;
+            }
+            for (Op op : Op.values()) {
+                if (op.symbol.equals(symbol)) {
+                    return op;
+                }
+            }
+            throw error("Expected a comparison, found '" + symbol + "'", at);
+        }
+
+        private boolean peekOperator() {
+            if (atEnd()) return false;
+            String token = tokens.get(next);
+            return token.equals("=") || token.equals("==") || token.equals("!=");
+        }
+
+        private int parseCount() {
+            int at = next;
+            String value = advance("number");
+            try {
+                int count = Integer.parseInt(value);
+                if (count >= 0) return count;
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw error("Expected a non-negative number, found '" + value + "'", at);
+        }
+
+        private static boolean isNone(String value) {
+            return value.equalsIgnoreCase("none") || value.equalsIgnoreCase("null");
+        }
+
+        private boolean quoted(int token) {
+            char first = source.charAt(positions.get(token));
+            return first == '"' || first == '\'';
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    int end = source.indexOf(c, i + 1);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unterminated string at " + (i + 1) + " in: " + source);
+                    }
+                    add(source.substring(i + 1, end), i);
+                    i = end + 1;
+                } else if (source.startsWith(">=", i) || source.startsWith("<=", i)
+                        || source.startsWith("!=", i) || source.startsWith("==", i)) {
+                    add(source.substring(i, i + 2), i);
+                    i += 2;
+                } else if ("()!=<>~".indexOf(c) >= 0) {
+                    add(String.valueOf(c), i);
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < source.length() && !Character.isWhitespace(source.charAt(i))
+                            && "()!=<>~\"'".indexOf(source.charAt(i)) < 0) {
+                        i++;
+                    }
+                    add(source.substring(start, i), start);
+                }
+            }
+        }
+
+        private void add(String token, int position) {
+            tokens.add(token);
+            positions.add(position);
+        }
+
+        private boolean atEnd() {
+            return next >= tokens.size();
+        }
+
+        private String advance(String expected) {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Expected " + expected + " at end of: " + source);
+            }
+            return tokens.get(next++);
+        }
+
+        private boolean accept(String symbol) {
+            if (!atEnd() && tokens.get(next).equals(symbol) && !quoted(next)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String symbol) {
+            if (!accept(symbol)) {
+                if (atEnd()) {
+                    throw new IllegalArgumentException("Expected '" + symbol + "' at end of: " + source);
+                }
+                throw error("Expected '" + symbol + "'", next);
+            }
+        }
+
+        private boolean peekKeyword(String keyword) {
+            return !atEnd() && tokens.get(next).equalsIgnoreCase(keyword) && !quoted(next);
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (peekKeyword(keyword)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expectKeyword(String keyword) {
+            if (!acceptKeyword(keyword)) {
+                throw atEnd() ? new IllegalArgumentException("Expected '" + keyword + "' at end of: " + source)
+                        : error("Expected '" + keyword + "'", next);
+            }
+        }
+
+        private IllegalArgumentException error(String message, int token) {
+            return new IllegalArgumentException(message + " at " + (positions.get(token) + 1) + " in: " + source);
+        }
+    }
+}
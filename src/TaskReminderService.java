@@ -1,81 +1,311 @@
-import javax.swing.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 
-public class TaskReminderService {
-    private Timer timer;
-    private TaskManager taskManager;
+/**
+ * Fires reminders when they are due instead of polling. Every pending task with
+ * a deadline gets a "due soon" alarm 30 minutes before it and an "overdue"
+ * alarm at the deadline, kept in one time-ordered set; a single scheduled
+ * wakeup sleeps until the earliest alarm. Task changes reschedule or cancel
+ * only that task's alarms.
+ *
+ * A recurring task is reminded of each occurrence it has not completed; only
+ * the next one is expanded and scheduled at any time.
+ *
+ * Each (task, kind) pair is announced at most once per deadline, and reminders
+ * that come due within {@value #COALESCE_MILLIS} ms of each other reach the
+ * {@link ReminderSink} as one batch.
+ *
+ * Time comes from a {@link TaskClock}. With a manual clock, call {@link #check}
+ * after moving it; the timer only follows the system clock.
+ */
+public class TaskReminderService implements TaskManager.TaskManagerListener {
+    private static final long REMINDER_LEAD_MINUTES = 30;
+    private static final long OVERDUE_WINDOW_MINUTES = 60;
+    private static final long COALESCE_MILLIS = 2000;
+
+    private static final class Alarm {
+        final String taskId;
+        final Reminder.Kind kind;
+        final LocalDateTime fireAt;
+        final LocalDateTime deadline;
+
+        Alarm(String taskId, Reminder.Kind kind, LocalDateTime fireAt, LocalDateTime deadline) {
+            this.taskId = taskId;
+            this.kind = kind;
+            this.fireAt = fireAt;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final Comparator<Alarm> FIRE_ORDER = Comparator
+            .comparing((Alarm alarm) -> alarm.fireAt)
+            .thenComparing(alarm -> alarm.taskId)
+            .thenComparing(alarm -> alarm.kind);
+
+    // Kinds already announced for a task, valid only while its deadline stays the same
+    private static final class Delivered {
+        final LocalDateTime deadline;
+        final Set<Reminder.Kind> kinds = EnumSet.noneOf(Reminder.Kind.class);
+
+        Delivered(LocalDateTime deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    private final TaskManager taskManager;
+    private final ReminderSink sink;
+    private final TaskClock clock;
+    private final ScheduledExecutorService scheduler;
+    private final NavigableSet<Alarm> alarms = new TreeSet<>(FIRE_ORDER);
+    private final Map<String, List<Alarm>> alarmsByTask = new HashMap<>();
+    private final Map<String, Delivered> delivered = new HashMap<>();
+    private final List<Reminder> outbox = new ArrayList<>();
+    private ScheduledFuture<?> wakeup;
+    private LocalDateTime wakeupAt;
 
     public TaskReminderService(TaskManager taskManager) {
-        this.taskManager = taskManager;
-        this.timer = new Timer(true); // Daemon thread
-        startReminderScheduler();
+        this(taskManager, new SwingReminderSink());
+    }
+
+    public TaskReminderService(TaskManager taskManager, ReminderSink sink) {
+        this(taskManager, sink, TaskClock.get());
     }
 
-    private void startReminderScheduler() {
-        // Check for reminders every 5 minutes
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                checkForReminders();
+    public TaskReminderService(TaskManager taskManager, ReminderSink sink, TaskClock clock) {
+        this.taskManager = taskManager;
+        this.sink = sink;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        taskManager.addListener(this);
+        synchronized (this) {
+            for (Task task : taskManager.getPendingTasks()) {
+                schedule(task);
             }
-        }, 0, 5 * 60 * 1000); // 5 minutes in milliseconds
+            armWakeup();
+        }
     }
 
-    private void checkForReminders() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Task> pendingTasks = taskManager.getPendingTasks();
+    @Override
+    public synchronized void onTaskAdded(Task task) {
+        schedule(task);
+        armWakeup();
+    }
 
-        for (Task task : pendingTasks) {
-            if (task.getDeadline() != null) {
-                long minutesUntilDeadline = ChronoUnit.MINUTES.between(now, task.getDeadline());
+    @Override
+    public synchronized void onTaskRemoved(Task task) {
+        cancel(task.getId());
+        delivered.remove(task.getId());
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTaskUpdated(Task task) {
+        schedule(task);
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTasksAdded(List<Task> tasks) {
+        tasks.forEach(this::schedule);
+        armWakeup();
+    }
+
+    @Override
+    public synchronized void onTasksRemoved(List<Task> tasks) {
+        for (Task task : tasks) {
+            cancel(task.getId());
+            delivered.remove(task.getId());
+        }
+        armWakeup();
+    }
 
-                // Show reminder for tasks due within 30 minutes
-                if (minutesUntilDeadline > 0 && minutesUntilDeadline <= 30) {
-                    showReminder(task, minutesUntilDeadline);
+    // Replaces the task's alarms with ones for its current deadline, if it still needs any
+    private void schedule(Task task) {
+        cancel(task.getId());
+        LocalDateTime deadline = task.getDeadline();
+        if (task.isCompleted() || deadline == null) {
+            delivered.remove(task.getId());
+            return;
+        }
+
+        LocalDateTime now = clock.now();
+        List<Alarm> taskAlarms = Collections.emptyList();
+        if (!task.isRecurring()) {
+            taskAlarms = alarmsFor(task.getId(), deadline, now);
+        } else {
+            // Occurrences are expanded one at a time, from the first still inside its overdue window
+            LocalDateTime windowStart = now.minusMinutes(OVERDUE_WINDOW_MINUTES);
+            LocalDateTime from = deadline.isAfter(windowStart) ? deadline : windowStart;
+            for (LocalDateTime occurrence : task.occurrencesBetween(from, null)) {
+                if (!task.getRecurrence().isDone(occurrence)) {
+                    taskAlarms = alarmsFor(task.getId(), occurrence, now);
+                    if (!taskAlarms.isEmpty()) {
+                        break;
+                    }
                 }
-                // Show overdue notification
-                else if (minutesUntilDeadline < 0 && minutesUntilDeadline >= -60) {
-                    showOverdueNotification(task);
+            }
+        }
+        if (!taskAlarms.isEmpty()) {
+            alarms.addAll(taskAlarms);
+            alarmsByTask.put(task.getId(), taskAlarms);
+        }
+    }
+
+    // The alarms still to come for one deadline, leaving out kinds already announced for it
+    private List<Alarm> alarmsFor(String taskId, LocalDateTime deadline, LocalDateTime now) {
+        Delivered announced = delivered.get(taskId);
+        Set<Reminder.Kind> done = announced != null && announced.deadline.equals(deadline)
+                ? announced.kinds : EnumSet.noneOf(Reminder.Kind.class);
+        List<Alarm> taskAlarms = new ArrayList<>(2);
+        if (deadline.isAfter(now) && !done.contains(Reminder.Kind.DUE_SOON)) {
+            LocalDateTime remindAt = deadline.minusMinutes(REMINDER_LEAD_MINUTES);
+            taskAlarms.add(new Alarm(taskId, Reminder.Kind.DUE_SOON,
+                    remindAt.isAfter(now) ? remindAt : now, deadline));
+        }
+        if (now.isBefore(deadline.plusMinutes(OVERDUE_WINDOW_MINUTES)) && !done.contains(Reminder.Kind.OVERDUE)) {
+            taskAlarms.add(new Alarm(taskId, Reminder.Kind.OVERDUE,
+                    deadline.isAfter(now) ? deadline : now, deadline));
+        }
+        return taskAlarms;
+    }
+
+    private void cancel(String taskId) {
+        List<Alarm> taskAlarms = alarmsByTask.remove(taskId);
+        if (taskAlarms != null) {
+            taskAlarms.forEach(alarms::remove);
+        }
+    }
+
+    // Keeps exactly one wakeup pending, set for the earliest alarm
+    private void armWakeup() {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        if (alarms.isEmpty()) {
+            if (wakeup != null) {
+                wakeup.cancel(false);
+                wakeup = null;
+                wakeupAt = null;
+            }
+            return;
+        }
+
+        LocalDateTime next = alarms.first().fireAt;
+        if (wakeup != null && next.equals(wakeupAt)) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        long delay = Math.max(0, Duration.between(clock.now(), next).toMillis());
+        wakeupAt = next;
+        wakeup = scheduler.schedule(this::fireDueAlarms, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void fireDueAlarms() {
+        List<Alarm> due = new ArrayList<>();
+        LocalDateTime now = clock.now();
+        synchronized (this) {
+            // A direct check() leaves the timer's wakeup pending; it would otherwise fire as a second timer
+            if (wakeup != null) {
+                wakeup.cancel(false);
+            }
+            wakeup = null;
+            wakeupAt = null;
+            while (!alarms.isEmpty() && !alarms.first().fireAt.isAfter(now)) {
+                Alarm alarm = alarms.pollFirst();
+                due.add(alarm);
+                List<Alarm> taskAlarms = alarmsByTask.get(alarm.taskId);
+                if (taskAlarms != null) {
+                    taskAlarms.remove(alarm);
+                    if (taskAlarms.isEmpty()) {
+                        alarmsByTask.remove(alarm.taskId);
+                    }
                 }
             }
+            armWakeup();
         }
+
+        List<Reminder> reminders = new ArrayList<>();
+        for (Alarm alarm : due) {
+            Task task = taskManager.getTask(alarm.taskId);
+            // The task may have changed between the alarm firing and this check
+            if (task == null || !task.isPendingAt(alarm.deadline)) {
+                continue;
+            }
+            long minutesUntilDeadline = alarm.kind == Reminder.Kind.DUE_SOON
+                    ? Math.max(1, ChronoUnit.MINUTES.between(now, alarm.deadline))
+                    : ChronoUnit.MINUTES.between(now, alarm.deadline);
+            reminders.add(new Reminder(task, alarm.kind, minutesUntilDeadline, alarm.deadline));
+        }
+        if (!reminders.isEmpty()) {
+            enqueue(reminders);
+        }
+        scheduleNextOccurrences(due);
     }
 
-    private void showReminder(Task task, long minutesUntilDeadline) {
-        SwingUtilities.invokeLater(() -> {
-            String message = String.format(
-                    "Task '%s' is due in %d minutes!\nPriority: %s",
-                    task.getTitle(), minutesUntilDeadline, task.getPriority()
-            );
+    // A recurring task has alarms for one occurrence at a time; once they have fired, the next one gets its own
+    private synchronized void scheduleNextOccurrences(List<Alarm> fired) {
+        for (Alarm alarm : fired) {
+            if (!alarmsByTask.containsKey(alarm.taskId)) {
+                Task task = taskManager.getTask(alarm.taskId);
+                if (task != null && task.isRecurring()) {
+                    schedule(task);
+                }
+            }
+        }
+        armWakeup();
+    }
 
-            JOptionPane.showMessageDialog(
-                    null, message, "Task Reminder",
-                    JOptionPane.WARNING_MESSAGE
-            );
-        });
+    // Drops already-announced pairs and starts a coalescing window if none is open
+    private synchronized void enqueue(List<Reminder> reminders) {
+        boolean windowOpen = !outbox.isEmpty();
+        for (Reminder reminder : reminders) {
+            Task task = reminder.getTask();
+            Delivered announced = delivered.get(task.getId());
+            if (announced == null || !announced.deadline.equals(reminder.getDeadline())) {
+                announced = new Delivered(reminder.getDeadline());
+                delivered.put(task.getId(), announced);
+            }
+            if (announced.kinds.add(reminder.getKind())) {
+                outbox.add(reminder);
+            }
+        }
+        if (!windowOpen && !outbox.isEmpty() && !scheduler.isShutdown()) {
+            scheduler.schedule(this::flush, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    private void showOverdueNotification(Task task) {
-        SwingUtilities.invokeLater(() -> {
-            String message = String.format(
-                    "Task '%s' is overdue!\nDeadline was: %s",
-                    task.getTitle(), task.getFormattedDeadline()
-            );
+    private void flush() {
+        List<Reminder> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(outbox);
+            outbox.clear();
+        }
+        if (!batch.isEmpty()) {
+            sink.deliver(batch);
+        }
+    }
 
-            JOptionPane.showMessageDialog(
-                    null, message, "Overdue Task",
-                    JOptionPane.ERROR_MESSAGE
-            );
-        });
+    /**
+     * Fires every alarm due by the clock's time. Runs on the timer; call it
+     * directly after moving a manual clock, in which case the reminders found
+     * reach the sink before this returns instead of after the coalescing window.
+     */
+    public void check() {
+        fireDueAlarms();
+        flush();
     }
 
     public void shutdown() {
-        if (timer != null) {
-            timer.cancel();
-        }
+        taskManager.removeListener(this);
+        scheduler.shutdownNow();
     }
-}
\ No newline at end of file
+}
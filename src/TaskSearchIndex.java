@@ -0,0 +1,336 @@
+import java.io.Closeable;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * In-memory inverted index over task titles, descriptions and categories,
+ * kept current from {@link TaskManager} events.
+ *
+ * Every indexed version of a task gets a fresh document number, so postings
+ * are appended in ascending order and never edited in place; an update or
+ * removal only marks the old document dead, and the postings are compacted
+ * once dead documents outnumber live ones. Queries treat each term as a
+ * prefix, require all terms to match and rank by field weight and rarity,
+ * with exact term matches counting double.
+ */
+public class TaskSearchIndex implements TaskManager.TaskManagerListener, Closeable {
+    private static final int TITLE_WEIGHT = 4;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int MIN_COMPACTION_DOCS = 1024;
+
+    // Documents containing one term, ascending, with the summed field weight of the term in each
+    private static final class Postings {
+        int[] docs = new int[2];
+        byte[] weights = new byte[2];
+        int size;
+
+        void add(int doc, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = (byte) Math.min(weight, Byte.MAX_VALUE);
+            size++;
+        }
+    }
+
+    private final TaskManager taskManager;
+    // Sorted for prefix lookups; the hash map makes indexing a task cheap
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final Map<String, Integer> docByTaskId = new HashMap<>();
+    // Task per document number, null once the document is dead
+    private Task[] docs = new Task[1024];
+    private int nextDoc;
+    private int liveDocs;
+
+    // Per-query scratch space, indexed by document number and reset after every query
+    private float[] scores = new float[0];
+    private int[] matchedTerms = new int[0];
+    private int[] touched = new int[0];
+
+    public TaskSearchIndex(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        taskManager.addListener(this);
+        rebuild();
+    }
+
+    /** Reindexes the manager's current contents, e.g. after a change that sent no events. */
+    public synchronized void rebuild() {
+        terms.clear();
+        postingsByTerm.clear();
+        docByTaskId.clear();
+        docs = new Task[1024];
+        nextDoc = 0;
+        liveDocs = 0;
+        for (Task task : taskManager.snapshot()) {
+            index(task);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskAdded(Task task) {
+        index(task);
+        compactIfSparse();
+    }
+
+    @Override
+    public synchronized void onTaskRemoved(Task task) {
+        unindex(task.getId());
+        compactIfSparse();
+    }
+
+    @Override
+    public synchronized void onTaskUpdated(Task task) {
+        index(task);
+        compactIfSparse();
+    }
+
+    @Override
+    public synchronized void onTasksAdded(List<Task> tasks) {
+        tasks.forEach(this::index);
+        compactIfSparse();
+    }
+
+    @Override
+    public synchronized void onTasksRemoved(List<Task> tasks) {
+        for (Task task : tasks) {
+            unindex(task.getId());
+        }
+        compactIfSparse();
+    }
+
+    public List<Task> search(String query, int limit) {
+        return search(query, limit, task -> true);
+    }
+
+    /**
+     * The best-ranked tasks, at most limit of them, that match every term of
+     * the query and are accepted by the filter. Ties go to the most recently
+     * indexed task.
+     */
+    public synchronized List<Task> search(String query, int limit, Predicate<Task> filter) {
+        List<String> queryTerms = new ArrayList<>(tokenize(query).keySet());
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        // Rarest term first, so the candidate set is smallest from the start
+        Map<String, SortedMap<String, Postings>> expansions = new HashMap<>();
+        Map<String, Long> sizes = new HashMap<>();
+        for (String term : queryTerms) {
+            SortedMap<String, Postings> expansion = terms.subMap(term, term + Character.MAX_VALUE);
+            long size = 0;
+            for (Postings postings : expansion.values()) {
+                size += postings.size;
+            }
+            if (size == 0) {
+                return List.of();
+            }
+            expansions.put(term, expansion);
+            sizes.put(term, size);
+        }
+        queryTerms.sort(Comparator.comparing(sizes::get));
+
+        if (scores.length < nextDoc) {
+            scores = new float[docs.length];
+            matchedTerms = new int[docs.length];
+            touched = new int[docs.length];
+        }
+        int touchedCount = 0;
+        try {
+            for (int i = 0; i < queryTerms.size(); i++) {
+                String queryTerm = queryTerms.get(i);
+                for (Map.Entry<String, Postings> match : expansions.get(queryTerm).entrySet()) {
+                    Postings postings = match.getValue();
+                    float termScore = (float) Math.log(1 + (double) Math.max(1, liveDocs) / postings.size)
+                            * (match.getKey().equals(queryTerm) ? 2 : 1);
+                    for (int p = 0; p < postings.size; p++) {
+                        int doc = postings.docs[p];
+                        int matched = matchedTerms[doc];
+                        // Only documents that matched every earlier term stay candidates
+                        if (matched == i && docs[doc] != null) {
+                            if (i == 0) {
+                                touched[touchedCount++] = doc;
+                            }
+                            matchedTerms[doc] = i + 1;
+                            scores[doc] += termScore * postings.weights[p];
+                        } else if (matched == i + 1) {
+                            scores[doc] += termScore * postings.weights[p];
+                        }
+                    }
+                }
+            }
+
+            PriorityQueue<Integer> best = new PriorityQueue<>(
+                    Comparator.comparingDouble((Integer doc) -> scores[doc]).thenComparingInt(doc -> doc));
+            // Newest first, so equal-scoring older documents are turned away without touching the heap
+            for (int t = touchedCount - 1; t >= 0; t--) {
+                int doc = touched[t];
+                if (matchedTerms[doc] != queryTerms.size()) {
+                    continue;
+                }
+                if (best.size() == limit) {
+                    int worst = best.peek();
+                    if (scores[doc] <= scores[worst] && (scores[doc] < scores[worst] || doc < worst)) {
+                        continue;
+                    }
+                }
+                if (!filter.test(docs[doc])) {
+                    continue;
+                }
+                best.add(doc);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            Task[] results = new Task[best.size()];
+            for (int r = results.length - 1; r >= 0; r--) {
+                results[r] = docs[best.poll()];
+            }
+            return Arrays.asList(results);
+        } finally {
+            for (int t = 0; t < touchedCount; t++) {
+                scores[touched[t]] = 0;
+                matchedTerms[touched[t]] = 0;
+            }
+        }
+    }
+
+    /**
+     * A predicate matching the same tasks a search for the query would, checked
+     * against a task's current text; lets live views decide about changed tasks.
+     */
+    public static Predicate<Task> matcher(String query) {
+        Set<String> queryTerms = tokenize(query).keySet();
+        return task -> {
+            if (queryTerms.isEmpty()) {
+                return false;
+            }
+            Set<String> taskTerms = tokenize(task).keySet();
+            for (String queryTerm : queryTerms) {
+                boolean found = false;
+                for (String taskTerm : taskTerms) {
+                    if (taskTerm.startsWith(queryTerm)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    @Override
+    public void close() {
+        taskManager.removeListener(this);
+    }
+
+    private void index(Task task) {
+        unindex(task.getId());
+        if (nextDoc == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+        }
+        int doc = nextDoc++;
+        docs[doc] = task;
+        docByTaskId.put(task.getId(), doc);
+        liveDocs++;
+        for (Map.Entry<String, Integer> term : tokenize(task).entrySet()) {
+            Postings postings = postingsByTerm.get(term.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                postingsByTerm.put(term.getKey(), postings);
+                terms.put(term.getKey(), postings);
+            }
+            postings.add(doc, term.getValue());
+        }
+    }
+
+    private void unindex(String taskId) {
+        Integer doc = docByTaskId.remove(taskId);
+        if (doc != null) {
+            docs[doc] = null;
+            liveDocs--;
+        }
+    }
+
+    // Renumbers the live documents densely and drops dead postings, keeping each list ascending
+    private void compactIfSparse() {
+        int dead = nextDoc - liveDocs;
+        if (dead < MIN_COMPACTION_DOCS || dead < liveDocs) {
+            return;
+        }
+        int[] renumbered = new int[nextDoc];
+        Task[] compacted = new Task[Math.max(1024, liveDocs * 2)];
+        int next = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (docs[doc] != null) {
+                renumbered[doc] = next;
+                compacted[next] = docs[doc];
+                docByTaskId.put(docs[doc].getId(), next);
+                next++;
+            } else {
+                renumbered[doc] = -1;
+            }
+        }
+        Iterator<Map.Entry<String, Postings>> postingsLists = terms.entrySet().iterator();
+        while (postingsLists.hasNext()) {
+            Map.Entry<String, Postings> term = postingsLists.next();
+            Postings postings = term.getValue();
+            int kept = 0;
+            for (int p = 0; p < postings.size; p++) {
+                int doc = renumbered[postings.docs[p]];
+                if (doc >= 0) {
+                    postings.docs[kept] = doc;
+                    postings.weights[kept] = postings.weights[p];
+                    kept++;
+                }
+            }
+            postings.size = kept;
+            if (kept == 0) {
+                postingsLists.remove();
+                postingsByTerm.remove(term.getKey());
+            }
+        }
+        docs = compacted;
+        nextDoc = next;
+        scores = new float[0];
+        matchedTerms = new int[0];
+        touched = new int[0];
+    }
+
+    private static Map<String, Integer> tokenize(Task task) {
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(task.getTitle(), TITLE_WEIGHT, weights);
+        tokenize(task.getCategory(), CATEGORY_WEIGHT, weights);
+        tokenize(task.getDescription(), DESCRIPTION_WEIGHT, weights);
+        return weights;
+    }
+
+    private static Map<String, Integer> tokenize(String query) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        tokenize(query, 1, weights);
+        return weights;
+    }
+
+    // Terms are maximal runs of letters and digits, lower-cased
+    private static void tokenize(String text, int weight, Map<String, Integer> weights) {
+        if (text == null) {
+            return;
+        }
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+            } else if (term.length() > 0) {
+                weights.merge(term.toString(), weight, Integer::sum);
+                term.setLength(0);
+            }
+        }
+    }
+}
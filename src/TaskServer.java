@@ -0,0 +1,603 @@
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless entry point: serves the task store as a JSON API on the loopback
+ * interface, one virtual thread per request. Lists are streamed as they are
+ * written, as a JSON array or, with {@code format=jsonl}, one task per line.
+ *
+ * <pre>
+ * GET    /tasks?q=&lt;query&gt;[&amp;format=jsonl]   tasks matching a {@link TaskQuery}, all by default
+ * GET    /tasks/count?q=&lt;query&gt;            {"count": n}
+ * GET    /tasks/ready[?limit=n]          unblocked pending tasks from the {@link DependencyScheduler}
+ * POST   /tasks                          create a task from its JSON fields; 201 with the stored task
+ * POST   /tasks/bulk                     add a JSON array (or JSON lines) of tasks; a known id is updated
+ * POST   /tasks/bulk-delete              remove a JSON array of ids
+ * GET    /tasks/{id}                     one task, with its version as ETag
+ * PUT    /tasks/{id}                     change the fields given in the body; If-Match guards the version
+ * DELETE /tasks/{id}                     remove a task
+ * GET    /changes?after=&lt;sequence&gt;        long-polls the {@link TaskChangeFeed}; after=0 starts with a snapshot
+ * GET    /stats                          counts from {@link TaskStatistics}
+ * POST   /save                           write a snapshot now
+ * </pre>
+ *
+ * A recurring task carries its {@link RecurrenceRule} as text in
+ * {@code recurrence}; a PUT with {@code completedOccurrence} completes one
+ * occurrence instead of the whole series. {@code dependencies} lists the ids
+ * of a task's prerequisites; a PUT that would close a cycle gets 409.
+ */
+public class TaskServer implements Closeable {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String JSON_LINES = "application/x-ndjson; charset=utf-8";
+    private static final int DEFAULT_CHANGES = 1000;
+    private static final int DEFAULT_WAIT_SECONDS = 30;
+    private static final Logger LOGGER = Logger.getLogger(TaskServer.class.getName());
+
+    private final TaskManager taskManager;
+    private final TaskPersistence persistence;
+    private final LiveTaskStatistics liveStatistics;
+    private final TaskStatistics statistics;
+    private final TaskChangeFeed changeFeed;
+    private final DependencyScheduler scheduler;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Gson gson = TaskPersistence.gsonBuilder().create();
+    private final TypeAdapter<Task> taskAdapter = gson.getAdapter(Task.class);
+
+    /** Binds to the given port on the loopback interface; 0 picks a free port. Persistence may be null. */
+    public TaskServer(TaskManager taskManager, TaskPersistence persistence, int port) throws IOException {
+        this.taskManager = taskManager;
+        this.persistence = persistence;
+        this.liveStatistics = new LiveTaskStatistics(taskManager);
+        this.statistics = new TaskStatistics(liveStatistics);
+        this.changeFeed = new TaskChangeFeed(taskManager);
+        this.scheduler = new DependencyScheduler(taskManager);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/tasks", this::handleTasks);
+        server.createContext("/changes", exchange -> respond(exchange, "GET", this::changes));
+        server.createContext("/stats", exchange -> respond(exchange, "GET", this::stats));
+        server.createContext("/save", exchange -> respond(exchange, "POST", this::save));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /** Stops accepting requests, lets running ones finish for up to a second, and detaches from the store. */
+    @Override
+    public void close() {
+        server.stop(1);
+        changeFeed.close();
+        executor.close();
+        liveStatistics.shutdown();
+        scheduler.shutdown();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handleTasks(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/tasks") && !path.startsWith("/tasks/")) {
+            respond(exchange, exchange.getRequestMethod(), e -> {
+                throw new HttpError(404, "Nothing at " + path);
+            });
+            return;
+        }
+        String rest = path.equals("/tasks") ? "" : path.substring("/tasks/".length());
+        switch (rest) {
+            case "":
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    respond(exchange, "POST", this::createTask);
+                } else {
+                    respond(exchange, "GET", this::listTasks);
+                }
+                break;
+            case "count":
+                respond(exchange, "GET", this::countTasks);
+                break;
+            case "ready":
+                respond(exchange, "GET", this::readyTasks);
+                break;
+            case "bulk":
+                respond(exchange, "POST", this::addTasks);
+                break;
+            case "bulk-delete":
+                respond(exchange, "POST", this::removeTasks);
+                break;
+            default:
+                String id = URLDecoder.decode(rest, StandardCharsets.UTF_8);
+                switch (exchange.getRequestMethod()) {
+                    case "PUT":
+                        respond(exchange, "PUT", e -> updateTask(e, id));
+                        break;
+                    case "DELETE":
+                        respond(exchange, "DELETE", e -> removeTask(e, id));
+                        break;
+                    default:
+                        respond(exchange, "GET", e -> getTask(e, id));
+                        break;
+                }
+                break;
+        }
+    }
+
+    // Runs a handler and turns its failures into JSON error responses
+    private void respond(HttpExchange exchange, String method, Handler handler) {
+        try (exchange) {
+            try {
+                if (!method.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new HttpError(405, "Use " + method + " for " + exchange.getRequestURI().getPath());
+                }
+                handler.handle(exchange);
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (ConcurrentModificationException e) {
+                sendError(exchange, 412, e.getMessage());
+            } catch (IllegalArgumentException | JsonParseException | IllegalStateException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Failed to handle " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI(), e);
+                sendError(exchange, 500, "Internal error");
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it
+        }
+    }
+
+    private void listTasks(HttpExchange exchange) throws IOException {
+        Map<String, String> params = params(exchange);
+        List<Task> tasks = taskManager.query(query(params));
+        if ("jsonl".equals(params.get("format"))) {
+            try (Writer out = startStream(exchange, JSON_LINES)) {
+                TaskExporter.writeJSONLines(tasks.iterator(), out);
+            }
+            return;
+        }
+        try (Writer out = startStream(exchange, JSON)) {
+            JsonWriter json = gson.newJsonWriter(out);
+            json.beginArray();
+            for (Task task : tasks) {
+                taskAdapter.write(json, task);
+            }
+            json.endArray();
+            json.flush();
+        }
+    }
+
+    private void readyTasks(HttpExchange exchange) throws IOException {
+        Map<String, String> params = params(exchange);
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+        List<Task> tasks = scheduler.getReadyTasks(limit);
+        try (Writer out = startStream(exchange, JSON)) {
+            JsonWriter json = gson.newJsonWriter(out);
+            json.beginArray();
+            for (Task task : tasks) {
+                taskAdapter.write(json, task);
+            }
+            json.endArray();
+            json.flush();
+        }
+    }
+
+    private void countTasks(HttpExchange exchange) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("count", taskManager.count(query(params(exchange))));
+        send(exchange, 200, body);
+    }
+
+    private void getTask(HttpExchange exchange, String id) throws IOException {
+        Task task = taskManager.getTask(id);
+        if (task == null) {
+            throw new HttpError(404, "No task with id " + id);
+        }
+        sendTask(exchange, 200, task);
+    }
+
+    private void createTask(HttpExchange exchange) throws IOException {
+        Task parsed;
+        try (Reader in = body(exchange)) {
+            parsed = taskAdapter.read(new JsonReader(in));
+        }
+        if (parsed == null) {
+            throw new HttpError(400, "Expected a task object");
+        }
+        // A new task always gets a fresh id; use /tasks/bulk to store tasks with their own ids
+        Task task = complete(parsed.withId(Task.newId()));
+        taskManager.addTask(task);
+        exchange.getResponseHeaders().set("Location", "/tasks/" + task.getId());
+        sendTask(exchange, 201, task);
+    }
+
+    private void addTasks(HttpExchange exchange) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        try (Reader in = body(exchange)) {
+            // Accepts one JSON array, or a stream of task objects such as JSON lines
+            JsonReader json = new JsonReader(in);
+            json.setLenient(true);
+            boolean array = json.peek() == JsonToken.BEGIN_ARRAY;
+            if (array) {
+                json.beginArray();
+            }
+            while (array ? json.hasNext() : json.peek() != JsonToken.END_DOCUMENT) {
+                Task task = taskAdapter.read(json);
+                tasks.add(complete(task.getId() == null ? task.withId(Task.newId()) : task));
+            }
+            if (array) {
+                json.endArray();
+            }
+        }
+        rejectCycle(scheduler.findCycle(tasks));
+        // One write: a replacement keeps the version and ETag going up, so a client
+        // holding an older ETag cannot overwrite it
+        int added = taskManager.upsertAll(tasks);
+        JsonObject body = new JsonObject();
+        body.addProperty("added", added);
+        body.addProperty("replaced", tasks.size() - added);
+        send(exchange, 200, body);
+    }
+
+    private void removeTasks(HttpExchange exchange) throws IOException {
+        JsonArray ids;
+        try (Reader in = body(exchange)) {
+            ids = JsonParser.parseReader(in).getAsJsonArray();
+        }
+        int removed = 0;
+        for (JsonElement id : ids) {
+            if (taskManager.removeTask(id.getAsString())) {
+                removed++;
+            }
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("removed", removed);
+        send(exchange, 200, body);
+    }
+
+    private void updateTask(HttpExchange exchange, String id) throws IOException {
+        JsonObject changes;
+        try (Reader in = body(exchange)) {
+            changes = JsonParser.parseReader(in).getAsJsonObject();
+        }
+        checkDependencies(id, changes);
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        Task stored;
+        if (ifMatch != null) {
+            // Optimistic: the change applies only to the version the client last read
+            Task current = taskManager.getTask(id);
+            if (current == null) {
+                throw new HttpError(404, "No task with id " + id);
+            }
+            if (parseVersion(ifMatch) != current.getVersion()) {
+                throw new HttpError(412, "Task " + id + " is at version " + current.getVersion());
+            }
+            try {
+                stored = taskManager.updateTask(merge(current, changes));
+            } catch (NoSuchElementException e) {
+                throw new HttpError(404, "No task with id " + id);
+            }
+        } else {
+            // Applied to whatever version is stored; an invalid change throws before anything is stored
+            stored = taskManager.updateTask(id, current -> merge(current, changes));
+            if (stored == null) {
+                throw new HttpError(404, "No task with id " + id);
+            }
+        }
+        sendTask(exchange, 200, stored);
+    }
+
+    private void removeTask(HttpExchange exchange, String id) throws IOException {
+        if (!taskManager.removeTask(id)) {
+            throw new HttpError(404, "No task with id " + id);
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * Changes after the given sequence, waiting up to {@code wait} seconds for the
+     * first one. A client too far behind the feed's buffer gets a snapshot instead;
+     * either way it passes the returned position as {@code after} next time.
+     */
+    private void changes(HttpExchange exchange) throws IOException {
+        Map<String, String> params = params(exchange);
+        long after = Long.parseLong(params.getOrDefault("after", "0"));
+        int limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_CHANGES)));
+        int wait = Integer.parseInt(params.getOrDefault("wait", String.valueOf(DEFAULT_WAIT_SECONDS)));
+        List<TaskChangeFeed.Change> changes;
+        long position;
+        try (TaskChangeFeed.Subscription subscription = changeFeed.subscribe(after, TaskChangeFeed.Backpressure.SNAPSHOT_AND_RESUME)) {
+            changes = subscription.poll(limit, wait, TimeUnit.SECONDS);
+            position = subscription.getPosition();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Server is shutting down");
+        }
+        try (Writer out = startStream(exchange, JSON)) {
+            JsonWriter json = gson.newJsonWriter(out);
+            json.beginObject();
+            json.name("position").value(position);
+            json.name("changes").beginArray();
+            for (TaskChangeFeed.Change change : changes) {
+                json.beginObject();
+                json.name("sequence").value(change.getSequence());
+                json.name("type").value(change.getType().name());
+                if (change.getPrevious() != null) {
+                    json.name("previousVersion").value(change.getPrevious().getVersion());
+                }
+                json.name("tasks").beginArray();
+                for (Task task : change.getTasks()) {
+                    taskAdapter.write(json, task);
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("total", statistics.getTotalTasks());
+        body.addProperty("completed", statistics.getCompletedTasks());
+        body.addProperty("pending", statistics.getPendingTasks());
+        body.addProperty("overdue", statistics.getOverdueTasks());
+        body.addProperty("completionRate", statistics.getCompletionRate());
+        body.addProperty("dueInNext24Hours", statistics.getTasksDueInNextHours(24));
+        body.addProperty("averageCompletionHours", statistics.getAverageTaskCompletionTime());
+        JsonObject byPriority = new JsonObject();
+        statistics.getTasksByPriorityCount().forEach((priority, count) -> byPriority.addProperty(priority.name(), count));
+        body.add("byPriority", byPriority);
+        JsonObject byCategory = new JsonObject();
+        // Tasks without a category are counted under the empty name
+        Map<String, Long> byCategoryName = new TreeMap<>(Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        byCategoryName.putAll(statistics.getTasksByCategoryCount());
+        byCategoryName.forEach((category, count) -> byCategory.addProperty(category != null ? category : "", count));
+        body.add("byCategory", byCategory);
+        send(exchange, 200, body);
+    }
+
+    private void save(HttpExchange exchange) throws IOException {
+        if (persistence == null) {
+            throw new HttpError(404, "This server has no task file");
+        }
+        List<Task> tasks = taskManager.snapshot();
+        persistence.saveTasks(tasks);
+        JsonObject body = new JsonObject();
+        body.addProperty("saved", tasks.size());
+        send(exchange, 200, body);
+    }
+
+    // Fills what a client may leave out of a new task
+    private static Task complete(Task task) {
+        if (task.getTitle() == null || task.getTitle().isBlank()) {
+            throw new IllegalArgumentException("A task needs a title");
+        }
+        Task filled = task.getPriority() != null ? task : task.withPriority(Task.Priority.MEDIUM);
+        if (filled.getCreatedAt() == null) {
+            filled = new Task(filled.getId(), filled.getTitle(), filled.getDescription(), filled.getPriority(),
+                    filled.getDeadline(), LocalDateTime.now(), filled.isCompleted(), filled.getCategory())
+                    .withRecurrence(filled.getRecurrence())
+                    .withDependencies(filled.getDependencies());
+        }
+        return filled;
+    }
+
+    // Applies the fields present in the body; the id and creation time never change
+    private Task merge(Task current, JsonObject changes) {
+        Task task = current;
+        for (Map.Entry<String, JsonElement> change : changes.entrySet()) {
+            JsonElement value = change.getValue();
+            String text = value.isJsonNull() ? null : value.getAsString();
+            switch (change.getKey()) {
+                case "title":
+                    if (text == null || text.isBlank()) {
+                        throw new IllegalArgumentException("A task needs a title");
+                    }
+                    task = task.withTitle(text);
+                    break;
+                case "description":
+                    task = task.withDescription(text);
+                    break;
+                case "category":
+                    task = task.withCategory(text);
+                    break;
+                case "priority":
+                    if (text == null) {
+                        throw new IllegalArgumentException("A task needs a priority");
+                    }
+                    task = task.withPriority(Task.Priority.valueOf(text.toUpperCase(Locale.ROOT)));
+                    break;
+                case "deadline":
+                    task = task.withDeadline(gson.fromJson(value, LocalDateTime.class));
+                    break;
+                case "completed":
+                    task = task.withCompleted(value.getAsBoolean());
+                    break;
+                case "recurrence":
+                    task = task.withRecurrence(text != null ? RecurrenceRule.parse(text) : null);
+                    break;
+                case "dependencies":
+                    task = task.withDependencies(dependencyIds(value));
+                    break;
+                case "completedOccurrence":
+                    // Completes one occurrence of a recurring task rather than the whole series
+                    task = task.withOccurrenceCompleted(gson.fromJson(value, LocalDateTime.class));
+                    break;
+                case "id":
+                case "createdAt":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown task field '" + change.getKey() + "'");
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Rejects new dependencies that would close a cycle. Runs before the update,
+     * not inside it: the scheduler takes its own lock and reads the store, so
+     * asking it under the store's write lock could deadlock. A cycle that another
+     * request closes in between is still caught, by the scheduler leaving the
+     * closing dependency out of its order.
+     */
+    private void checkDependencies(String id, JsonObject changes) {
+        JsonElement value = changes.get("dependencies");
+        if (value == null) {
+            return;
+        }
+        rejectCycle(scheduler.findCycle(id, dependencyIds(value)));
+    }
+
+    private static void rejectCycle(List<String> cycle) {
+        if (!cycle.isEmpty()) {
+            throw new HttpError(409, "Dependency cycle: " + String.join(" -> ", cycle));
+        }
+    }
+
+    private static List<String> dependencyIds(JsonElement value) {
+        List<String> dependencies = new ArrayList<>();
+        if (!value.isJsonNull()) {
+            value.getAsJsonArray().forEach(dependency -> dependencies.add(dependency.getAsString()));
+        }
+        return dependencies;
+    }
+
+    private static TaskQuery query(Map<String, String> params) {
+        TaskQuery query = TaskQuery.parse(params.getOrDefault("q", ""));
+        if (params.containsKey("limit")) {
+            query = query.limit(Integer.parseInt(params.get("limit")));
+        }
+        if (params.containsKey("offset")) {
+            query = query.offset(Integer.parseInt(params.get("offset")));
+        }
+        return query;
+    }
+
+    private static long parseVersion(String etag) {
+        try {
+            return Long.parseLong(etag.replace("\"", "").trim());
+        } catch (NumberFormatException e) {
+            throw new HttpError(412, "If-Match must be a version from an ETag, got " + etag);
+        }
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static Reader body(HttpExchange exchange) {
+        return new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // Chunked response, so a long list goes out while it is still being written
+    private static Writer startStream(HttpExchange exchange, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private void sendTask(HttpExchange exchange, int status, Task task) throws IOException {
+        exchange.getResponseHeaders().set("ETag", "\"" + task.getVersion() + "\"");
+        send(exchange, status, gson.toJsonTree(task));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("error", message != null ? message : "Request failed");
+        send(exchange, status, body);
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonElement body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length > 2) {
+            System.err.println("Usage: TaskServer [port] [tasks file]");
+            System.exit(2);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        TaskManager taskManager = new TaskManager();
+        TaskPersistence persistence = args.length > 1 ? new TaskPersistence(args[1]) : new TaskPersistence();
+        try {
+            taskManager.replaceAll(persistence.loadTasks());
+            TaskJournal journal = persistence.attachJournal(taskManager);
+            TaskReminderService reminderService = new TaskReminderService(taskManager, new LoggingReminderSink());
+            TaskServer server = new TaskServer(taskManager, persistence, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                reminderService.shutdown();
+                try {
+                    persistence.saveTasks(taskManager.snapshot());
+                    journal.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Could not save tasks on shutdown", e);
+                }
+            }, "task-server-shutdown"));
+            server.start();
+            InetSocketAddress address = server.getAddress();
+            System.out.println("Serving " + taskManager.snapshot().size() + " tasks on http://"
+                    + address.getHostString() + ":" + address.getPort() + "/tasks");
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,30 +1,28 @@
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class TaskStatistics {
-    private TaskManager taskManager;
+    // Counters maintained from TaskManager events; every method here is O(1) or O(groups)
+    private LiveTaskStatistics liveStatistics;
 
-    public TaskStatistics(TaskManager taskManager) {
-        this.taskManager = taskManager;
+    public TaskStatistics(LiveTaskStatistics liveStatistics) {
+        this.liveStatistics = liveStatistics;
     }
 
     public int getTotalTasks() {
-        return taskManager.getAllTasks().size();
+        return liveStatistics.getTotalTasks();
     }
 
     public int getCompletedTasks() {
-        return taskManager.getCompletedTasks().size();
+        return liveStatistics.getCompletedTasks();
     }
 
     public int getPendingTasks() {
-        return taskManager.getPendingTasks().size();
+        return liveStatistics.getPendingTasks();
     }
 
     public int getOverdueTasks() {
-        return taskManager.getOverdueTasks().size();
+        return liveStatistics.getOverdueTasks();
     }
 
     public double getCompletionRate() {
@@ -34,33 +32,18 @@ public class TaskStatistics {
     }
 
     public Map<Task.Priority, Long> getTasksByPriorityCount() {
-        return taskManager.getAllTasks().stream()
-                .collect(Collectors.groupingBy(Task::getPriority, Collectors.counting()));
+        return liveStatistics.getTasksByPriorityCount();
     }
 
     public Map<String, Long> getTasksByCategoryCount() {
-        return taskManager.getAllTasks().stream()
-                .collect(Collectors.groupingBy(Task::getCategory, Collectors.counting()));
+        return liveStatistics.getTasksByCategoryCount();
     }
 
     public long getTasksDueInNextHours(int hours) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime future = now.plusHours(hours);
-
-        return taskManager.getPendingTasks().stream()
-                .filter(task -> task.getDeadline() != null)
-                .filter(task -> task.getDeadline().isAfter(now) && task.getDeadline().isBefore(future))
-                .count();
+        return liveStatistics.getTasksDueWithin(Duration.ofHours(hours));
     }
 
     public double getAverageTaskCompletionTime() {
-        List<Task> completedTasks = taskManager.getCompletedTasks();
-        if (completedTasks.isEmpty()) return 0.0;
-
-        return completedTasks.stream()
-                .filter(task -> task.getDeadline() != null)
-                .mapToLong(task -> ChronoUnit.HOURS.between(task.getCreatedAt(), task.getDeadline()))
-                .average()
-                .orElse(0.0);
+        return liveStatistics.getAverageCompletionHours();
     }
-}
\ No newline at end of file
+}
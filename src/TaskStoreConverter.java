@@ -0,0 +1,24 @@
+import java.io.IOException;
+
+/**
+ * Command-line converter between task store formats. The format of each file
+ * is picked by its extension, so {@code tasks.json tasks.stmb} converts JSON
+ * to the binary snapshot and {@code tasks.stmb tasks.json} converts it back.
+ */
+public class TaskStoreConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: TaskStoreConverter <source file> <target file>");
+            System.exit(2);
+        }
+
+        try {
+            TaskPersistence.convert(args[0], args[1]);
+            System.out.println("Converted " + args[0] + " to " + args[1]);
+        } catch (IOException e) {
+            System.err.println("Error converting tasks: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
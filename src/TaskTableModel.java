@@ -1,19 +1,215 @@
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Sorted, filtered view of the task store. The model listens to the
+ * {@link TaskManager} itself and turns each change into a single-row insert,
+ * update or delete event, so one edit repaints one row and the table keeps
+ * its selection. Rows are kept in priority order and located by binary search.
+ */
+public class TaskTableModel extends AbstractTableModel implements TaskManager.TaskManagerListener {
+    // Larger batches are merged in one pass and announced as a single data change
+    private static final int ROW_EVENT_BATCH_LIMIT = 64;
 
-public class TaskTableModel extends AbstractTableModel {
     private final String[] columnNames = {"Title", "Priority", "Deadline", "Category", "Status"};
-    private List<Task> tasks = new ArrayList<>();
+    private List<Task> rows = new ArrayList<>();
+    private Map<String, Task> rowsById = new HashMap<>();
+    private Predicate<Task> filter = task -> true;
 
     public void setTasks(List<Task> tasks) {
-        this.tasks = new ArrayList<>(tasks);
+        setFilter(task -> true, tasks);
+    }
+
+    /**
+     * Shows the given tasks, which must be exactly those accepted by the filter;
+     * later changes are matched against the filter as they arrive.
+     */
+    public void setFilter(Predicate<Task> filter, List<Task> matchingTasks) {
+        List<Task> newRows = new ArrayList<>(matchingTasks.size());
+        Map<String, Task> newRowsById = new HashMap<>(matchingTasks.size() * 2);
+        for (Task task : matchingTasks) {
+            newRows.add(task);
+            newRowsById.put(task.getId(), task);
+        }
+        newRows.sort(TaskIndex.PRIORITY_ORDER);
+
+        this.filter = filter;
+        this.rows = newRows;
+        this.rowsById = newRowsById;
         fireTableDataChanged();
     }
 
+    /** Row currently showing the task with the given id, or -1. */
+    public int indexOf(String taskId) {
+        Task row = rowsById.get(taskId);
+        return row != null ? Collections.binarySearch(rows, row, TaskIndex.PRIORITY_ORDER) : -1;
+    }
+
+    @Override
+    public void onTaskAdded(Task task) {
+        onEventThread(() -> applyAdd(task));
+    }
+
+    @Override
+    public void onTaskRemoved(Task task) {
+        onEventThread(() -> applyRemove(task));
+    }
+
+    @Override
+    public void onTaskUpdated(Task task) {
+        onEventThread(() -> applyUpdate(task));
+    }
+
+    @Override
+    public void onTasksAdded(List<Task> tasks) {
+        onEventThread(() -> {
+            if (tasks.size() <= ROW_EVENT_BATCH_LIMIT) {
+                tasks.forEach(this::applyAdd);
+                return;
+            }
+            // Drop rows the batch replaces, then merge the sorted batch into the sorted rows
+            List<Task> batch = new ArrayList<>();
+            Set<String> replaced = new HashSet<>();
+            for (Task task : tasks) {
+                if (rowsById.containsKey(task.getId())) {
+                    replaced.add(task.getId());
+                }
+                if (filter.test(task)) {
+                    batch.add(task);
+                }
+            }
+            batch.sort(TaskIndex.PRIORITY_ORDER);
+
+            List<Task> merged = new ArrayList<>(rows.size() + batch.size());
+            int next = 0;
+            for (Task row : rows) {
+                if (replaced.contains(row.getId())) {
+                    continue;
+                }
+                while (next < batch.size() && TaskIndex.PRIORITY_ORDER.compare(batch.get(next), row) < 0) {
+                    merged.add(batch.get(next++));
+                }
+                merged.add(row);
+            }
+            merged.addAll(batch.subList(next, batch.size()));
+
+            replaced.forEach(rowsById::remove);
+            batch.forEach(row -> rowsById.put(row.getId(), row));
+            rows = merged;
+            fireTableDataChanged();
+        });
+    }
+
+    @Override
+    public void onTasksRemoved(List<Task> tasks) {
+        onEventThread(() -> {
+            if (tasks.size() <= ROW_EVENT_BATCH_LIMIT) {
+                tasks.forEach(this::applyRemove);
+                return;
+            }
+            boolean removedAny = false;
+            for (Task task : tasks) {
+                removedAny |= rowsById.remove(task.getId()) != null;
+            }
+            if (removedAny) {
+                rows.removeIf(row -> !rowsById.containsKey(row.getId()));
+                fireTableDataChanged();
+            }
+        });
+    }
+
+    /**
+     * Repaints the rows showing the given tasks, whose status text changed with
+     * the time rather than through an edit; see {@link DayBoundaryService}.
+     */
+    public void refreshRows(Collection<Task> tasks) {
+        onEventThread(() -> {
+            for (Task task : tasks) {
+                // Looked up by id, so the row's own, possibly newer, version is repainted
+                int index = indexOf(task.getId());
+                if (index >= 0) {
+                    fireTableRowsUpdated(index, index);
+                }
+            }
+        });
+    }
+
+    private void applyAdd(Task task) {
+        if (rowsById.containsKey(task.getId())) {
+            applyUpdate(task);
+        } else if (filter.test(task)) {
+            int index = insertRow(task);
+            fireTableRowsInserted(index, index);
+        }
+    }
+
+    private void applyRemove(Task task) {
+        int index = deleteRow(task.getId());
+        if (index >= 0) {
+            fireTableRowsDeleted(index, index);
+        }
+    }
+
+    private void applyUpdate(Task task) {
+        int oldIndex = deleteRow(task.getId());
+        if (!filter.test(task)) {
+            if (oldIndex >= 0) {
+                fireTableRowsDeleted(oldIndex, oldIndex);
+            }
+            return;
+        }
+
+        int newIndex = insertionPoint(task);
+        if (oldIndex == newIndex) {
+            insertRow(task, newIndex);
+            fireTableRowsUpdated(newIndex, newIndex);
+            return;
+        }
+        if (oldIndex >= 0) {
+            fireTableRowsDeleted(oldIndex, oldIndex);
+        }
+        insertRow(task, newIndex);
+        fireTableRowsInserted(newIndex, newIndex);
+    }
+
+    private int insertRow(Task task) {
+        int index = insertionPoint(task);
+        insertRow(task, index);
+        return index;
+    }
+
+    private void insertRow(Task row, int index) {
+        rows.add(index, row);
+        rowsById.put(row.getId(), row);
+    }
+
+    private int insertionPoint(Task row) {
+        return -Collections.binarySearch(rows, row, TaskIndex.PRIORITY_ORDER) - 1;
+    }
+
+    private int deleteRow(String taskId) {
+        Task row = rowsById.remove(taskId);
+        if (row == null) {
+            return -1;
+        }
+        int index = Collections.binarySearch(rows, row, TaskIndex.PRIORITY_ORDER);
+        rows.remove(index);
+        return index;
+    }
+
+    private static void onEventThread(Runnable change) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            change.run();
+        } else {
+            SwingUtilities.invokeLater(change);
+        }
+    }
+
     @Override
     public int getRowCount() {
-        return tasks.size();
+        return rows.size();
     }
 
     @Override
@@ -28,11 +224,13 @@ public class TaskTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Task task = tasks.get(rowIndex);
+        Task task = rows.get(rowIndex);
         switch (columnIndex) {
             case 0: return task.getTitle();
             case 1: return task.getPriority();
-            case 2: return task.getFormattedDeadline();
+            case 2: return task.isRecurring()
+                    ? task.getFormattedDeadline() + " (" + task.getRecurrence().describe() + ")"
+                    : task.getFormattedDeadline();
             case 3: return task.getCategory();
             case 4: return task.isCompleted() ? "Completed" :
                     (task.isOverdue() ? "Overdue" : "Pending");
@@ -41,6 +239,6 @@ public class TaskTableModel extends AbstractTableModel {
     }
 
     public Task getTaskAt(int rowIndex) {
-        return tasks.get(rowIndex);
+        return rows.get(rowIndex);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencySchedulerTest {
+    private final TaskManager manager = new TaskManager();
+    private final DependencyScheduler scheduler = new DependencyScheduler(manager);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void keepsOrderWhenEdgesArriveInReverse() {
+        for (String id : List.of("t1", "t2", "t3", "t4", "t5")) {
+            add(id, Task.Priority.LOW);
+        }
+        assertEquals(List.of("t1", "t2", "t3", "t4", "t5"), ids(scheduler.getTopologicalOrder()));
+
+        // Each new edge points against the current order, so every insertion has to reorder
+        dependOn("t4", "t5");
+        dependOn("t3", "t4");
+        dependOn("t2", "t3");
+        dependOn("t1", "t2");
+        assertEquals(List.of("t5", "t4", "t3", "t2", "t1"), ids(scheduler.getTopologicalOrder()));
+
+        // An edge between tasks already in order moves nothing
+        dependOn("t3", "t5", "t4");
+        assertEquals(List.of("t5", "t4", "t3", "t2", "t1"), ids(scheduler.getTopologicalOrder()));
+        assertEquals(List.of("t5"), ids(scheduler.getReadyTasks()));
+    }
+
+    @Test
+    void reportsCycleAndAddsEdgeBackOnceItBreaks() {
+        add("a", Task.Priority.LOW);
+        add("b", Task.Priority.LOW);
+        dependOn("a", "b");
+        assertEquals(List.of("b", "a", "b"), scheduler.findCycle("b", List.of("a")));
+        assertEquals(List.of(), scheduler.findCycle("b", List.of()));
+
+        dependOn("b", "a");
+        assertEquals(Map.of("b", Set.of("a")), scheduler.getCyclicDependencies());
+        assertTrue(scheduler.isBlocked("a"));
+        assertFalse(scheduler.isBlocked("b"));
+
+        dependOn("a");
+        assertEquals(Map.of(), scheduler.getCyclicDependencies());
+        assertTrue(scheduler.isBlocked("b"));
+        assertEquals(List.of("a", "b"), ids(scheduler.getTopologicalOrder()));
+    }
+
+    @Test
+    void findsCyclesWithinABatch() {
+        add("a", Task.Priority.LOW);
+        Task m = task("m", Task.Priority.LOW).withDependencies(List.of("n"));
+        Task n = task("n", Task.Priority.LOW).withDependencies(List.of("a", "m"));
+        List<String> cycle = scheduler.findCycle(List.of(m, n));
+        assertEquals(cycle.get(0), cycle.get(cycle.size() - 1));
+        assertEquals(Set.of("m", "n"), Set.copyOf(cycle));
+        assertEquals(List.of(), scheduler.findCycle(List.of(m, task("n", Task.Priority.LOW))));
+    }
+
+    @Test
+    void updatesBlockersWhenPrerequisitesCompleteOrGo() {
+        add("a", Task.Priority.LOW);
+        add("b", Task.Priority.LOW);
+        add("c", Task.Priority.LOW);
+        dependOn("a", "b", "c");
+        assertEquals(Set.of("b", "c"), Set.copyOf(ids(scheduler.getBlockers("a"))));
+        assertFalse(ids(scheduler.getReadyTasks()).contains("a"));
+
+        manager.updateTask("b", task -> task.withCompleted(true));
+        assertEquals(List.of("c"), ids(scheduler.getBlockers("a")));
+        assertTrue(scheduler.isBlocked("a"));
+
+        manager.removeTask("c");
+        assertFalse(scheduler.isBlocked("a"));
+        assertTrue(ids(scheduler.getReadyTasks()).contains("a"));
+
+        // A prerequisite that comes back blocks its dependents again
+        add("c", Task.Priority.LOW);
+        assertEquals(List.of("c"), ids(scheduler.getBlockers("a")));
+        assertFalse(ids(scheduler.getReadyTasks()).contains("a"));
+    }
+
+    @Test
+    void lendsPriorityToPrerequisitesAndTakesItBack() {
+        add("low", Task.Priority.LOW);
+        add("medium", Task.Priority.MEDIUM);
+        add("high", Task.Priority.HIGH);
+        dependOn("medium", "low");
+        assertEquals(Task.Priority.MEDIUM, scheduler.getEffectivePriority("low"));
+
+        dependOn("high", "medium");
+        assertEquals(Task.Priority.HIGH, scheduler.getEffectivePriority("low"));
+        assertEquals(Task.Priority.HIGH, scheduler.getEffectivePriority("medium"));
+        assertEquals(List.of("low"), ids(scheduler.getReadyTasks()));
+
+        manager.updateTask("high", task -> task.withCompleted(true));
+        assertEquals(Task.Priority.MEDIUM, scheduler.getEffectivePriority("low"));
+        assertEquals(Task.Priority.MEDIUM, scheduler.getEffectivePriority("medium"));
+
+        manager.removeTask("medium");
+        assertEquals(Task.Priority.LOW, scheduler.getEffectivePriority("low"));
+    }
+
+    private void add(String id, Task.Priority priority) {
+        manager.addTask(task(id, priority));
+    }
+
+    private void dependOn(String id, String... prerequisites) {
+        manager.updateTask(id, task -> task.withDependencies(List.of(prerequisites)));
+    }
+
+    private static Task task(String id, Task.Priority priority) {
+        return new Task(id, "", priority, null, null).withId(id);
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        List<String> ids = new ArrayList<>();
+        tasks.forEach(task -> ids.add(task.getId()));
+        return ids;
+    }
+}
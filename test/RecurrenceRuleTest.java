@@ -0,0 +1,103 @@
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecurrenceRuleTest {
+    // A Monday
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 3, 2, 9, 0);
+
+    @Test
+    void countHoldsForWindowStartingMidSeries() {
+        RecurrenceRule rule = RecurrenceRule.daily(MONDAY).withCount(10);
+        assertEquals(List.of(at(3, 8), at(3, 9), at(3, 10), at(3, 11)),
+                list(rule.occurrencesBetween(at(3, 8).withHour(0), null)));
+        assertEquals(List.of(), list(rule.occurrencesBetween(at(3, 12), null)));
+        assertEquals(list(rule.occurrencesBetween(MONDAY, null)).subList(3, 5),
+                list(rule.occurrencesBetween(at(3, 5), at(3, 7))));
+    }
+
+    @Test
+    void weeklyLeavesOutDaysBeforeTheStart() {
+        // Starts on a Wednesday, so the first week's Monday is not an occurrence and does not count
+        RecurrenceRule rule = RecurrenceRule.weekly(at(3, 4), DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY)
+                .withCount(5);
+        assertEquals(List.of(at(3, 4), at(3, 6), at(3, 9), at(3, 11), at(3, 13)),
+                list(rule.occurrencesBetween(MONDAY, null)));
+        assertEquals(List.of(at(3, 11), at(3, 13)), list(rule.occurrencesBetween(at(3, 10), null)));
+        assertFalse(rule.isOccurrence(MONDAY));
+        assertTrue(rule.isOccurrence(at(3, 9)));
+    }
+
+    @Test
+    void monthlySkipsMonthsWithoutTheDay() {
+        RecurrenceRule rule = RecurrenceRule.monthly(LocalDateTime.of(2026, 1, 31, 10, 0));
+        assertEquals(List.of(day(1, 31), day(3, 31), day(5, 31), day(7, 31), day(8, 31)),
+                list(rule.occurrencesBetween(day(1, 1), day(9, 1))));
+        // Skipped months do not use up the count
+        RecurrenceRule counted = rule.withCount(4);
+        assertEquals(List.of(day(7, 31)), list(counted.occurrencesBetween(day(6, 1), null)));
+    }
+
+    @Test
+    void textFormRoundTrips() {
+        String text = "FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10;DTSTART=20260302T090000;DONE-THROUGH=20260304T090000";
+        assertEquals(text, RecurrenceRule.parse(text).toString());
+
+        RecurrenceRule rule = RecurrenceRule.weekly(MONDAY, DayOfWeek.MONDAY, DayOfWeek.THURSDAY)
+                .withInterval(2)
+                .withUntil(at(6, 1))
+                .withDone(at(3, 16))
+                .withDone(MONDAY)
+                .withDone(at(3, 19));
+        RecurrenceRule parsed = RecurrenceRule.parse(rule.toString());
+        assertEquals(rule, parsed);
+        assertEquals(rule.toString(), parsed.toString());
+        assertEquals(list(rule.occurrencesBetween(MONDAY, null)), list(parsed.occurrencesBetween(MONDAY, null)));
+    }
+
+    @Test
+    void outOfOrderDoneFoldsIntoWatermark() {
+        RecurrenceRule rule = RecurrenceRule.daily(MONDAY).withDone(at(3, 4));
+        assertTrue(rule.toString().endsWith(";DONE=20260304T090000"));
+        assertEquals(MONDAY, rule.nextPending());
+
+        rule = rule.withDone(MONDAY);
+        assertTrue(rule.toString().endsWith(";DONE-THROUGH=20260302T090000;DONE=20260304T090000"));
+        assertFalse(rule.isDone(at(3, 3)));
+        assertEquals(at(3, 3), rule.nextPending());
+
+        rule = rule.withDone(at(3, 3));
+        assertTrue(rule.toString().endsWith(";DONE-THROUGH=20260304T090000"));
+        assertTrue(rule.isDone(at(3, 3)));
+        assertEquals(at(3, 5), rule.nextPending());
+        assertEquals(rule, rule.withDone(MONDAY));
+
+        // Days between weekly occurrences do not stop the fold
+        RecurrenceRule weekly = RecurrenceRule.weekly(MONDAY, DayOfWeek.MONDAY, DayOfWeek.FRIDAY)
+                .withDone(at(3, 6))
+                .withDone(MONDAY);
+        assertTrue(weekly.toString().endsWith(";DONE-THROUGH=20260306T090000"));
+        assertThrows(IllegalArgumentException.class, () -> weekly.withDone(at(3, 10)));
+    }
+
+    private static LocalDateTime at(int month, int day) {
+        return LocalDateTime.of(2026, month, day, 9, 0);
+    }
+
+    private static LocalDateTime day(int month, int day) {
+        return LocalDateTime.of(2026, month, day, 10, 0);
+    }
+
+    private static List<LocalDateTime> list(Iterable<LocalDateTime> occurrences) {
+        List<LocalDateTime> list = new ArrayList<>();
+        occurrences.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,74 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaskClockTest {
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 22, 0);
+
+    private final TaskClock.Manual clock = TaskClock.manual(START);
+    private final TaskManager manager = new TaskManager();
+    private final List<String> reminders = new ArrayList<>();
+    private Task tonight;
+    private Task tomorrow;
+    private LiveTaskStatistics statistics;
+    private TaskReminderService reminderService;
+    private DayBoundaryService dayBoundaries;
+
+    @BeforeEach
+    void setUp() {
+        TaskClock.use(clock);
+        tonight = new Task("tonight", "", Task.Priority.HIGH, START.plusHours(1), null);
+        tomorrow = new Task("tomorrow", "", Task.Priority.LOW, START.plusHours(11), null);
+        manager.addAll(List.of(tonight, tomorrow));
+        statistics = new LiveTaskStatistics(manager, clock);
+        reminderService = new TaskReminderService(manager, batch -> batch.forEach(reminder ->
+                reminders.add(reminder.getTask().getTitle() + " " + reminder.getKind())), clock);
+        dayBoundaries = new DayBoundaryService(manager, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.shutdown();
+        reminderService.shutdown();
+        dayBoundaries.shutdown();
+        TaskClock.use(TaskClock.system());
+    }
+
+    @Test
+    void followsManualClockPastDeadlineAndMidnight() {
+        assertEquals(0, statistics.getOverdueTasks());
+        assertEquals(2, statistics.getTasksDueWithin(Duration.ofDays(1)));
+        assertEquals(List.of(tonight), manager.getTodaysTasks());
+        reminderService.check();
+        assertEquals(List.of(), reminders);
+
+        clock.advance(Duration.ofMinutes(45));
+        reminderService.check();
+        assertEquals(List.of("tonight DUE_SOON"), reminders);
+
+        clock.advance(Duration.ofMinutes(30));
+        reminderService.check();
+        assertEquals(List.of("tonight DUE_SOON", "tonight OVERDUE"), reminders);
+        assertEquals(1, statistics.getOverdueTasks());
+        assertEquals(1, manager.getOverdueTasks().size());
+        assertEquals(1, statistics.getTasksDueWithin(Duration.ofDays(1)));
+
+        clock.advance(Duration.ofHours(2));
+        assertEquals(2, dayBoundaries.check().size());
+        assertEquals(List.of(tomorrow), manager.getTodaysTasks());
+        assertEquals(1, statistics.getOverdueTasks());
+        reminderService.check();
+        assertEquals(2, reminders.size());
+
+        clock.set(tomorrow.getDeadline().plusMinutes(1));
+        reminderService.check();
+        assertEquals(List.of("tonight DUE_SOON", "tonight OVERDUE", "tomorrow DUE_SOON", "tomorrow OVERDUE"), reminders);
+        assertEquals(2, statistics.getOverdueTasks());
+    }
+}
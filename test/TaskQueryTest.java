@@ -0,0 +1,85 @@
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaskQueryTest {
+    private static final LocalDateTime AT = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private final TaskClock.Manual clock = TaskClock.manual(AT.minusHours(2));
+    private final TaskManager manager = new TaskManager();
+    private Task before;
+    private Task exact;
+    private Task after;
+
+    @BeforeEach
+    void setUp() {
+        TaskClock.use(clock);
+        before = new Task("before", "", Task.Priority.LOW, AT.minusMinutes(1), null);
+        exact = new Task("exact", "", Task.Priority.LOW, AT, null);
+        after = new Task("after", "", Task.Priority.LOW, AT.plusMinutes(1), null);
+        manager.addAll(List.of(before, exact, after));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TaskClock.use(TaskClock.system());
+    }
+
+    @Test
+    void comparesExactTimestamps() {
+        assertOperators("2030-01-01T10:00");
+    }
+
+    @Test
+    void comparesRelativeInstants() {
+        assertOperators("+2h");
+        clock.set(AT);
+        assertOperators("now");
+    }
+
+    @Test
+    void comparesWholeDays() {
+        assertMatches("deadline = 2030-01-01", before, exact, after);
+        assertMatches("deadline != 2030-01-01");
+        assertMatches("deadline < 2030-01-01");
+        assertMatches("deadline <= 2030-01-01", before, exact, after);
+        assertMatches("deadline > 2030-01-01");
+        assertMatches("deadline >= 2030-01-01", before, exact, after);
+    }
+
+    @Test
+    void combinesBoundsOnTheSameInstant() {
+        assertMatches("deadline >= 2030-01-01T10:00 and deadline <= 2030-01-01T10:00", exact);
+        assertMatches("deadline > 2030-01-01T10:00 and deadline <= 2030-01-01T10:00");
+        assertMatches("deadline > 2030-01-01T09:59 and deadline < 2030-01-01T10:01", exact);
+    }
+
+    private void assertOperators(String value) {
+        Map<String, List<Task>> expected = Map.of(
+                "=", List.of(exact),
+                "!=", List.of(before, after),
+                "<", List.of(before),
+                "<=", List.of(before, exact),
+                ">", List.of(after),
+                ">=", List.of(exact, after));
+        for (Map.Entry<String, List<Task>> entry : expected.entrySet()) {
+            assertMatches("deadline " + entry.getKey() + " " + value, entry.getValue().toArray(new Task[0]));
+        }
+    }
+
+    // Checks the planned query, the count and the plain predicate agree
+    private void assertMatches(String text, Task... expected) {
+        TaskQuery query = TaskQuery.parse(text + " order by deadline");
+        assertEquals(List.of(expected), manager.query(query), text);
+        assertEquals(expected.length, manager.count(query), text + " (count)");
+        Predicate<Task> predicate = query.asPredicate();
+        List<Task> tested = List.of(before, exact, after).stream().filter(predicate).toList();
+        assertEquals(List.of(expected), tested, text + " (predicate)");
+    }
+}